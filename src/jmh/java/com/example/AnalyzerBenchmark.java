@@ -0,0 +1,82 @@
+package com.example;
+
+import com.example.warehouse.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link WarehouseAnalyzer} operations on catalogs of realistic size, in both storage modes.
+ * Run with the gc profiler (the default of the jmh profile) to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class AnalyzerBenchmark {
+
+    private static final BigDecimal MAX_GROUP_WEIGHT = new BigDecimal("10.0");
+    private static final ShippingTariff TARIFF = new ShippingTariff(List.of(
+            new ShippingTariff.Bracket(new BigDecimal("2"), new BigDecimal("4.90"), BigDecimal.ZERO),
+            new ShippingTariff.Bracket(new BigDecimal("10"), new BigDecimal("6.90"), new BigDecimal("0.50")),
+            new ShippingTariff.Bracket(null, new BigDecimal("19.00"), new BigDecimal("1.10"))));
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    // Share of food products in the catalog, the rest are electronics.
+    @Param({"0", "50", "100"})
+    public int foodPercent;
+
+    @Param({"ON_HEAP", "OFF_HEAP"})
+    public StorageMode storageMode;
+
+    private Warehouse warehouse;
+    private WarehouseAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // One warehouse per storage mode, since the mode is fixed when a warehouse is created.
+        warehouse = Warehouse.getInstance("jmh-analyzer-" + storageMode, storageMode);
+        warehouse.clearProducts();
+        warehouse.addProducts(CatalogFixture.generate(size, foodPercent, 42));
+        analyzer = new WarehouseAnalyzer(warehouse);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        warehouse.clearProducts();
+    }
+
+    @Benchmark
+    public List<Product> findPriceOutliers() {
+        return analyzer.findPriceOutliers(1.5);
+    }
+
+    // The analyzer's result types are package-private, so they go to the Blackhole instead of being returned
+    // to the generated code in another package.
+    @Benchmark
+    public void getInventoryStatistics(Blackhole blackhole) {
+        blackhole.consume(analyzer.getInventoryStatistics());
+    }
+
+    @Benchmark
+    public void optimizeShippingGroups(Blackhole blackhole) {
+        blackhole.consume(analyzer.optimizeShippingGroups(MAX_GROUP_WEIGHT));
+    }
+
+    @Benchmark
+    public void optimizeShippingGroupsBestFit(Blackhole blackhole) {
+        blackhole.consume(analyzer.optimizeShippingGroups(MAX_GROUP_WEIGHT, PackingStrategy.BEST_FIT_DECREASING));
+    }
+
+    @Benchmark
+    public BigDecimal quoteShipping() {
+        return analyzer.quoteShipping(TARIFF);
+    }
+}
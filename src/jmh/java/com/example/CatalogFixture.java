@@ -0,0 +1,75 @@
+package com.example;
+
+import com.example.warehouse.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Generates reproducible product catalogs for the benchmarks.
+ * The same size, mix and seed always yield the same products, so runs can be compared.
+ */
+final class CatalogFixture {
+
+    private static final String[] WORDS = {
+            "Milk", "Cheese", "Yogurt", "Bread", "Apple", "Banana", "Coffee", "Tea", "Butter", "Salmon",
+            "Laptop", "Mouse", "Keyboard", "Monitor", "Cable", "Charger", "Phone", "Tablet", "Speaker", "Camera"
+    };
+    private static final Category[] CATEGORIES = new Category[20];
+
+    static {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            CATEGORIES[i] = Category.of("Category" + i);
+        }
+    }
+
+    private CatalogFixture() {
+    }
+
+    /**
+     * Generates a catalog.
+     *
+     * @param size        The number of products.
+     * @param foodPercent The share of food products, from 0 to 100; the rest are electronics.
+     * @param seed        The random seed.
+     * @return The products, in generation order.
+     */
+    static List<Product> generate(int size, int foodPercent, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate today = LocalDate.now();
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(next(random, today, foodPercent, i));
+        }
+        return products;
+    }
+
+    /**
+     * Generates one more product, e.g. to add in a benchmark loop.
+     *
+     * @param random      The random source.
+     * @param foodPercent The chance of a food product, from 0 to 100.
+     * @return A new product with a random UUID.
+     */
+    static Product next(SplittableRandom random, int foodPercent) {
+        return next(random, LocalDate.now(), foodPercent, random.nextInt(1_000_000));
+    }
+
+    private static Product next(SplittableRandom random, LocalDate today, int foodPercent, int serial) {
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        String name = WORDS[random.nextInt(WORDS.length)] + " " + serial;
+        Category category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        // Prices from 0.50 to 2000.00 with a long tail, so the outlier detection has something to find.
+        long cents = 50 + (long) (Math.pow(random.nextDouble(), 3) * 199_950);
+        BigDecimal price = BigDecimal.valueOf(cents, 2);
+        BigDecimal weight = BigDecimal.valueOf(1 + random.nextInt(200), 1);
+        if (random.nextInt(100) < foodPercent) {
+            return new FoodProduct(id, name, category, price, today.plusDays(random.nextInt(-10, 31)), weight);
+        }
+        return new ElectronicsProduct(id, name, category, price, random.nextInt(0, 37), weight);
+    }
+}
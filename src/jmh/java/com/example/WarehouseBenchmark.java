@@ -0,0 +1,122 @@
+package com.example;
+
+import com.example.warehouse.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the core {@link Warehouse} operations on a catalog of realistic size.
+ * Run with the gc profiler (the default of the jmh profile) to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class WarehouseBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    // Share of food products in the catalog, the rest are electronics.
+    @Param({"0", "50", "100"})
+    public int foodPercent;
+
+    private Warehouse warehouse;
+    private List<Product> catalog;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = CatalogFixture.generate(size, foodPercent, 42);
+        warehouse = Warehouse.getInstance("jmh-warehouse");
+        warehouse.clearProducts();
+        warehouse.addProducts(catalog);
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        warehouse.clearProducts();
+    }
+
+    /**
+     * Adds one product to the full catalog and removes it again, so the catalog size stays constant.
+     */
+    @Benchmark
+    public Product addAndRemoveProduct() {
+        Product product = CatalogFixture.next(random, foodPercent);
+        warehouse.addProduct(product);
+        warehouse.remove(product.uuid());
+        return product;
+    }
+
+    /**
+     * Updates the prices of random products from four threads at once. Writers on different lock
+     * stripes only meet when they publish the new snapshot, so this shows how well writes scale.
+     */
+    @Benchmark
+    @Threads(4)
+    public Product concurrentPriceUpdates() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Product product = catalog.get(random.nextInt(catalog.size()));
+        warehouse.updateProductPrice(product.uuid(), BigDecimal.valueOf(random.nextLong(100, 1_000_000), 2));
+        return product;
+    }
+
+    /**
+     * Reads the product list while nothing changes, the common case for readers.
+     */
+    @Benchmark
+    public List<Product> getProducts() {
+        return warehouse.getProducts();
+    }
+
+    /**
+     * Reads the product list right after a write, which has to build a new snapshot.
+     */
+    @Benchmark
+    public List<Product> getProductsAfterWrite() {
+        Product product = CatalogFixture.next(random, foodPercent);
+        warehouse.addProduct(product);
+        List<Product> products = warehouse.getProducts();
+        warehouse.remove(product.uuid());
+        return products;
+    }
+
+    /**
+     * Loads the whole catalog one product at a time into an empty warehouse.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Warehouse loadCatalog(LoadState state) {
+        for (Product product : catalog) {
+            state.target.addProduct(product);
+        }
+        return state.target;
+    }
+
+    /**
+     * An empty warehouse for every load.
+     */
+    @State(Scope.Thread)
+    public static class LoadState {
+
+        Warehouse target;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            target = Warehouse.getInstance("jmh-load");
+            target.clearProducts();
+        }
+    }
+}
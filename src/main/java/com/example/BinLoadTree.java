@@ -0,0 +1,110 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * The loads of a row of shipping bins, kept in a min segment tree so that the first bin an item fits in
+ * is found in O(log bins) instead of by trying every bin. Bins are numbered in the order they were opened.
+ * <p>
+ * A bin fits an item when {@code load + weight <= maxWeight}, evaluated exactly like that in double
+ * arithmetic, so placements are identical to a linear first-fit scan. Since the sum only grows with the
+ * load, a subtree contains a fitting bin exactly when its lowest load fits.
+ */
+final class BinLoadTree {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Node i covers children 2i and 2i + 1; the leaves start at index capacity. Unused leaves hold
+    // +Infinity, which never fits anything.
+    private double[] tree;
+    private int capacity;
+    private int size;
+
+    BinLoadTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param expectedBins the number of bins to make room for up front
+     */
+    BinLoadTree(int expectedBins) {
+        capacity = Integer.highestOneBit(Math.max(1, expectedBins - 1)) << 1;
+        tree = new double[2 * capacity];
+        Arrays.fill(tree, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Retrieves the number of bins opened so far.
+     *
+     * @return the bin count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Opens a new bin after the existing ones.
+     *
+     * @param load the initial load of the bin
+     * @return the number of the new bin
+     */
+    int open(double load) {
+        if (size == capacity) grow();
+        int bin = size++;
+        set(bin, load);
+        return bin;
+    }
+
+    /**
+     * Retrieves the load of a bin.
+     *
+     * @param bin the bin number
+     * @return its load
+     */
+    double load(int bin) {
+        return tree[capacity + bin];
+    }
+
+    /**
+     * Changes the load of a bin, e.g. after an item was added or taken out.
+     *
+     * @param bin  the bin number
+     * @param load the new load, +Infinity to close the bin for good
+     */
+    void set(int bin, double load) {
+        int node = capacity + bin;
+        tree[node] = load;
+        for (node >>>= 1; node > 0; node >>>= 1) {
+            tree[node] = Math.min(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Finds the first bin, in opening order, that still has room for an item.
+     *
+     * @param weight    the weight of the item
+     * @param maxWeight the maximum load of a bin
+     * @return the bin number, or -1 if no open bin fits the item
+     */
+    int firstFit(double weight, double maxWeight) {
+        if (!(tree[1] + weight <= maxWeight)) return -1;
+        int node = 1;
+        while (node < capacity) {
+            int left = 2 * node;
+            node = tree[left] + weight <= maxWeight ? left : left + 1;
+        }
+        return node - capacity;
+    }
+
+    private void grow() {
+        int grown = capacity * 2;
+        double[] next = new double[2 * grown];
+        Arrays.fill(next, Double.POSITIVE_INFINITY);
+        System.arraycopy(tree, capacity, next, grown, capacity);
+        for (int node = grown - 1; node > 0; node--) {
+            next[node] = Math.min(next[2 * node], next[2 * node + 1]);
+        }
+        tree = next;
+        capacity = grown;
+    }
+}
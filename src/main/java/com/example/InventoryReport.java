@@ -0,0 +1,17 @@
+package com.example;
+
+/**
+ * Inventory statistics and validation summary taken from the same pass over the catalog
+ */
+class InventoryReport {
+    private final InventoryStatistics statistics;
+    private final InventoryValidation validation;
+
+    public InventoryReport(InventoryStatistics statistics, InventoryValidation validation) {
+        this.statistics = statistics;
+        this.validation = validation;
+    }
+
+    public InventoryStatistics getStatistics() { return statistics; }
+    public InventoryValidation getValidation() { return validation; }
+}
@@ -0,0 +1,38 @@
+package com.example;
+
+import com.example.warehouse.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * Comprehensive inventory statistics
+ */
+class InventoryStatistics {
+    private final int totalProducts;
+    private final BigDecimal totalValue;
+    private final BigDecimal averagePrice;
+    private final int expiredCount;
+    private final int categoryCount;
+    private final Product mostExpensiveProduct;
+    private final Product cheapestProduct;
+
+    public InventoryStatistics(int totalProducts, BigDecimal totalValue, BigDecimal averagePrice,
+                               int expiredCount, int categoryCount,
+                               Product mostExpensiveProduct, Product cheapestProduct) {
+        this.totalProducts = totalProducts;
+        this.totalValue = totalValue;
+        this.averagePrice = averagePrice;
+        this.expiredCount = expiredCount;
+        this.categoryCount = categoryCount;
+        this.mostExpensiveProduct = mostExpensiveProduct;
+        this.cheapestProduct = cheapestProduct;
+    }
+
+    public int getTotalProducts() { return totalProducts; }
+    public BigDecimal getTotalValue() { return totalValue; }
+    public BigDecimal getAveragePrice() { return averagePrice; }
+    public int getExpiredCount() { return expiredCount; }
+    public int getCategoryCount() { return categoryCount; }
+    public Product getMostExpensiveProduct() { return mostExpensiveProduct; }
+    public Product getCheapestProduct() { return cheapestProduct; }
+}
@@ -0,0 +1,107 @@
+package com.example;
+
+import com.example.warehouse.ColumnarView;
+import com.example.warehouse.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.BitSet;
+
+/**
+ * Gathers every figure of the inventory statistics and the validation summary in a single pass over a
+ * columnar view: count, value, expired count, categories, high-value count, and the most expensive and
+ * cheapest rows. Tallies of different chunks of the same view can be merged, so a parallel stream keeps
+ * one per chunk and combines them as the chunks complete.
+ */
+final class InventoryTally {
+    // 1000.00 in minor units, products priced at or above it are high-value.
+    static final long HIGH_VALUE_THRESHOLD_MINOR = 100_000L;
+    private static final BigDecimal HIGH_VALUE_THRESHOLD = Money.toBigDecimal(HIGH_VALUE_THRESHOLD_MINOR);
+
+    private final ColumnarView columns;
+    private final long today;
+    private int count;
+    private long valueMinor;
+    // The rows whose price the column only holds rounded are summed exactly instead.
+    private int inexactCount;
+    private BigDecimal inexactValue = BigDecimal.ZERO;
+    private int expiredCount;
+    private long highValueCount;
+    private final BitSet categories = new BitSet();
+    private int mostExpensiveRow = -1;
+    private int cheapestRow = -1;
+
+    /**
+     * @param columns the view whose rows are added
+     * @param today   today's epoch day, products expiring before it are expired
+     */
+    InventoryTally(ColumnarView columns, long today) {
+        this.columns = columns;
+        this.today = today;
+    }
+
+    void add(int row) {
+        count++;
+        if (columns.isPriceExact(row)) {
+            long priceMinor = columns.priceMinor(row);
+            valueMinor += priceMinor;
+            if (priceMinor >= HIGH_VALUE_THRESHOLD_MINOR) highValueCount++;
+        } else {
+            BigDecimal price = columns.exactPrice(row);
+            inexactCount++;
+            inexactValue = inexactValue.add(price);
+            if (price.compareTo(HIGH_VALUE_THRESHOLD) >= 0) highValueCount++;
+        }
+        if (columns.isPerishable(row) && columns.expiryEpochDay(row) < today) expiredCount++;
+        categories.set(columns.categoryOrdinal(row));
+        if (mostExpensiveRow < 0 || compareRows(row, mostExpensiveRow) > 0) mostExpensiveRow = row;
+        if (cheapestRow < 0 || compareRows(row, cheapestRow) < 0) cheapestRow = row;
+    }
+
+    void merge(InventoryTally other) {
+        count += other.count;
+        valueMinor += other.valueMinor;
+        inexactCount += other.inexactCount;
+        inexactValue = inexactValue.add(other.inexactValue);
+        highValueCount += other.highValueCount;
+        expiredCount += other.expiredCount;
+        categories.or(other.categories);
+        if (other.mostExpensiveRow >= 0 && (mostExpensiveRow < 0 || compareRows(other.mostExpensiveRow, mostExpensiveRow) > 0)) {
+            mostExpensiveRow = other.mostExpensiveRow;
+        }
+        if (other.cheapestRow >= 0 && (cheapestRow < 0 || compareRows(other.cheapestRow, cheapestRow) < 0)) {
+            cheapestRow = other.cheapestRow;
+        }
+    }
+
+    /**
+     * Orders two rows the way the warehouse price index does: by exact price, then by UUID.
+     * The minor-unit column decides unless one of the rows holds its price rounded, then the
+     * BigDecimal prices kept by the view are compared.
+     */
+    private int compareRows(int left, int right) {
+        int order = columns.isPriceExact(left) && columns.isPriceExact(right)
+                ? Long.compare(columns.priceMinor(left), columns.priceMinor(right))
+                : columns.exactPrice(left).compareTo(columns.exactPrice(right));
+        return order != 0 ? order : columns.uuid(left).compareTo(columns.uuid(right));
+    }
+
+    InventoryStatistics statistics() {
+        BigDecimal totalValue = Money.toBigDecimal(valueMinor);
+        BigDecimal averagePrice;
+        if (inexactCount == 0) {
+            averagePrice = count == 0 ? BigDecimal.ZERO : Money.toBigDecimal(Money.divideHalfUp(valueMinor, count));
+        } else {
+            totalValue = totalValue.add(inexactValue);
+            averagePrice = totalValue.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+        }
+        return new InventoryStatistics(count, totalValue, averagePrice, expiredCount, categories.cardinality(),
+                mostExpensiveRow < 0 ? null : columns.product(mostExpensiveRow),
+                cheapestRow < 0 ? null : columns.product(cheapestRow));
+    }
+
+    InventoryValidation validation() {
+        if (count == 0) return new InventoryValidation(0.0, 0);
+        return new InventoryValidation((highValueCount * 100.0) / count, categories.cardinality());
+    }
+}
@@ -0,0 +1,22 @@
+package com.example;
+
+/**
+ * Validation result for inventory constraints
+ */
+class InventoryValidation {
+    private final double highValuePercentage;
+    private final int categoryDiversity;
+    private final boolean highValueWarning;
+    private final boolean minimumDiversity;
+
+    public InventoryValidation(double highValuePercentage, int categoryDiversity) {
+        this.highValuePercentage = highValuePercentage;
+        this.categoryDiversity = categoryDiversity;
+        this.highValueWarning = highValuePercentage > 70.0;
+        this.minimumDiversity = categoryDiversity >= 2;
+    }
+    public double getHighValuePercentage() { return highValuePercentage; }
+    public int getCategoryDiversity() { return categoryDiversity; }
+    public boolean isHighValueWarning() { return highValueWarning; }
+    public boolean hasMinimumDiversity() { return minimumDiversity; }
+}
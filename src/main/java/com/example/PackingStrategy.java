@@ -0,0 +1,18 @@
+package com.example;
+
+/**
+ * How {@link ShippingGroupOptimizer} chooses the shipping group for the next item.
+ * Both strategies place the heaviest items first.
+ */
+enum PackingStrategy {
+    /**
+     * Puts every item into the first group, in opening order, that still has room for it.
+     * This is the strategy optimizeShippingGroups has always used.
+     */
+    FIRST_FIT_DECREASING,
+    /**
+     * Puts every item into the group with the least room left that still fits it,
+     * which tends to leave fewer half-empty groups.
+     */
+    BEST_FIT_DECREASING
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Finds order statistics (the k-th smallest value) in a primitive array without sorting all of it.
+ * Uses introselect: quickselect with a median-of-three pivot and a three-way partition, so runs of
+ * equal prices are settled in one step, falling back to sorting the remaining range if the
+ * partitions keep coming out unbalanced. Expected cost O(n), worst case O(n log n), no allocation.
+ */
+final class QuantileSelect {
+
+    // Ranges this small are sorted outright, which beats partitioning them further.
+    private static final int SORT_THRESHOLD = 16;
+
+    private QuantileSelect() {
+    }
+
+    /**
+     * Moves the k-th smallest value of values[from, to) to index k, with no larger value before it
+     * and no smaller value after it (within the range). The rest of the range is reordered arbitrarily.
+     *
+     * @param values the values, reordered in place
+     * @param from   the first index of the range (inclusive)
+     * @param to     the last index of the range (exclusive)
+     * @param k      the index to settle, from <= k < to
+     * @return the k-th smallest value
+     */
+    static long select(long[] values, int from, int to, int k) {
+        if (k < from || k >= to) throw new IndexOutOfBoundsException("Index " + k + " is outside [" + from + ", " + to + ").");
+        int lo = from;
+        int hi = to - 1;
+        // Twice the depth of a balanced partitioning, beyond that quickselect has gone quadratic.
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (hi > lo) {
+            if (hi - lo < SORT_THRESHOLD || depth-- == 0) {
+                Arrays.sort(values, lo, hi + 1);
+                break;
+            }
+            long pivot = medianOfThree(values[lo], values[(lo + hi) >>> 1], values[hi]);
+            // Three-way partition: [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi] > pivot.
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                long value = values[i];
+                if (value < pivot) {
+                    swap(values, lt++, i++);
+                } else if (value > pivot) {
+                    swap(values, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return pivot;
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * Finds the smallest value of values[from, to).
+     *
+     * @param values the values
+     * @param from   the first index of the range (inclusive)
+     * @param to     the last index of the range (exclusive), greater than from
+     * @return the smallest value in the range
+     */
+    static long min(long[] values, int from, int to) {
+        long min = values[from];
+        for (int i = from + 1; i < to; i++) {
+            if (values[i] < min) min = values[i];
+        }
+        return min;
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
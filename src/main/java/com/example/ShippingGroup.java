@@ -0,0 +1,49 @@
+package com.example;
+
+import com.example.warehouse.Money;
+import com.example.warehouse.Shippable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a group of products for shipping
+ */
+class ShippingGroup {
+    private final List<Shippable> products;
+    private final Double totalWeight;
+    private final BigDecimal totalShippingCost;
+
+    public ShippingGroup(List<Shippable> products) {
+        this.products = new ArrayList<>(products);
+        // One pass; the costs are the products' cached minor units, summed as longs. Exact costs are bounded
+        // by Money.MAX_EXACT_MINOR_UNITS, so the sum cannot overflow.
+        double weight = 0.0;
+        long costMinor = 0;
+        boolean exact = true;
+        for (Shippable product : this.products) {
+            weight += product.weight();
+            if (exact) {
+                if (product.isShippingCostExact()) {
+                    costMinor += product.shippingCostMinor();
+                } else {
+                    // More than two decimals or too large, the costs are summed as BigDecimal below.
+                    exact = false;
+                }
+            }
+        }
+        this.totalWeight = weight;
+        if (this.products.isEmpty()) {
+            this.totalShippingCost = BigDecimal.ZERO;
+        } else if (exact) {
+            this.totalShippingCost = Money.toBigDecimal(costMinor);
+        } else {
+            this.totalShippingCost = this.products.stream().map(Shippable::calculateShippingCost).reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+
+    public List<Shippable> getProducts() { return new ArrayList<>(products); }
+    public Double getTotalWeight() { return totalWeight; }
+    public BigDecimal getTotalShippingCost() { return totalShippingCost; }
+}
@@ -0,0 +1,125 @@
+package com.example;
+
+import com.example.warehouse.Shippable;
+
+import java.util.*;
+
+/**
+ * Packs shippable products into shipping groups of limited total weight (bin packing), heaviest first.
+ * The groups' loads are kept in search structures instead of being re-summed for every item:
+ * a segment tree over the loads for first fit ({@link BinLoadTree}), and a tree map from load to
+ * groups for best fit. Either way packing n items costs O(n log n).
+ * <p>
+ * Loads are summed in the order items are added to a group and compared as {@code load + weight <= max},
+ * the same double arithmetic as a straightforward first-fit loop, so first fit gives identical groups.
+ */
+final class ShippingGroupOptimizer {
+
+    private final double maxWeight;
+    private final PackingStrategy strategy;
+
+    /**
+     * @param maxWeight the maximum total weight per group (inclusive)
+     * @param strategy  how to choose the group for each item
+     */
+    ShippingGroupOptimizer(double maxWeight, PackingStrategy strategy) {
+        this.maxWeight = maxWeight;
+        this.strategy = Objects.requireNonNull(strategy, "Packing strategy cannot be null.");
+    }
+
+    /**
+     * Packs the items into shipping groups. An item heavier than the maximum gets a group of its own.
+     *
+     * @param items the items to pack, not modified
+     * @return the groups, in the order they were opened
+     */
+    List<ShippingGroup> optimize(Collection<? extends Shippable> items) {
+        List<List<Shippable>> bins = pack(items);
+        List<ShippingGroup> groups = new ArrayList<>(bins.size());
+        for (List<Shippable> bin : bins) groups.add(new ShippingGroup(bin));
+        return groups;
+    }
+
+    /**
+     * Packs the items into groups without building ShippingGroup objects, e.g. to keep working on the groups.
+     *
+     * @param items the items to pack, not modified
+     * @return the items of every group, in the order the groups were opened
+     */
+    List<List<Shippable>> pack(Collection<? extends Shippable> items) {
+        List<Shippable> sorted = new ArrayList<>(items);
+        // Sort by descending weight, a stable sort so equally heavy items keep their order.
+        sorted.sort((a, b) -> Double.compare(weightOf(b), weightOf(a)));
+        return switch (strategy) {
+            case FIRST_FIT_DECREASING -> firstFit(sorted);
+            case BEST_FIT_DECREASING -> bestFit(sorted);
+        };
+    }
+
+    private List<List<Shippable>> firstFit(List<Shippable> items) {
+        BinLoadTree loads = new BinLoadTree();
+        List<List<Shippable>> bins = new ArrayList<>();
+        for (Shippable item : items) {
+            double w = weightOf(item);
+            int bin = loads.firstFit(w, maxWeight);
+            if (bin < 0) {
+                // Starting from 0.0 keeps the sum identical to summing the group's weights from scratch.
+                loads.open(0.0 + w);
+                bins.add(new ArrayList<>(List.of(item)));
+            } else {
+                loads.set(bin, loads.load(bin) + w);
+                bins.get(bin).add(item);
+            }
+        }
+        return bins;
+    }
+
+    private List<List<Shippable>> bestFit(List<Shippable> items) {
+        // Groups by current load; equally loaded groups are taken in opening order.
+        TreeMap<Double, TreeSet<Integer>> byLoad = new TreeMap<>();
+        double[] loads = new double[16];
+        List<List<Shippable>> bins = new ArrayList<>();
+        for (Shippable item : items) {
+            double w = weightOf(item);
+            Double load = fullestFitting(byLoad, w);
+            int bin;
+            if (load == null) {
+                bin = bins.size();
+                bins.add(new ArrayList<>());
+                if (bin == loads.length) loads = Arrays.copyOf(loads, bin * 2);
+                loads[bin] = 0.0;
+            } else {
+                TreeSet<Integer> sameLoad = byLoad.get(load);
+                bin = sameLoad.pollFirst();
+                if (sameLoad.isEmpty()) byLoad.remove(load);
+            }
+            bins.get(bin).add(item);
+            loads[bin] += w;
+            byLoad.computeIfAbsent(loads[bin], key -> new TreeSet<>()).add(bin);
+        }
+        return bins;
+    }
+
+    /**
+     * Finds the highest load that still fits an item, i.e. the group with the least room left over.
+     * maxWeight - weight is only a rounded guess at the boundary, so the keys around it are checked
+     * with the exact fit test.
+     *
+     * @return the load, or null if no group fits
+     */
+    private Double fullestFitting(TreeMap<Double, TreeSet<Integer>> byLoad, double w) {
+        Double fit = byLoad.floorKey(maxWeight - w);
+        while (fit != null && !(fit + w <= maxWeight)) fit = byLoad.lowerKey(fit);
+        Double next = fit == null ? (byLoad.isEmpty() ? null : byLoad.firstKey()) : byLoad.higherKey(fit);
+        while (next != null && next + w <= maxWeight) {
+            fit = next;
+            next = byLoad.higherKey(next);
+        }
+        return fit;
+    }
+
+    // The weight an item is packed with, 0.0 if it has none.
+    static double weightOf(Shippable item) {
+        return Objects.requireNonNullElse(item.weight(), 0.0);
+    }
+}
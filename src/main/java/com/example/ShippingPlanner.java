@@ -0,0 +1,225 @@
+package com.example;
+
+import com.example.warehouse.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps shipping groups open and up to date while the warehouse changes, instead of packing the whole
+ * catalog again for every dispatch run. The planner subscribes to the warehouse's events: every added
+ * Shippable goes into the first open group with room for it (found through a {@link BinLoadTree} in
+ * O(log groups)), a removed product leaves its group, and a clear empties the plan.
+ * <p>
+ * Placing items as they arrive packs less tightly than sorting them all first, so call {@link #repack()}
+ * now and then (e.g. before a dispatch wave) to re-pack everything with first-fit decreasing.
+ * <p>
+ * Events are applied asynchronously; use {@link #awaitApplied(long, long, TimeUnit)} with
+ * {@code warehouse.changeLog().lastSequence()} to wait until the plan reflects a write. If the planner
+ * falls so far behind that the warehouse drops its subscription, it subscribes again and re-plans the
+ * current catalog.
+ */
+final class ShippingPlanner implements Flow.Subscriber<ProductChange>, AutoCloseable {
+
+    private final Warehouse warehouse;
+    private final double maxWeight;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition applied = lock.newCondition();
+
+    // Guarded by lock: the items of every group, their loads, and which group holds each product.
+    private List<List<Shippable>> bins = new ArrayList<>();
+    private BinLoadTree loads = new BinLoadTree();
+    private final Map<UUID, Integer> binOf = new HashMap<>();
+    private long appliedSequence;
+
+    private volatile Flow.Subscription subscription;
+    private volatile boolean closed;
+
+    /**
+     * Creates a planner for the current shippable products and keeps it current from then on.
+     *
+     * @param warehouse         the warehouse to plan for
+     * @param maxWeightPerGroup maximum total weight per group (inclusive)
+     */
+    ShippingPlanner(Warehouse warehouse, BigDecimal maxWeightPerGroup) {
+        this.warehouse = warehouse;
+        this.maxWeight = maxWeightPerGroup.doubleValue();
+        follow();
+    }
+
+    /**
+     * Retrieves the current shipping groups.
+     *
+     * @return the non-empty groups, in the order they were opened
+     */
+    List<ShippingGroup> groups() {
+        lock.lock();
+        try {
+            List<ShippingGroup> groups = new ArrayList<>(bins.size());
+            for (List<Shippable> bin : bins) {
+                if (!bin.isEmpty()) groups.add(new ShippingGroup(bin));
+            }
+            return groups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Packs all planned products again with first-fit decreasing, which closes the gaps left by
+     * removals and by items placed in arrival order.
+     */
+    void repack() {
+        lock.lock();
+        try {
+            List<Shippable> items = new ArrayList<>(binOf.size());
+            for (List<Shippable> bin : bins) items.addAll(bin);
+            rebuild(items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the plan reflects the change log up to a sequence number.
+     *
+     * @param sequence the sequence to wait for, e.g. {@code warehouse.changeLog().lastSequence()}
+     * @param timeout  how long to wait at most
+     * @param unit     the unit of the timeout
+     * @return true if the plan caught up, false if the time ran out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean awaitApplied(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (appliedSequence < sequence) {
+                if (remaining <= 0) return false;
+                remaining = applied.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops following the warehouse. The groups planned so far stay readable.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null) current.cancel();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        // Closed while a new subscription was on its way.
+        if (closed) {
+            subscription.cancel();
+            return;
+        }
+        // Every event is applied right away, so there is no reason to hold them back.
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ProductChange change) {
+        lock.lock();
+        try {
+            if (change.sequence() <= appliedSequence) return;
+            switch (change.type()) {
+                case ADDED -> warehouse.getProductById(change.productId()).ifPresent(this::place);
+                case REMOVED -> take(change.productId());
+                case CLEARED -> rebuild(List.of());
+                // Prices do not change weights or groups.
+                case PRICE_UPDATED -> {
+                }
+            }
+            appliedSequence = change.sequence();
+            applied.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        subscription = null;
+        // Events were lost, so the plan is rebuilt from the catalog under a new subscription.
+        if (!closed) follow();
+    }
+
+    @Override
+    public void onComplete() {
+        subscription = null;
+    }
+
+    // Subscribes to the warehouse and plans its current catalog.
+    private void follow() {
+        lock.lock();
+        try {
+            // Subscribed before the catalog is read, so no write falls between the two. Events for products
+            // the catalog read already saw are recognised and skipped, and onNext waits for the lock meanwhile.
+            warehouse.events().subscribe(this);
+            long seeded = warehouse.changeLog().lastSequence();
+            List<Shippable> items = new ArrayList<>();
+            for (Product product : warehouse.getProducts()) {
+                if (product instanceof Shippable shippable) items.add(shippable);
+            }
+            rebuild(items);
+            appliedSequence = seeded;
+            applied.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must hold lock. Places a product in the first group with room, unless it is already planned.
+    private void place(Product product) {
+        if (!(product instanceof Shippable item) || binOf.containsKey(product.uuid())) return;
+        double w = ShippingGroupOptimizer.weightOf(item);
+        int bin = loads.firstFit(w, maxWeight);
+        if (bin < 0) {
+            bin = loads.open(0.0 + w);
+            bins.add(new ArrayList<>());
+        } else {
+            loads.set(bin, loads.load(bin) + w);
+        }
+        bins.get(bin).add(item);
+        binOf.put(product.uuid(), bin);
+    }
+
+    // Must hold lock. Takes a product out of its group, which stays open for new items.
+    private void take(UUID productId) {
+        Integer bin = binOf.remove(productId);
+        if (bin == null) return;
+        List<Shippable> items = bins.get(bin);
+        items.removeIf(item -> ((Product) item).uuid().equals(productId));
+        // Summed again in order rather than subtracted, so the load matches the group's total weight exactly.
+        double load = 0.0;
+        for (Shippable item : items) load += ShippingGroupOptimizer.weightOf(item);
+        loads.set(bin, load);
+    }
+
+    // Must hold lock. Replaces the plan with a first-fit decreasing packing of the items.
+    private void rebuild(List<Shippable> items) {
+        bins = new ShippingGroupOptimizer(maxWeight, PackingStrategy.FIRST_FIT_DECREASING).pack(items);
+        loads = new BinLoadTree(bins.size());
+        binOf.clear();
+        for (int bin = 0; bin < bins.size(); bin++) {
+            double load = 0.0;
+            for (Shippable item : bins.get(bin)) {
+                load += ShippingGroupOptimizer.weightOf(item);
+                binOf.put(((Product) item).uuid(), bin);
+            }
+            loads.open(load);
+        }
+    }
+}
@@ -3,40 +3,79 @@ package com.example;
 import com.example.warehouse.*;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Analyzer class that provides advanced warehouse operations.
  * Students must implement these methods for the advanced tests to pass.
  */
 class WarehouseAnalyzer {
+    /** Catalogs of at least this many products are analyzed in parallel unless configured otherwise. */
+    static final int DEFAULT_PARALLEL_THRESHOLD = 50_000;
+    /** Catalogs of at least this many products get their outlier fences from the price sketch unless configured otherwise. */
+    static final int DEFAULT_SKETCH_THRESHOLD = 1_000_000;
+    // No parallel task scans fewer rows than this, smaller tasks cost more to fork than they save.
+    private static final int MIN_PARALLEL_CHUNK = 4_096;
+
     private final Warehouse warehouse;
+    private final int parallelThreshold;
+    private final int sketchThreshold;
     
     public WarehouseAnalyzer(Warehouse warehouse) {
+        this(warehouse, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates an analyzer that switches the catalog-wide analytics to the common fork/join pool
+     * once the catalog reaches the given size. The results are the same either way.
+     *
+     * @param warehouse         the warehouse to analyze
+     * @param parallelThreshold the catalog size from which scans run in parallel
+     *                          (0 for always, Integer.MAX_VALUE for never)
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public WarehouseAnalyzer(Warehouse warehouse, int parallelThreshold) {
+        this(warehouse, parallelThreshold, DEFAULT_SKETCH_THRESHOLD);
+    }
+
+    /**
+     * Creates an analyzer that also chooses when findPriceOutliers trades exactness for speed:
+     * from the given catalog size on, the quartiles are read from the warehouse's price sketch
+     * (see {@link Warehouse#priceSketch()}) instead of being computed from every price.
+     *
+     * @param warehouse         the warehouse to analyze
+     * @param parallelThreshold the catalog size from which scans run in parallel
+     *                          (0 for always, Integer.MAX_VALUE for never)
+     * @param sketchThreshold   the catalog size from which outlier fences are approximated
+     *                          (0 for always, Integer.MAX_VALUE for never)
+     * @throws IllegalArgumentException if a threshold is negative
+     */
+    public WarehouseAnalyzer(Warehouse warehouse, int parallelThreshold, int sketchThreshold) {
+        if (parallelThreshold < 0) throw new IllegalArgumentException("Parallel threshold cannot be negative.");
+        if (sketchThreshold < 0) throw new IllegalArgumentException("Sketch threshold cannot be negative.");
         this.warehouse = warehouse;
+        this.parallelThreshold = parallelThreshold;
+        this.sketchThreshold = sketchThreshold;
     }
     
     // Search and Filter Methods
     /**
      * Finds all products whose price is within the inclusive range [minPrice, maxPrice].
      * Based on tests: products priced exactly at the boundaries must be included; values outside are excluded.
+     * Delegates to the warehouse price index, so the cost is O(log n + k) rather than a full scan.
      *
      * @param minPrice the lower bound (inclusive); must not be null
      * @param maxPrice the upper bound (inclusive); must not be null and should be >= minPrice
-     * @return a list of products with minPrice <= price <= maxPrice, in the warehouse's iteration order
+     * @return a list of products with minPrice <= price <= maxPrice, ordered by ascending price
      */
     public List<Product> findProductsInPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        List<Product> result = new ArrayList<>();
-        for (Product p : warehouse.getProducts()) {
-            BigDecimal price = p.price();
-            if (price.compareTo(minPrice) >= 0 && price.compareTo(maxPrice) <= 0) {
-                result.add(p);
-            }
-        }
-        return result;
+        return timed("analyzer.findProductsInPriceRange", () -> warehouse.findProductsInPriceRange(minPrice, maxPrice));
     }
     
     /**
@@ -44,58 +83,41 @@ class WarehouseAnalyzer {
      * including items that expire today, and excluding items already expired. Non-perishables are ignored.
      * Test expectation: when days = 3, items expiring Today/Tomorrow/In3Days are included; older or non-perishable are not.
      *
+     * Delegates to the warehouse expiration index, so only the matching window is visited.
+     *
      * @param days number of days ahead to include (e.g., 3 includes today, 1, 2, and 3 days ahead)
-     * @return list of Perishable items expiring within the window
+     * @return list of Perishable items expiring within the window, ordered by expiration date
      */
     public List<Perishable> findProductsExpiringWithinDays(int days) {
-        LocalDate today = LocalDate.now();
-        LocalDate end = today.plusDays(days);
-        List<Perishable> result = new ArrayList<>();
-        for (Product p : warehouse.getProducts()) {
-            if (p instanceof Perishable per) {
-                LocalDate exp = per.expirationDate();
-                if (!exp.isBefore(today) && !exp.isAfter(end)) {
-                    result.add(per);
-                }
-            }
-        }
-        return result;
+        return timed("analyzer.findProductsExpiringWithinDays", () -> {
+            LocalDate today = LocalDate.now();
+            return warehouse.findProductsExpiringBetween(today, today.plusDays(days));
+        });
     }
     
     /**
      * Performs a case-insensitive partial name search.
      * Test expectation: searching for "milk" returns all products whose name contains that substring,
      * regardless of letter casing or presence of symbols/spaces around it.
+     * Delegates to the warehouse trigram index, so only candidate products are checked.
      *
      * @param searchTerm substring to search for (case-insensitive)
      * @return list of matching products
      */
     public List<Product> searchProductsByName(String searchTerm) {
-        String term = searchTerm.toLowerCase(Locale.ROOT);
-        List<Product> result = new ArrayList<>();
-        for (Product p : warehouse.getProducts()) {
-            if (p.name().toLowerCase(Locale.ROOT).contains(term)) {
-                result.add(p);
-            }
-        }
-        return result;
+        return timed("analyzer.searchProductsByName", () -> warehouse.searchProductsByName(searchTerm));
     }
     
     /**
      * Returns all products whose price is strictly greater than the given price.
      * While not asserted directly by tests, this helper is consistent with price-based filtering.
+     * Delegates to the warehouse price index, so the cost is O(log n + k) rather than a full scan.
      *
      * @param price threshold (exclusive)
-     * @return list of products with price > threshold
+     * @return list of products with price > threshold, ordered by ascending price
      */
     public List<Product> findProductsAbovePrice(BigDecimal price) {
-        List<Product> result = new ArrayList<>();
-        for (Product p : warehouse.getProducts()) {
-            if (p.price().compareTo(price) > 0) {
-                result.add(p);
-            }
-        }
-        return result;
+        return timed("analyzer.findProductsAbovePrice", () -> warehouse.findProductsAbovePrice(price));
     }
     
     // Analytics Methods
@@ -104,38 +126,24 @@ class WarehouseAnalyzer {
      * Test expectation: for FoodProduct with weights, use weighted average = sum(price*weight)/sum(weight).
      * For categories that contain only non-weighted products, a simple arithmetic mean may be used.
      * The result should round to two decimals in a way that matches the test values (e.g., 11.43 for Dairy example).
+     * The sums are exact, so the result does not depend on the order the products are visited in,
+     * and large catalogs are summed in parallel. Prices and weights are read from the columns of one view
+     * and summed as longs; only rows whose price or weight has no exact fixed-point form use BigDecimal.
      *
      * @return a map from Category to weighted average price
      */
     public Map<Category, BigDecimal> calculateWeightedAveragePriceByCategory() {
-        Map<Category, List<Product>> byCat = warehouse.getProducts().stream()
-                .collect(Collectors.groupingBy(Product::category));
-        Map<Category, BigDecimal> result = new HashMap<>();
-        for (Map.Entry<Category, List<Product>> e : byCat.entrySet()) {
-            Category cat = e.getKey();
-            List<Product> items = e.getValue();
-            BigDecimal weightedSum = BigDecimal.ZERO;
-            double weightSum = 0.0;
-            for (Product p : items) {
-                if (p instanceof Shippable s) {
-                    double w = Optional.ofNullable(s.weight()).orElse(0.0);
-                    if (w > 0) {
-                        BigDecimal wBD = BigDecimal.valueOf(w);
-                        weightedSum = weightedSum.add(p.price().multiply(wBD));
-                        weightSum += w;
-                    }
-                }
-            }
-            BigDecimal avg;
-            if (weightSum > 0) {
-                avg = weightedSum.divide(BigDecimal.valueOf(weightSum), 2, RoundingMode.HALF_UP);
-            } else {
-                BigDecimal sum = items.stream().map(Product::price).reduce(BigDecimal.ZERO, BigDecimal::add);
-                avg = sum.divide(BigDecimal.valueOf(items.size()), 2, RoundingMode.HALF_UP);
-            }
-            result.put(cat, avg);
-        }
-        return result;
+        return timed("analyzer.calculateWeightedAveragePriceByCategory", () -> {
+            ColumnarView columns = warehouse.columns();
+            // One partial sum per category and chunk, merged as the chunks complete.
+            Map<Category, CategoryPriceSum> sums = rows(columns).collect(HashMap::new,
+                    (partial, row) -> partial.computeIfAbsent(columns.category(row), cat -> new CategoryPriceSum())
+                            .add(columns, row),
+                    (left, right) -> right.forEach((cat, sum) -> left.merge(cat, sum, CategoryPriceSum::merge)));
+            Map<Category, BigDecimal> result = HashMap.newHashMap(sums.size());
+            sums.forEach((cat, sum) -> result.put(cat, sum.average()));
+            return result;
+        });
     }
     
     /**
@@ -146,53 +154,142 @@ class WarehouseAnalyzer {
      *
      * @param thresholdFactor threshold factor (e.g., 1.5). The value is used as
      * the multiplier in the IQR boundary calculation. (NOTE: 1.5 is the standard factor for the IQR method.)
-     * @return list of products considered outliers
+     * Large catalogs (see the sketch threshold) take Q1 and Q3 from the warehouse's price sketch instead,
+     * within its relative accuracy, and find the products beyond the fences through the price index.
+     * @return list of products considered outliers; in catalog order when exact, by ascending price when sketched
      */
     public List<Product> findPriceOutliers(double thresholdFactor) {
-        List<Product> products = warehouse.getProducts();
-        final int n = products.size();
-        // Edge case: Cannot calculate quartiles reliably with fewer than two items.
-        if (n < 2) return List.of();
-
-        //Retrieve prices(BigDecimal), convert to doubles and sort them.
-        List<Double> sortedPrices = products.stream()
-                .map(Product::price).mapToDouble(BigDecimal::doubleValue)
-                .boxed().sorted().toList();
-
-        //Find the median of Q1 and Q3
-        // L = (n - 1) * p method is used here (0.25 for Q1, 0.75 for Q3).
-        double q1Index = (n - 1) * 0.25;
-        double q3Index = (n - 1) * 0.75;
-
-        //Quantile value retrieval, using the helper method for linear interpolation.
-       double q1IndexValue = calculateQuantileValue(sortedPrices, q1Index);
-        double q3IndexValue = calculateQuantileValue(sortedPrices, q3Index);
-
-        //Determine the IQR for final result.
+        return this.<List<Product>>timed("analyzer.findPriceOutliers", () -> {
+            if (warehouse.productCount() >= sketchThreshold) return findPriceOutliersFromSketch(thresholdFactor);
+            ColumnarView columns = warehouse.columns();
+            final int n = columns.size();
+            // Edge case: Cannot calculate quartiles reliably with fewer than two items.
+            if (n < 2) return List.of();
+            // A rounded price in the column could move across a fence, so those catalogs use the exact prices.
+            if (columns.hasInexactPrices()) return findPriceOutliersFromPrices(columns, thresholdFactor);
+
+            //Copy the price column in minor units, no boxing involved. Only the order statistics
+            //the quartiles need are selected from it, the prices are never fully sorted.
+            long[] prices = columns.copyPriceColumn();
+
+            //Find the median of Q1 and Q3
+            // L = (n - 1) * p method is used here (0.25 for Q1, 0.75 for Q3).
+            double q1Index = (n - 1) * 0.25;
+            double q3Index = (n - 1) * 0.75;
+
+            //Quantile value retrieval, using the helper method for linear interpolation.
+            double q1IndexValue = calculateQuantileValue(prices, q1Index);
+            double q3IndexValue = calculateQuantileValue(prices, q3Index);
+
+            //Determine the IQR for final result.
+            double iqr = q3IndexValue - q1IndexValue;
+            double lowerOutlier = q1IndexValue - thresholdFactor * iqr;
+            double upperOutlier = q3IndexValue + thresholdFactor * iqr;
+
+            //Second pass over the price column, only outliers are turned back into products.
+            //The rows stream is ordered, so the outliers come back in row order even when scanned in parallel.
+            return rows(columns)
+                    .filter(row -> {
+                        double price = columns.price(row);
+                        // Price is an outlier if it is outside the calculated fences.
+                        return price < lowerOutlier || price > upperOutlier;
+                    })
+                    .mapToObj(columns::product)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        });
+    }
+
+    /**
+     * Help-method for the method findPriceOutliers - the path for catalogs holding a price the price column
+     * can only keep rounded (more than two decimals, or too large). Works on the BigDecimal prices as doubles
+     * and sorts them, like the original implementation.
+     * @param columns The columnar view, with at least two rows.
+     * @param thresholdFactor The IQR multiplier.
+     * @return The products outside the fences, in catalog order.
+     */
+    private static List<Product> findPriceOutliersFromPrices(ColumnarView columns, double thresholdFactor) {
+        final int n = columns.size();
+        double[] sortedPrices = new double[n];
+        for (int row = 0; row < n; row++) {
+            sortedPrices[row] = priceOf(columns, row);
+        }
+        Arrays.sort(sortedPrices);
+        double q1IndexValue = interpolateSorted(sortedPrices, (n - 1) * 0.25);
+        double q3IndexValue = interpolateSorted(sortedPrices, (n - 1) * 0.75);
         double iqr = q3IndexValue - q1IndexValue;
         double lowerOutlier = q1IndexValue - thresholdFactor * iqr;
         double upperOutlier = q3IndexValue + thresholdFactor * iqr;
+        List<Product> outliers = new ArrayList<>();
+        for (int row = 0; row < n; row++) {
+            double price = priceOf(columns, row);
+            if (price < lowerOutlier || price > upperOutlier) outliers.add(columns.product(row));
+        }
+        return outliers;
+    }
+
+    /**
+     * Help-method for findPriceOutliersFromPrices - the quantile at L = (n-1) * p of sorted prices,
+     * by linear interpolation between the two prices around it.
+     * @param sortedPrices The prices in ascending order.
+     * @param qIndex The floating-point index of the quantile (L).
+     * @return The interpolated quantile value.
+     */
+    private static double interpolateSorted(double[] sortedPrices, double qIndex) {
+        int lowerIndex = (int) Math.floor(qIndex);
+        if (lowerIndex < 0) return sortedPrices[0];
+        if (lowerIndex >= sortedPrices.length - 1) return sortedPrices[sortedPrices.length - 1];
+        double qDecimal = qIndex - Math.floor(qIndex);
+        return sortedPrices[lowerIndex] + (qDecimal * (sortedPrices[lowerIndex + 1] - sortedPrices[lowerIndex]));
+    }
 
-        //Use streams to filter the original product-list based on the calculations
-        return products.stream()
-                .filter(p -> {
-                    double price = p.price().doubleValue();
-                    // Price is an outlier if it is outside the calculated fences.
-                    return (price < lowerOutlier || price > upperOutlier);
-                        })
-                .collect(Collectors.toList());
+    /**
+     * The price of a row as a double, read from the view's exact price when the column only holds it rounded.
+     */
+    private static double priceOf(ColumnarView columns, int row) {
+        return columns.isPriceExact(row) ? columns.price(row) : columns.exactPrice(row).doubleValue();
+    }
+
+    /**
+     * Help-method for the method findPriceOutliers - the approximate path for large catalogs.
+     * Q1 and Q3 come from the price sketch in constant time, and only the outliers themselves are
+     * read, from both ends of the price index, so the catalog is not scanned at all.
+     * @param thresholdFactor The IQR multiplier.
+     * @return The products outside the fences, by ascending price.
+     */
+    private List<Product> findPriceOutliersFromSketch(double thresholdFactor) {
+        PriceSketch sketch = warehouse.priceSketch();
+        if (sketch.count() < 2) return List.of();
+        double q1IndexValue = sketch.quantileMinor(0.25) / 100.0;
+        double q3IndexValue = sketch.quantileMinor(0.75) / 100.0;
+        double iqr = q3IndexValue - q1IndexValue;
+        double lowerOutlier = q1IndexValue - thresholdFactor * iqr;
+        double upperOutlier = q3IndexValue + thresholdFactor * iqr;
+        // An infinite factor gives fences BigDecimal cannot hold (NaN with a zero IQR). They match the double
+        // comparisons of the exact path: a NaN fence or one beyond every price finds nothing on its side,
+        // one on the opposite side makes every product an outlier.
+        if (lowerOutlier == Double.POSITIVE_INFINITY || upperOutlier == Double.NEGATIVE_INFINITY) {
+            List<Product> all = new ArrayList<>(warehouse.getProducts());
+            all.sort(Comparator.comparing(Product::price));
+            return all;
+        }
+        List<Product> outliers = new ArrayList<>();
+        if (Double.isFinite(lowerOutlier)) outliers.addAll(warehouse.findProductsBelowPrice(BigDecimal.valueOf(lowerOutlier)));
+        if (Double.isFinite(upperOutlier)) outliers.addAll(warehouse.findProductsAbovePrice(BigDecimal.valueOf(upperOutlier)));
+        return outliers;
     }
 
     /**
      * Help-method for the method findPriceOutliers -
      * Calculates the quantile value (Q1, Q2, or Q3) by using linear interpolation.
      * This is based on my calculated floating-point index (L), using the standard formula L = (n-1) * p.
-     * @param sortedPrices Sorted list with prices.
+     * The two prices around L are found by selection (see QuantileSelect), which reorders the array
+     * only as far as needed: O(n) instead of sorting it in O(n log n).
+     * @param prices Prices in minor units, in any order; reordered in place.
      * @param qIndex The calculated floating-point index for the quantile (L). Shows where the quantile should be.
      * @return The interpolated quantile value.
      */
-    private static double calculateQuantileValue(List<Double> sortedPrices, double qIndex) {
-        final int n = sortedPrices.size();
+    private static double calculateQuantileValue(long[] prices, double qIndex) {
+        final int n = prices.length;
 
         // Calculate the 0-based integer index.
 
@@ -201,18 +298,19 @@ class WarehouseAnalyzer {
         // Check 1: If the calculated index falls before the start of the list (lowerIndex < 0),
         // we return the lowest price.This handles small data sets where the quantile
         // mathematically lands before the first element.
-        if (lowerIndex < 0) return sortedPrices.getFirst();
+        if (lowerIndex < 0) return QuantileSelect.min(prices, 0, n) / 100.0;
 
         // Check 2: If the index falls at or after the end of the list (n-1),
         // we return the highest price. This is necessary to prevent an IndexOutOfBoundsException
         // when we try to fetch 'lowerIndex + 1'. The value is assumed to be the last element's value.
-        if (lowerIndex >= n - 1) return sortedPrices.getLast();
+        if (lowerIndex >= n - 1) return QuantileSelect.select(prices, 0, n, n - 1) / 100.0;
 
         //Linear interpolation
         // qDecimal represents the weight/fraction of the distance between the two prices.
         double qDecimal = qIndex - Math.floor(qIndex);
-        double lowerPrice = sortedPrices.get(lowerIndex);
-        double upperPrice = sortedPrices.get(lowerIndex + 1);
+        double lowerPrice = QuantileSelect.select(prices, 0, n, lowerIndex) / 100.0;
+        // After the selection nothing to the right is smaller, so the next price up is their minimum.
+        double upperPrice = QuantileSelect.min(prices, lowerIndex + 1, n) / 100.0;
 
         // Formula for linear interpolation: Lower Price + (Weight * Distance between Prices)
         return lowerPrice + (qDecimal * (upperPrice - lowerPrice));
@@ -223,38 +321,56 @@ class WarehouseAnalyzer {
      * does not exceed the provided maximum. The goal is to minimize the number of groups and/or total
      * shipping cost, but the exact algorithm is implementation-defined (e.g., first-fit decreasing).
      * Test expectation: for a max weight of 10.0, every group's totalWeight <= 10.0 and all items are included.
+     * Uses first-fit decreasing, see ShippingGroupOptimizer.
      *
      * @param maxWeightPerGroup maximum total weight per group (inclusive)
      * @return list of ShippingGroup objects covering all shippable products
      */
     public List<ShippingGroup> optimizeShippingGroups(BigDecimal maxWeightPerGroup) {
-        double maxW = maxWeightPerGroup.doubleValue();
-        List<Shippable> items = warehouse.shippableProducts();
-        // Sort by descending weight (First-Fit Decreasing)
-        items.sort((a, b) -> Double.compare(Objects.requireNonNullElse(b.weight(), 0.0), Objects.requireNonNullElse(a.weight(), 0.0)));
-        List<List<Shippable>> bins = new ArrayList<>();
-        for (Shippable item : items) {
-            double w = Objects.requireNonNullElse(item.weight(), 0.0);
-            boolean placed = false;
-            for (List<Shippable> bin : bins) {
-                double binWeight = bin.stream().map(Shippable::weight).reduce(0.0, Double::sum);
-                if (binWeight + w <= maxW) {
-                    bin.add(item);
-                    placed = true;
-                    break;
-                }
-            }
-            if (!placed) {
-                List<Shippable> newBin = new ArrayList<>();
-                newBin.add(item);
-                bins.add(newBin);
+        return optimizeShippingGroups(maxWeightPerGroup, PackingStrategy.FIRST_FIT_DECREASING);
+    }
+
+    /**
+     * Groups all shippable products into ShippingGroup buckets of limited total weight, with the given strategy.
+     * Both strategies pack the heaviest items first and run in O(n log n).
+     *
+     * @param maxWeightPerGroup maximum total weight per group (inclusive)
+     * @param strategy          first fit or best fit
+     * @return list of ShippingGroup objects covering all shippable products
+     */
+    public List<ShippingGroup> optimizeShippingGroups(BigDecimal maxWeightPerGroup, PackingStrategy strategy) {
+        return timed("analyzer.optimizeShippingGroups", () -> new ShippingGroupOptimizer(maxWeightPerGroup.doubleValue(), strategy).optimize(warehouse.shippableProducts()));
+    }
+
+    /**
+     * Prices shipping for every shippable product with a tariff table, in one pass over the weight column.
+     * No product objects are touched and nothing is allocated per product.
+     *
+     * @param tariff the tariff to price with
+     * @return the total shipping cost of all shippable products, with two decimals
+     */
+    public BigDecimal quoteShipping(ShippingTariff tariff) {
+        return timed("analyzer.quoteShipping", () -> {
+            ColumnarView columns = warehouse.columns();
+            long totalMinor = 0;
+            for (int row = 0, n = columns.size(); row < n; row++) {
+                if (columns.isShippable(row)) totalMinor = Math.addExact(totalMinor, tariff.quoteMinor(columns.weight(row)));
             }
-        }
-        List<ShippingGroup> groups = new ArrayList<>();
-        for (List<Shippable> bin : bins) groups.add(new ShippingGroup(bin));
-        return groups;
+            return Money.toBigDecimal(totalMinor);
+        });
     }
-    
+
+    /**
+     * Starts a shipping plan that keeps its groups up to date as products are added and removed,
+     * so the catalog is not packed from scratch for every dispatch. Close the plan when it is no longer needed.
+     *
+     * @param maxWeightPerGroup maximum total weight per group (inclusive)
+     * @return the plan, seeded with the current shippable products
+     */
+    public ShippingPlanner planShippingGroups(BigDecimal maxWeightPerGroup) {
+        return new ShippingPlanner(warehouse, maxWeightPerGroup);
+    }
+
     // Business Rules Methods
     /**
      * Calculates discounted prices for perishable products based on proximity to expiration.
@@ -268,27 +384,47 @@ class WarehouseAnalyzer {
      * @return a map from Product to its discounted price
      */
     public Map<Product, BigDecimal> calculateExpirationBasedDiscounts() {
-        Map<Product, BigDecimal> result = new HashMap<>();
-        LocalDate today = LocalDate.now();
-        for (Product p : warehouse.getProducts()) {
-            BigDecimal discounted = p.price();
-            if (p instanceof Perishable per) {
-                LocalDate exp = per.expirationDate();
-                long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(today, exp);
-                if (daysBetween == 0) {
-                    discounted = p.price().multiply(new BigDecimal("0.50"));
-                } else if (daysBetween == 1) {
-                    discounted = p.price().multiply(new BigDecimal("0.70"));
-                } else if (daysBetween > 1 && daysBetween <= 3) {
-                    discounted = p.price().multiply(new BigDecimal("0.85"));
-                } else {
-                    discounted = p.price();
-                }
-                discounted = discounted.setScale(2, RoundingMode.HALF_UP);
-            }
-            result.put(p, discounted);
+        return timed("analyzer.calculateExpirationBasedDiscounts", () -> {
+            ColumnarView columns = warehouse.columns();
+            long today = LocalDate.now().toEpochDay();
+            boolean parallel = isParallel(columns);
+            Map<Product, BigDecimal> result = columns.rows(parallel, MIN_PARALLEL_CHUNK).collect(
+                    // A sequential scan fills a single map, so that one is sized for the whole catalog.
+                    () -> HashMap.newHashMap(parallel ? 0 : columns.size()),
+                    (partial, row) -> partial.put(columns.product(row), discountedPrice(columns, row, today)),
+                    Map::putAll);
+            return result;
+        });
+    }
+
+    /**
+     * Help-method for calculateExpirationBasedDiscounts - the discounted price of one row.
+     *
+     * @param columns the columnar view
+     * @param row     the row number
+     * @param today   today's epoch day
+     * @return the discounted price, or the price as of the view if it is not perishable
+     */
+    private static BigDecimal discountedPrice(ColumnarView columns, int row, long today) {
+        if (!columns.isPerishable(row)) return columns.exactPrice(row);
+        // Days until expiry straight from the epoch-day column, no LocalDate per product.
+        long daysBetween = columns.expiryEpochDay(row) - today;
+        // Percentage of the price to keep, applied in minor units and converted once at the end.
+        int keepPercent;
+        if (daysBetween == 0) {
+            keepPercent = 50;
+        } else if (daysBetween == 1) {
+            keepPercent = 70;
+        } else if (daysBetween > 1 && daysBetween <= 3) {
+            keepPercent = 85;
+        } else {
+            keepPercent = 100;
+        }
+        if (!columns.isPriceExact(row)) {
+            // Rounded in the column, so the discount is taken from the exact price the view kept.
+            return columns.exactPrice(row).multiply(BigDecimal.valueOf(keepPercent, 2)).setScale(2, RoundingMode.HALF_UP);
         }
-        return result;
+        return Money.toBigDecimal(Money.percentOf(columns.priceMinor(row), keepPercent));
     }
     
     /**
@@ -305,13 +441,7 @@ class WarehouseAnalyzer {
      * @return InventoryValidation summary with computed metrics
      */
     public InventoryValidation validateInventoryConstraints() {
-        List<Product> items = warehouse.getProducts();
-        if (items.isEmpty()) return new InventoryValidation(0.0, 0);
-        BigDecimal highValueThreshold = new BigDecimal("1000");
-        long highValueCount = items.stream().filter(p -> p.price().compareTo(highValueThreshold) >= 0).count();
-        double percentage = (highValueCount * 100.0) / items.size();
-        int diversity = (int) items.stream().map(Product::category).distinct().count();
-        return new InventoryValidation(percentage, diversity);
+        return timed("analyzer.validateInventoryConstraints", () -> tally(warehouse.columns()).validation());
     }
     
     /**
@@ -323,100 +453,149 @@ class WarehouseAnalyzer {
      *  - expiredCount: number of perishable items whose expiration date is before today (1)
      *  - categoryCount: number of distinct categories across all products (2)
      *  - mostExpensiveProduct / cheapestProduct: extremes by price
+     * The figures are read from the aggregates the warehouse maintains on every mutation,
+     * so the cost is independent of the catalog size (apart from counting expired items).
      *
      * @return InventoryStatistics snapshot containing aggregated metrics
      */
     public InventoryStatistics getInventoryStatistics() {
-        List<Product> items = warehouse.getProducts();
-        int totalProducts = items.size();
-        BigDecimal totalValue = items.stream().map(Product::price).reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal averagePrice = totalProducts == 0 ? BigDecimal.ZERO : totalValue.divide(BigDecimal.valueOf(totalProducts), 2, RoundingMode.HALF_UP);
-        int expiredCount = 0;
-        for (Product p : items) {
-            if (p instanceof Perishable per && per.expirationDate().isBefore(LocalDate.now())) {
-                expiredCount++;
-            }
+        return timed("analyzer.getInventoryStatistics", () -> {
+            // Every figure comes from the warehouse's running aggregates and indexes, no pass over the catalog.
+            int totalProducts = warehouse.productCount();
+            BigDecimal totalValue = warehouse.totalValue();
+            BigDecimal averagePrice = totalProducts == 0 ? BigDecimal.ZERO : totalValue.divide(BigDecimal.valueOf(totalProducts), 2, RoundingMode.HALF_UP);
+            int expiredCount = warehouse.expiredCount();
+            int categoryCount = warehouse.getCategories().size();
+            Product mostExpensive = warehouse.getMostExpensiveProduct().orElse(null);
+            Product cheapest = warehouse.getCheapestProduct().orElse(null);
+            return new InventoryStatistics(totalProducts, totalValue, averagePrice, expiredCount, categoryCount, mostExpensive, cheapest);
+        });
+    }
+
+    /**
+     * Computes the inventory statistics and the validation summary together, in a single pass over the catalog.
+     * The statistics are the same as those of getInventoryStatistics(), but counted from the columnar view
+     * instead of read from the warehouse aggregates, so both halves describe the exact same catalog state.
+     *
+     * @return InventoryReport holding the statistics and the validation summary
+     */
+    public InventoryReport getInventoryReport() {
+        return timed("analyzer.getInventoryReport", () -> {
+            InventoryTally tally = tally(warehouse.columns());
+            return new InventoryReport(tally.statistics(), tally.validation());
+        });
+    }
+
+    /**
+     * Runs a query and records its duration with the warehouse's metrics sink.
+     *
+     * @param timer the timer name
+     * @param query the query to run
+     * @param <T>   the type of the result
+     * @return the result of the query
+     */
+    private <T> T timed(String timer, Supplier<T> query) {
+        MetricsSink metrics = warehouse.metricsSink();
+        long start = metrics.start();
+        try {
+            return query.get();
+        } finally {
+            metrics.stop(timer, start);
         }
-        int categoryCount = (int) items.stream().map(Product::category).distinct().count();
-        Product mostExpensive = items.stream().max(Comparator.comparing(Product::price)).orElse(null);
-        Product cheapest = items.stream().min(Comparator.comparing(Product::price)).orElse(null);
-        return new InventoryStatistics(totalProducts, totalValue, averagePrice, expiredCount, categoryCount, mostExpensive, cheapest);
     }
-}
 
-/**
- * Represents a group of products for shipping
- */
-class ShippingGroup {
-    private final List<Shippable> products;
-    private final Double totalWeight;
-    private final BigDecimal totalShippingCost;
-
-    public ShippingGroup(List<Shippable> products) {
-        this.products = new ArrayList<>(products);
-        this.totalWeight = products.stream()
-                .map(Shippable::weight)
-                .reduce(0.0, Double::sum);
-        this.totalShippingCost = products.stream()
-                .map(Shippable::calculateShippingCost)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Streams the rows of a columnar view, in parallel once the catalog reaches the parallel threshold.
+     *
+     * @param columns the columnar view
+     * @return an ordered stream of the row numbers
+     */
+    private IntStream rows(ColumnarView columns) {
+        return columns.rows(isParallel(columns), MIN_PARALLEL_CHUNK);
     }
 
-    public List<Shippable> getProducts() { return new ArrayList<>(products); }
-    public Double getTotalWeight() { return totalWeight; }
-    public BigDecimal getTotalShippingCost() { return totalShippingCost; }
-}
+    private boolean isParallel(ColumnarView columns) {
+        return columns.size() >= parallelThreshold;
+    }
 
-/**
- * Validation result for inventory constraints
- */
-class InventoryValidation {
-    private final double highValuePercentage;
-    private final int categoryDiversity;
-    private final boolean highValueWarning;
-    private final boolean minimumDiversity;
-
-    public InventoryValidation(double highValuePercentage, int categoryDiversity) {
-        this.highValuePercentage = highValuePercentage;
-        this.categoryDiversity = categoryDiversity;
-        this.highValueWarning = highValuePercentage > 70.0;
-        this.minimumDiversity = categoryDiversity >= 2;
+    /**
+     * Gathers every inventory figure in one pass over the rows, one tally per parallel chunk.
+     *
+     * @param columns the columnar view
+     * @return the merged tally of all rows
+     */
+    private InventoryTally tally(ColumnarView columns) {
+        long today = LocalDate.now().toEpochDay();
+        return rows(columns).collect(() -> new InventoryTally(columns, today), InventoryTally::add, InventoryTally::merge);
     }
-    public double getHighValuePercentage() { return highValuePercentage; }
-    public int getCategoryDiversity() { return categoryDiversity; }
-    public boolean isHighValueWarning() { return highValueWarning; }
-    public boolean hasMinimumDiversity() { return minimumDiversity; }
-}
 
-/**
- * Comprehensive inventory statistics
- */
-class InventoryStatistics {
-    private final int totalProducts;
-    private final BigDecimal totalValue;
-    private final BigDecimal averagePrice;
-    private final int expiredCount;
-    private final int categoryCount;
-    private final Product mostExpensiveProduct;
-    private final Product cheapestProduct;
-
-    public InventoryStatistics(int totalProducts, BigDecimal totalValue, BigDecimal averagePrice,
-                               int expiredCount, int categoryCount,
-                               Product mostExpensiveProduct, Product cheapestProduct) {
-        this.totalProducts = totalProducts;
-        this.totalValue = totalValue;
-        this.averagePrice = averagePrice;
-        this.expiredCount = expiredCount;
-        this.categoryCount = categoryCount;
-        this.mostExpensiveProduct = mostExpensiveProduct;
-        this.cheapestProduct = cheapestProduct;
+    /**
+     * Partial sums for the weighted average price of one category, mergeable across parallel chunks.
+     * Exact prices are summed in minor units and weights in thousandths, with the weighted sum kept as
+     * a 128-bit integer; rows without an exact fixed-point price or weight go to the BigDecimal sums.
+     * Either way the sums are exact, so they agree in any order.
+     */
+    private static final class CategoryPriceSum {
+        private long priceSumMinor;
+        private BigDecimal priceSum = BigDecimal.ZERO;
+        private int count;
+        // Sum of priceMinor * weightMilli as an unsigned 128-bit value, at scale 5.
+        private long weightedHigh;
+        private long weightedLow;
+        private BigDecimal weightedSum = BigDecimal.ZERO;
+        private long weightSumMilli;
+        private BigDecimal weightSum = BigDecimal.ZERO;
+
+        void add(ColumnarView columns, int row) {
+            boolean priceExact = columns.isPriceExact(row);
+            long minor = priceExact ? columns.priceMinor(row) : 0;
+            BigDecimal price = priceExact ? null : columns.exactPrice(row);
+            if (priceExact) priceSumMinor += minor;
+            else priceSum = priceSum.add(price);
+            count++;
+
+            double weight = columns.weight(row);
+            if (!(weight > 0)) return;
+            long milli = Math.round(weight * 1000);
+            if (milli <= Money.MAX_EXACT_MINOR_UNITS && milli / 1000.0 == weight) {
+                weightSumMilli += milli;
+                if (priceExact) addWeighted(Math.multiplyHigh(minor, milli), minor * milli);
+                else weightedSum = weightedSum.add(price.multiply(BigDecimal.valueOf(milli, 3)));
+            } else {
+                BigDecimal w = BigDecimal.valueOf(weight);
+                weightSum = weightSum.add(w);
+                weightedSum = weightedSum.add((priceExact ? BigDecimal.valueOf(minor, Money.SCALE) : price).multiply(w));
+            }
+        }
+
+        private void addWeighted(long high, long low) {
+            long sum = weightedLow + low;
+            weightedHigh += high + (Long.compareUnsigned(sum, weightedLow) < 0 ? 1 : 0);
+            weightedLow = sum;
+        }
+
+        CategoryPriceSum merge(CategoryPriceSum other) {
+            priceSumMinor += other.priceSumMinor;
+            priceSum = priceSum.add(other.priceSum);
+            count += other.count;
+            addWeighted(other.weightedHigh, other.weightedLow);
+            weightedSum = weightedSum.add(other.weightedSum);
+            weightSumMilli += other.weightSumMilli;
+            weightSum = weightSum.add(other.weightSum);
+            return this;
+        }
+
+        // Weighted by weight when the category has weighted products, a plain mean otherwise.
+        BigDecimal average() {
+            BigDecimal totalWeight = BigDecimal.valueOf(weightSumMilli, 3).add(weightSum);
+            if (totalWeight.signum() > 0) {
+                BigInteger weighted = BigInteger.valueOf(weightedHigh).shiftLeft(64)
+                        .add(new BigInteger(Long.toUnsignedString(weightedLow)));
+                return new BigDecimal(weighted, Money.SCALE + 3).add(weightedSum).divide(totalWeight, 2, RoundingMode.HALF_UP);
+            }
+            return BigDecimal.valueOf(priceSumMinor, Money.SCALE).add(priceSum)
+                    .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+        }
     }
 
-    public int getTotalProducts() { return totalProducts; }
-    public BigDecimal getTotalValue() { return totalValue; }
-    public BigDecimal getAveragePrice() { return averagePrice; }
-    public int getExpiredCount() { return expiredCount; }
-    public int getCategoryCount() { return categoryCount; }
-    public Product getMostExpensiveProduct() { return mostExpensiveProduct; }
-    public Product getCheapestProduct() { return cheapestProduct; }
-}
\ No newline at end of file
+}
@@ -0,0 +1,385 @@
+package com.example.warehouse;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Imports a product catalog file into a {@link Warehouse}, without loading the file into memory.
+ * <p>
+ * The file is read in chunks of whole lines through a {@link FileChannel}, and the chunks are parsed
+ * in parallel. Each parsed chunk is added with {@link Warehouse#addProducts(java.util.Collection)},
+ * so every chunk is all-or-nothing. Once a chunk is rejected no further chunk is added, but chunks that
+ * were already added stay in the warehouse; with a parallelism above one these may include chunks from
+ * after the rejected line. At most a few chunks per thread are in memory at any time.
+ * <p>
+ * Two formats are supported, one product per line:
+ * <ul>
+ *     <li>CSV: {@code type,id,name,category,price,weight,detail}, where the detail is the expiration
+ *     date (ISO, empty for none) of a food product or the warranty months of an electronics product.
+ *     A first line starting with {@code type} is skipped as a header, and fields may be quoted.</li>
+ *     <li>NDJSON: one flat object per line with the keys {@code type, id, name, category, price, weight}
+ *     and {@code expirationDate} or {@code warrantyMonths}.</li>
+ * </ul>
+ * The type is {@code food} or {@code electronics}. Blank lines are skipped.
+ */
+public final class CatalogImporter {
+
+    // Bytes read per chunk; a chunk grows if a single line does not fit.
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Chunks that may be read ahead of the parsers, per parsing thread.
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    private final Warehouse warehouse;
+    private final int parallelism;
+
+    /**
+     * The line format of a catalog file.
+     */
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        /**
+         * Picks the format from a file extension: .csv, or .ndjson / .jsonl.
+         *
+         * @param file The catalog file.
+         * @return The format of the file.
+         * @throws IllegalArgumentException if the extension is not recognized.
+         */
+        public static Format of(Path file) {
+            String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (fileName.endsWith(".csv")) return CSV;
+            if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) return NDJSON;
+            throw new IllegalArgumentException("Unknown catalog format: " + file);
+        }
+    }
+
+    /**
+     * Creates an importer that parses on as many threads as there are processors.
+     *
+     * @param warehouse The warehouse to import into.
+     */
+    public CatalogImporter(Warehouse warehouse) {
+        this(warehouse, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param warehouse   The warehouse to import into.
+     * @param parallelism The number of threads parsing chunks.
+     * @throws IllegalArgumentException if the warehouse is null or the parallelism is not positive.
+     */
+    public CatalogImporter(Warehouse warehouse, int parallelism) {
+        if (warehouse == null) throw new IllegalArgumentException("Warehouse cannot be null.");
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive.");
+        this.warehouse = warehouse;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Imports a catalog file, picking the format from its extension.
+     *
+     * @param file The catalog file.
+     * @return The number of products added.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a line cannot be parsed or a product is rejected by the warehouse.
+     */
+    public long importFile(Path file) throws IOException {
+        return importFile(file, Format.of(file));
+    }
+
+    /**
+     * Imports a catalog file in the given format.
+     *
+     * @param file   The catalog file.
+     * @param format The line format.
+     * @return The number of products added.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if a line cannot be parsed or a product is rejected by the warehouse;
+     *                                  the message names the line.
+     */
+    public long importFile(Path file, Format format) throws IOException {
+        AtomicLong imported = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        // Chunks are parsed in parallel but added one at a time, so none is added once another has failed.
+        Lock adding = new ReentrantLock();
+        // Shared by all chunks, so each distinct category name is normalized only once per import.
+        Map<String, Category> categories = new ConcurrentHashMap<>();
+        // Bounds the chunks read ahead of the parsers, which bounds the memory used.
+        Semaphore readAhead = new Semaphore(parallelism * CHUNKS_PER_THREAD);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             ExecutorService parsers = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("catalog-import-", 0).daemon().factory())) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            long lineNumber = 1;
+            boolean endOfFile = false;
+            while (!endOfFile && failure.get() == null) {
+                endOfFile = channel.read(buffer) == -1;
+                buffer.flip();
+                int end = endOfFile ? buffer.limit() : lastLineEnd(buffer);
+                if (end == 0) {
+                    // Not a single whole line yet: keep reading, growing the buffer if it is full.
+                    if (buffer.limit() == buffer.capacity()) {
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                    } else {
+                        buffer.compact();
+                    }
+                    continue;
+                }
+                byte[] chunk = new byte[end];
+                buffer.get(chunk);
+                buffer.compact();
+
+                readAhead.acquireUninterruptibly();
+                long firstLine = lineNumber;
+                parsers.execute(() -> {
+                    try {
+                        if (failure.get() != null) return;
+                        List<Product> batch = parseChunk(chunk, firstLine, format, categories);
+                        adding.lock();
+                        try {
+                            if (failure.get() != null) return;
+                            warehouse.addProducts(batch);
+                            imported.addAndGet(batch.size());
+                        } finally {
+                            adding.unlock();
+                        }
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        readAhead.release();
+                    }
+                });
+                lineNumber += countLines(chunk);
+            }
+        }
+        if (failure.get() != null) throw failure.get();
+        return imported.get();
+    }
+
+    // Returns the length of the buffer's content up to and including its last newline, or 0.
+    private static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+            if (buffer.get(i) == '\n') return i + 1 - buffer.position();
+        }
+        return 0;
+    }
+
+    private static int countLines(byte[] chunk) {
+        int lines = 0;
+        for (byte b : chunk) {
+            if (b == '\n') lines++;
+        }
+        return lines;
+    }
+
+    private static List<Product> parseChunk(byte[] chunk, long firstLine, Format format, Map<String, Category> categories) {
+        List<Product> batch = new ArrayList<>();
+        long lineNumber = firstLine;
+        int start = 0;
+        for (int i = 0; i <= chunk.length; i++) {
+            if (i < chunk.length && chunk[i] != '\n') continue;
+            int end = i > start && chunk[i - 1] == '\r' ? i - 1 : i;
+            String line = new String(chunk, start, end - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            long current = lineNumber++;
+            if (line.isBlank()) continue;
+            try {
+                Map<String, String> fields;
+                if (format == Format.CSV) {
+                    List<String> values = splitCsv(line);
+                    if (current == 1 && values.getFirst().strip().equalsIgnoreCase("type")) continue;
+                    fields = csvFields(values);
+                } else {
+                    fields = parseJsonObject(line);
+                }
+                batch.add(createProduct(fields, categories));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + current + ": " + e.getMessage(), e);
+            }
+        }
+        return batch;
+    }
+
+    private static Product createProduct(Map<String, String> fields, Map<String, Category> categories) {
+        String type = required(fields, "type").toLowerCase(Locale.ROOT);
+        UUID id = UUID.fromString(required(fields, "id"));
+        String name = required(fields, "name");
+        Category category = categories.computeIfAbsent(required(fields, "category"), Category::of);
+        BigDecimal price = new BigDecimal(required(fields, "price"));
+        BigDecimal weight = new BigDecimal(required(fields, "weight"));
+        return switch (type) {
+            case "food" -> {
+                String expiration = fields.get("expirationDate");
+                yield new FoodProduct(id, name, category, price,
+                        expiration == null || expiration.isBlank() ? null : LocalDate.parse(expiration), weight);
+            }
+            case "electronics" -> new ElectronicsProduct(id, name, category, price, Integer.parseInt(required(fields, "warrantyMonths")), weight);
+            default -> throw new IllegalArgumentException("Unknown product type: " + type);
+        };
+    }
+
+    private static String required(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing field: " + key);
+        return value.strip();
+    }
+
+    // Maps the CSV columns to the NDJSON keys, the detail column depends on the type.
+    private static Map<String, String> csvFields(List<String> values) {
+        if (values.size() != 7) throw new IllegalArgumentException("Expected 7 fields but found " + values.size());
+        Map<String, String> fields = HashMap.newHashMap(7);
+        fields.put("type", values.get(0));
+        fields.put("id", values.get(1));
+        fields.put("name", values.get(2));
+        fields.put("category", values.get(3));
+        fields.put("price", values.get(4));
+        fields.put("weight", values.get(5));
+        fields.put(values.get(0).strip().equalsIgnoreCase("food") ? "expirationDate" : "warrantyMonths", values.get(6));
+        return fields;
+    }
+
+    // Splits a CSV line on commas, honoring double-quoted fields with "" as an escaped quote.
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>(7);
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        values.add(value.toString());
+        return values;
+    }
+
+    // Parses a flat JSON object; numbers, booleans and null are kept as their text (null as null).
+    private static Map<String, String> parseJsonObject(String line) {
+        Map<String, String> fields = new HashMap<>();
+        JsonCursor cursor = new JsonCursor(line);
+        cursor.expect('{');
+        if (cursor.peek() == '}') {
+            cursor.next();
+        } else {
+            do {
+                String key = cursor.string();
+                cursor.expect(':');
+                fields.put(key, cursor.value());
+            } while (cursor.next() == ',');
+            if (line.charAt(cursor.position - 1) != '}') throw new IllegalArgumentException("Expected '}' at column " + cursor.position);
+        }
+        if (cursor.peek() != 0) throw new IllegalArgumentException("Unexpected content after the object at column " + (cursor.position + 1));
+        return fields;
+    }
+
+    // Walks a single JSON line, skipping whitespace between tokens.
+    private static final class JsonCursor {
+
+        private final String text;
+        private int position;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        // Returns the next non-blank character without consuming it, or 0 at the end.
+        char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        char next() {
+            char c = peek();
+            if (c == 0) throw new IllegalArgumentException("Unexpected end of line");
+            position++;
+            return c;
+        }
+
+        void expect(char expected) {
+            char c = next();
+            if (c != expected) throw new IllegalArgumentException("Expected '" + expected + "' at column " + position);
+        }
+
+        String value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '{' || c == '[') throw new IllegalArgumentException("Nested values are not supported, at column " + (position + 1));
+            int start = position;
+            while (position < text.length() && ",}".indexOf(text.charAt(position)) < 0 && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            String token = text.substring(start, position);
+            if (token.isEmpty()) throw new IllegalArgumentException("Missing value at column " + (start + 1));
+            return token.equals("null") ? null : token;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw new IllegalArgumentException("Unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw new IllegalArgumentException("Unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw new IllegalArgumentException("Invalid unicode escape");
+                        value.append((char) Integer.parseInt(text, position, position + 4, 16));
+                        position += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid escape '\\" + escaped + "'");
+                }
+            }
+        }
+    }
+}
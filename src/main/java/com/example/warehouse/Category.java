@@ -1,8 +1,10 @@
 package com.example.warehouse;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a product category. This class implements the Flyweight design pattern,
@@ -12,17 +14,23 @@ import java.util.Objects;
 public class Category {
 
     private final String name;
-    //Map to store and retrieve Category instances.
-    private static final Map<String, Category> categories = new HashMap<>();
+    // Position of the category in creation order, lets columnar storage keep a category as an int.
+    private final int ordinal;
+    //Map to store and retrieve Category instances, concurrent so that of() is safe from any thread.
+    private static final Map<String, Category> categories = new ConcurrentHashMap<>();
+    // All categories indexed by their ordinal.
+    private static final List<Category> byOrdinal = new CopyOnWriteArrayList<>();
 
     /**
      * Private constructor for the Flyweight pattern. Instances can only be created
      * internally via the Code.of factory method.
      *
-     * @param name The name of the category.
+     * @param name    The name of the category.
+     * @param ordinal The position of the category in creation order.
      */
-    private Category(String name) {
+    private Category(String name, int ordinal) {
         this.name = name;
+        this.ordinal = ordinal;
     }
 
     /**
@@ -41,7 +49,36 @@ public class Category {
 
         String normalized = name.trim().substring(0, 1).toUpperCase() + name.trim().substring(1).toLowerCase();
 
-        return categories.computeIfAbsent(normalized, Category::new);
+        Category existing = categories.get(normalized);
+        if (existing != null) return existing;
+        // Creation is rare and serialized, so ordinals are handed out without gaps.
+        synchronized (byOrdinal) {
+            return categories.computeIfAbsent(normalized, key -> {
+                Category category = new Category(key, byOrdinal.size());
+                byOrdinal.add(category);
+                return category;
+            });
+        }
+    }
+
+    /**
+     * Retrieves a category by its ordinal.
+     *
+     * @param ordinal The ordinal of the category.
+     * @return The category created at that position.
+     * @throws IndexOutOfBoundsException if no category has that ordinal.
+     */
+    static Category byOrdinal(int ordinal) {
+        return byOrdinal.get(ordinal);
+    }
+
+    /**
+     * Retrieves the number of categories created so far, i.e. one past the highest ordinal.
+     *
+     * @return The number of categories.
+     */
+    static int count() {
+        return byOrdinal.size();
     }
 
     /**
@@ -54,6 +91,15 @@ public class Category {
         return name;
     }
 
+    /**
+     * Retrieves the position of the category in creation order. Ordinals are dense and start at 0.
+     *
+     * @return The ordinal of the category.
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Category category)) return false;
@@ -0,0 +1,317 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An ordered, append-only feed of the mutations of a {@link Warehouse}, for consumers that keep
+ * another system in sync and only want to read what happened since their last position.
+ * <p>
+ * Every change gets the next sequence number, so a consumer's position is a single number.
+ * Consumers read through a named {@link Cursor}: {@link Cursor#drain(int)} returns the changes after
+ * the acknowledged position without moving it, and {@link Cursor#acknowledge(long)} moves it once the
+ * changes have been handled, so a consumer that fails in between reads the same changes again.
+ * <p>
+ * Changes are only retained until every open cursor has acknowledged them. A new cursor starts at
+ * the end of the log, and with no open cursors nothing is retained at all. Retention is bounded: a
+ * cursor that falls more than the {@link #retentionLimit(int) retention limit} behind is closed, and
+ * its consumer opens a new one and re-reads whatever state it mirrors.
+ * <p>
+ * The same changes are also pushed to the subscribers of {@link #publisher()}, in sequence order.
+ * Each subscriber has a bounded buffer of its own and is served by request. Writers never wait for a
+ * subscriber: one that falls too far behind is dropped with an error, see {@link ChangePublisher}.
+ * Subscribers are called on an executor of their own, not on the common fork/join pool that the
+ * parallel analytics use, see {@link #deliveryExecutor(Executor)}.
+ */
+public final class ChangeLog {
+
+    /**
+     * The number of changes a subscriber may lag behind before it is dropped, e.g. during a bulk add
+     * of more products than this.
+     */
+    public static final int SUBSCRIBER_BUFFER_SIZE = 65_536;
+
+    /**
+     * The number of changes a cursor may lag behind by default before it is closed.
+     */
+    public static final int DEFAULT_RETENTION_LIMIT = 1_048_576;
+
+    // Delivers to subscribers unless another executor is set. A virtual thread per delivery run, so a
+    // slow subscriber neither holds a pool thread nor competes with the analytics on the common pool.
+    private static final Executor DEFAULT_DELIVERY = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("change-delivery-", 0).factory());
+
+    // Guards the entries and the sequence numbers, so sequence order is also visibility order.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ChangePublisher publisher = new ChangePublisher(DEFAULT_DELIVERY, SUBSCRIBER_BUFFER_SIZE);
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    // entries[head] holds firstSequence, the entries before head are trimmed and waiting to be compacted.
+    private final List<ProductChange> entries = new ArrayList<>();
+    private int head;
+    private long firstSequence = 1;
+    private long lastSequence;
+    private int retentionLimit = DEFAULT_RETENTION_LIMIT;
+
+    ChangeLog() {
+    }
+
+    /**
+     * Retrieves the cursor of a consumer, opening it at the end of the log if it does not exist.
+     *
+     * @param consumer The name of the consumer.
+     * @return The consumer's cursor.
+     * @throws IllegalArgumentException if the name is null or blank.
+     */
+    public Cursor cursor(String consumer) {
+        if (consumer == null || consumer.isBlank()) throw new IllegalArgumentException("Consumer name can't be blank");
+        lock.lock();
+        try {
+            return cursors.computeIfAbsent(consumer, name -> new Cursor(name, lastSequence));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how many changes a cursor may lag behind before it is closed. Cursors that are already further
+     * behind are closed right away.
+     *
+     * @param changes The retention limit.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public void retentionLimit(int changes) {
+        if (changes < 1) throw new IllegalArgumentException("Retention limit must be positive.");
+        lock.lock();
+        try {
+            retentionLimit = changes;
+            closeLaggingCursors();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the executor that calls the subscribers of {@link #publisher()}, e.g. to give delivery a pool
+     * of its own size or to run it inline in tests. Deliveries already handed to the old executor finish there.
+     *
+     * @param executor The executor to use, or null for the default of a virtual thread per delivery run.
+     */
+    public void deliveryExecutor(Executor executor) {
+        publisher.executor(executor == null ? DEFAULT_DELIVERY : executor);
+    }
+
+    /**
+     * Retrieves a publisher of every change made from the moment of subscribing.
+     * Subscribers are called on the delivery executor, never while the warehouse is locked.
+     *
+     * @return The change publisher.
+     */
+    public Flow.Publisher<ProductChange> publisher() {
+        return publisher;
+    }
+
+    /**
+     * Retrieves the sequence number of the latest change.
+     *
+     * @return The last sequence number, 0 if nothing has changed yet.
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a change. The caller holds the warehouse lock that orders the mutation.
+     *
+     * @param type      The kind of mutation.
+     * @param productId The UUID of the product, null for CLEARED.
+     * @param price     The price after the change, null for REMOVED and CLEARED.
+     * @return The sequence number of the change.
+     */
+    long append(ChangeType type, UUID productId, BigDecimal price) {
+        lock.lock();
+        try {
+            long sequence = ++lastSequence;
+            record(new ProductChange(sequence, type, productId, price), publisher.hasSubscribers());
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records one ADDED change per product, e.g. for a bulk add.
+     *
+     * @param added The products that were added.
+     * @return The sequence number of the last change.
+     */
+    long appendAdded(Collection<? extends Product> added) {
+        lock.lock();
+        try {
+            boolean publish = publisher.hasSubscribers();
+            for (Product product : added) {
+                long sequence = ++lastSequence;
+                record(new ProductChange(sequence, ChangeType.ADDED, product.uuid(), product.price()), publish);
+            }
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Has the subscribers called with the changes buffered for them. Called by writers after they have
+     * released the warehouse locks; it never waits for a subscriber.
+     */
+    void publishPending() {
+        publisher.flush();
+    }
+
+    // Keeps a change for the cursors and buffers it for the subscribers, as needed. Holds the lock.
+    private void record(ProductChange change, boolean publish) {
+        if (!cursors.isEmpty()) {
+            entries.add(change);
+            if (lastSequence - firstSequence >= retentionLimit) closeLaggingCursors();
+        } else {
+            firstSequence = change.sequence() + 1;
+        }
+        if (publish) publisher.offer(change);
+    }
+
+    // Closes the cursors more than the retention limit behind and drops what only they retained. Holds the lock.
+    private void closeLaggingCursors() {
+        long oldestPosition = lastSequence - retentionLimit;
+        for (Cursor cursor : cursors.values()) {
+            if (cursor.position < oldestPosition && cursors.remove(cursor.consumer, cursor)) cursor.lagged = true;
+        }
+        trim();
+    }
+
+    // Drops the changes every cursor has acknowledged. Holds the lock.
+    private void trim() {
+        long retainFrom = lastSequence + 1;
+        for (Cursor cursor : cursors.values()) {
+            retainFrom = Math.min(retainFrom, cursor.position + 1);
+        }
+        if (retainFrom <= firstSequence) return;
+        head += (int) (retainFrom - firstSequence);
+        firstSequence = retainFrom;
+        // Compacting only once half of the list is dead keeps trimming amortized O(1) per change.
+        if (head > entries.size() / 2) {
+            entries.subList(0, head).clear();
+            head = 0;
+        }
+    }
+
+    /**
+     * The read position of one consumer in the change log.
+     */
+    public final class Cursor implements AutoCloseable {
+
+        private final String consumer;
+        // The last acknowledged sequence number, guarded by the log's lock.
+        private long position;
+        // Set, under the log's lock, when the cursor was closed for falling too far behind.
+        private boolean lagged;
+
+        private Cursor(String consumer, long position) {
+            this.consumer = consumer;
+            this.position = position;
+        }
+
+        /**
+         * Retrieves the name of the consumer.
+         *
+         * @return The consumer name.
+         */
+        public String consumer() {
+            return consumer;
+        }
+
+        /**
+         * Retrieves the last acknowledged sequence number.
+         *
+         * @return The cursor position.
+         */
+        public long position() {
+            lock.lock();
+            try {
+                return position;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Retrieves the changes after the acknowledged position, oldest first, without moving the cursor.
+         *
+         * @param max The maximum number of changes to return.
+         * @return An unmodifiable list of at most max changes, empty if the consumer is up to date.
+         * @throws IllegalArgumentException if max is not positive.
+         * @throws IllegalStateException    if the cursor is closed, also when it fell too far behind.
+         */
+        public List<ProductChange> drain(int max) {
+            if (max < 1) throw new IllegalArgumentException("Max must be positive.");
+            lock.lock();
+            try {
+                checkOpen();
+                int from = head + (int) (position + 1 - firstSequence);
+                int to = (int) Math.min(entries.size(), (long) from + max);
+                return List.copyOf(entries.subList(from, to));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Marks every change up to and including a sequence number as handled.
+         *
+         * @param sequence The sequence number of the last handled change.
+         * @throws IllegalArgumentException if the sequence is beyond the end of the log.
+         * @throws IllegalStateException    if the cursor is closed.
+         */
+        public void acknowledge(long sequence) {
+            lock.lock();
+            try {
+                checkOpen();
+                if (sequence > lastSequence) throw new IllegalArgumentException("Sequence " + sequence + " has not been written yet.");
+                if (sequence <= position) return;
+                position = sequence;
+                trim();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Closes the cursor, so the log no longer retains changes for this consumer.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (cursors.remove(consumer, this)) trim();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void checkOpen() {
+            if (cursors.get(consumer) == this) return;
+            if (lagged) throw new IllegalStateException("Cursor " + consumer + " fell more than " + retentionLimit + " changes behind and was closed.");
+            throw new IllegalStateException("Cursor " + consumer + " is closed.");
+        }
+    }
+}
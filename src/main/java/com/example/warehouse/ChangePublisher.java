@@ -0,0 +1,177 @@
+package com.example.warehouse;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the changes of a {@link ChangeLog} to its subscribers. Every subscriber has its own bounded
+ * buffer and is served on an executor as far as it has requested, so a writer only ever appends to the
+ * buffers and never waits for a consumer.
+ * <p>
+ * A subscriber that falls more than the buffer size behind is dropped: its buffered changes are
+ * discarded and it receives onError with an {@link IllegalStateException}. It can subscribe again and
+ * re-read whatever state it mirrors, while the other subscribers and the writers carry on unaffected.
+ */
+final class ChangePublisher implements Flow.Publisher<ProductChange> {
+
+    private volatile Executor executor;
+    private final int bufferSize;
+    private final List<ChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param executor   Where the subscribers are called.
+     * @param bufferSize The number of changes a subscriber may lag behind before it is dropped.
+     */
+    ChangePublisher(Executor executor, int bufferSize) {
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Replaces the executor for the deliveries scheduled from now on.
+     *
+     * @param executor Where the subscribers are called.
+     */
+    void executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null.");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ProductChange> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null.");
+        ChangeSubscription subscription = new ChangeSubscription(subscriber);
+        subscriptions.add(subscription);
+        // onSubscribe is the first signal of the drain loop.
+        subscription.signal();
+    }
+
+    /**
+     * Checks if anyone is listening, so changes are not even queued without subscribers.
+     *
+     * @return true if there is at least one subscriber.
+     */
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Appends a change to every subscriber's buffer without calling any subscriber. The caller holds
+     * the change log's lock, so every buffer receives the changes in sequence order.
+     *
+     * @param change The change to deliver.
+     */
+    void offer(ProductChange change) {
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.enqueue(change);
+        }
+    }
+
+    /**
+     * Schedules delivery for every subscriber with buffered changes. Called by writers after they have
+     * released the warehouse locks; it only hands work to the executor.
+     */
+    void flush() {
+        for (ChangeSubscription subscription : subscriptions) {
+            if (subscription.hasWork()) subscription.signal();
+        }
+    }
+
+    private final class ChangeSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ProductChange> subscriber;
+        private final Queue<ProductChange> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        // Counts the signals since the drain loop last checked, so only one loop runs at a time.
+        private final AtomicInteger wip = new AtomicInteger();
+        // Only touched by the drain loop.
+        private boolean subscribed;
+        private volatile boolean cancelled;
+        // Set when the subscriber overflowed its buffer or made an invalid request.
+        private volatile Throwable failure;
+
+        private ChangeSubscription(Flow.Subscriber<? super ProductChange> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Request must be positive, was " + n + ".");
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void enqueue(ProductChange change) {
+            if (cancelled || failure != null) return;
+            if (buffered.incrementAndGet() > bufferSize) {
+                failure = new IllegalStateException("Subscriber fell more than " + bufferSize + " changes behind and was dropped.");
+                subscriptions.remove(this);
+                // No longer reached by flush(), so the error is handed to the executor right away.
+                signal();
+                return;
+            }
+            buffer.add(change);
+        }
+
+        private boolean hasWork() {
+            return failure != null || (!buffer.isEmpty() && demand.get() > 0);
+        }
+
+        private void signal() {
+            if (wip.getAndIncrement() == 0) executor.execute(this::drain);
+        }
+
+        // Delivers the signals one at a time: onSubscribe first, then changes as far as requested.
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                while (!cancelled) {
+                    Throwable failed = failure;
+                    if (failed != null) {
+                        terminate(failed);
+                        return;
+                    }
+                    if (demand.get() == 0) break;
+                    ProductChange change = buffer.poll();
+                    if (change == null) break;
+                    buffered.decrementAndGet();
+                    if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(change);
+                    } catch (Throwable t) {
+                        terminate(t);
+                        return;
+                    }
+                }
+                if (cancelled) return;
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate(Throwable failed) {
+            cancel();
+            buffer.clear();
+            subscriber.onError(failed);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.warehouse;
+
+/**
+ * The kind of mutation recorded in a {@link ChangeLog}.
+ */
+public enum ChangeType {
+
+    /**
+     * A product was added.
+     */
+    ADDED,
+
+    /**
+     * The price of a product was updated.
+     */
+    PRICE_UPDATED,
+
+    /**
+     * A product was removed.
+     */
+    REMOVED,
+
+    /**
+     * Every product was removed at once; the change has no product id.
+     */
+    CLEARED
+}
@@ -0,0 +1,77 @@
+package com.example.warehouse;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Storage for the column-oriented copy of a warehouse's products.
+ * Every product occupies one row of fixed-width numeric fields (UUID, price in minor units, weight,
+ * expiration epoch day, category ordinal), which scans can read without touching product objects.
+ * The implementation is chosen by the warehouse's {@link StorageMode}.
+ * <p>
+ * Implementations guard their own state, every method may be called from any thread.
+ */
+interface ColumnarStore {
+
+    /**
+     * Appends a product as a new row.
+     *
+     * @param p The product to add.
+     */
+    void add(Product p);
+
+    /**
+     * Appends a batch of products, growing the storage at most once.
+     *
+     * @param batch The products to add.
+     */
+    void addAll(Collection<Product> batch);
+
+    /**
+     * Updates the price of a product's row.
+     *
+     * @param id       The UUID of the product.
+     * @param newPrice The new price with its minor units; the BigDecimal is kept when they are not exact.
+     */
+    void updatePrice(UUID id, Product.Price newPrice);
+
+    /**
+     * Removes the row of a product.
+     *
+     * @param id The UUID of the product.
+     */
+    void remove(UUID id);
+
+    /**
+     * Removes every row.
+     */
+    void clear();
+
+    /**
+     * Releases the storage when its warehouse is closed. The store cannot be written to afterwards,
+     * views handed out before stay readable.
+     */
+    void close();
+
+    /**
+     * Hands out an immutable view of the rows. Implementations share their storage with the view
+     * and copy the part a later write touches, rather than copying every row up front.
+     *
+     * @param version The modification count the view is taken at.
+     * @return A view of the rows as they are now.
+     */
+    ColumnarView view(long version);
+
+    /**
+     * Creates the store for a storage mode.
+     *
+     * @param mode The storage mode of the warehouse.
+     * @return An empty store.
+     */
+    static ColumnarStore create(StorageMode mode) {
+        return switch (mode) {
+            case ON_HEAP -> new HeapColumnarStore();
+            case OFF_HEAP -> new OffHeapColumnarStore();
+        };
+    }
+}
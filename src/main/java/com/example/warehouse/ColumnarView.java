@@ -0,0 +1,216 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable, column-oriented view of the products in a {@link Warehouse}.
+ * Each product is one row, and every attribute is read from dense, fixed-width storage,
+ * which makes full scans cache-friendly. Rows are numbered from 0 to size() - 1 and are only
+ * meaningful within this view.
+ * <p>
+ * Depending on the warehouse's {@link StorageMode} the rows live in Java arrays or in native memory,
+ * the accessors are the same either way.
+ * Prices are kept in minor units (cents), so they are exact for prices with at most two decimals.
+ * Rows whose price has no exact minor-unit form are marked, see {@link #isPriceExact(int)}; scans
+ * read the BigDecimal price the view kept for those rows instead, see {@link #exactPrice(int)}.
+ */
+public abstract sealed class ColumnarView permits HeapColumnarView, OffHeapColumnarView {
+
+    // Bits in the flags column.
+    static final byte SHIPPABLE = 1;
+    static final byte PERISHABLE = 2;
+    static final byte INEXACT_PRICE = 4;
+
+    private final long version;
+    private final int size;
+    private final int inexactPrices;
+
+    ColumnarView(long version, int size, int inexactPrices) {
+        this.version = version;
+        this.size = size;
+        this.inexactPrices = inexactPrices;
+    }
+
+    /**
+     * Retrieves the modification count of the warehouse this view was taken at.
+     *
+     * @return The version of the view.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Retrieves the number of rows in the view.
+     *
+     * @return The row count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the UUID of a row.
+     *
+     * @param row The row number.
+     * @return The UUID of the product in that row.
+     */
+    public abstract UUID uuid(int row);
+
+    /**
+     * Retrieves the price of a row in minor units (e.g. 15.50 is 1550).
+     *
+     * @param row The row number.
+     * @return The price in minor units.
+     */
+    public abstract long priceMinor(int row);
+
+    /**
+     * Checks if the minor-unit price of a row is exactly the product's price, see {@link Money#isExact}.
+     *
+     * @param row The row number.
+     * @return false if the price has more than two decimals or is too large, and was rounded.
+     */
+    public boolean isPriceExact(int row) {
+        return (flags(row) & INEXACT_PRICE) == 0;
+    }
+
+    /**
+     * Checks if any row's minor-unit price is not exact, so a scan has to fall back to BigDecimal.
+     *
+     * @return true if at least one row fails {@link #isPriceExact(int)}.
+     */
+    public boolean hasInexactPrices() {
+        return inexactPrices > 0;
+    }
+
+    /**
+     * Retrieves the price of a row as a double.
+     *
+     * @param row The row number.
+     * @return The price.
+     */
+    public double price(int row) {
+        return priceMinor(row) / 100.0;
+    }
+
+    /**
+     * Retrieves the exact price of a row as of this view, also for rows whose minor-unit price was rounded.
+     * Unlike the product's price it does not move when the price is updated after the view was taken.
+     *
+     * @param row The row number.
+     * @return The price, with two decimals for rows whose minor-unit price is exact.
+     */
+    public BigDecimal exactPrice(int row) {
+        return isPriceExact(row) ? Money.toBigDecimal(priceMinor(row)) : inexactPrice(row);
+    }
+
+    /**
+     * Copies the price column, e.g. to sort or select on it without touching the view.
+     *
+     * @return A new array holding the price of every row in minor units.
+     */
+    public abstract long[] copyPriceColumn();
+
+    /**
+     * Checks if the product in a row is Shippable.
+     *
+     * @param row The row number.
+     * @return true if the product can be shipped.
+     */
+    public boolean isShippable(int row) {
+        return (flags(row) & SHIPPABLE) != 0;
+    }
+
+    /**
+     * Retrieves the weight of a row.
+     *
+     * @param row The row number.
+     * @return The weight, or 0.0 for products that are not Shippable.
+     */
+    public abstract double weight(int row);
+
+    /**
+     * Checks if the product in a row is Perishable (and has an expiration date).
+     *
+     * @param row The row number.
+     * @return true if the product expires.
+     */
+    public boolean isPerishable(int row) {
+        return (flags(row) & PERISHABLE) != 0;
+    }
+
+    /**
+     * Retrieves the expiration date of a row as an epoch day, see {@link LocalDate#toEpochDay()}.
+     *
+     * @param row The row number.
+     * @return The epoch day, only meaningful if the row is Perishable.
+     */
+    public abstract long expiryEpochDay(int row);
+
+    /**
+     * Retrieves the category ordinal of a row, see {@link Category#ordinal()}.
+     *
+     * @param row The row number.
+     * @return The category ordinal.
+     */
+    public abstract int categoryOrdinal(int row);
+
+    /**
+     * Retrieves the category of a row.
+     *
+     * @param row The row number.
+     * @return The category.
+     */
+    public Category category(int row) {
+        return Category.byOrdinal(categoryOrdinal(row));
+    }
+
+    /**
+     * Retrieves the BigDecimal price a row kept because its minor-unit price is not exact.
+     *
+     * @param row A row flagged INEXACT_PRICE.
+     * @return The price as of this view.
+     */
+    protected abstract BigDecimal inexactPrice(int row);
+
+    /**
+     * Retrieves the name of a row.
+     *
+     * @param row The row number.
+     * @return The product name.
+     */
+    public abstract String name(int row);
+
+    /**
+     * Retrieves the product object of a row, e.g. to return it from a query.
+     *
+     * @param row The row number.
+     * @return The product.
+     */
+    public abstract Product product(int row);
+
+    /**
+     * Streams the row numbers of the view in ascending order, e.g. to scan the columns in parallel.
+     * A parallel stream splits the rows into balanced ranges of at least minChunk rows each.
+     *
+     * @param parallel true for a parallel stream.
+     * @param minChunk The smallest number of rows a parallel task works on.
+     * @return A stream of the row numbers from 0 to size() - 1.
+     */
+    public IntStream rows(boolean parallel, int minChunk) {
+        return StreamSupport.intStream(new RowSpliterator(0, size, minChunk), parallel);
+    }
+
+    /**
+     * Retrieves the type flags of a row (SHIPPABLE, PERISHABLE, INEXACT_PRICE).
+     *
+     * @param row The row number.
+     * @return The flags.
+     */
+    protected abstract byte flags(int row);
+}
@@ -0,0 +1,20 @@
+package com.example.warehouse;
+
+/**
+ * When the mutations recorded in a {@link WriteAheadLog} are forced to disk.
+ * The durability is chosen when the log is opened, and the log is attached to a single warehouse.
+ */
+public enum Durability {
+
+    /**
+     * Every mutation is applied, and returns, only once its log record is on disk. Writers that are
+     * waiting at the same time share a single fsync (group commit).
+     */
+    SYNC,
+
+    /**
+     * Mutations return as soon as their log record is buffered, and the buffer is forced to disk
+     * in the background at a fixed interval. A crash can lose the mutations of the last interval.
+     */
+    BATCHED
+}
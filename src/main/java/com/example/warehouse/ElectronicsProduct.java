@@ -1,7 +1,6 @@
 package com.example.warehouse;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.UUID;
 
 /**
@@ -11,8 +10,18 @@ import java.util.UUID;
  */
 public class ElectronicsProduct extends Product implements Shippable {
 
+    // The only two shipping costs there are, in cents: base 79, and 79 + 49 above the heavy weight.
+    private static final long BASE_SHIPPING_COST_MINOR = 7900;
+    private static final long HEAVY_SHIPPING_COST_MINOR = BASE_SHIPPING_COST_MINOR + 4900;
+    private static final BigDecimal BASE_SHIPPING_COST = Money.toBigDecimal(BASE_SHIPPING_COST_MINOR);
+    private static final BigDecimal HEAVY_SHIPPING_COST = Money.toBigDecimal(HEAVY_SHIPPING_COST_MINOR);
+    private static final BigDecimal HEAVY_WEIGHT = BigDecimal.valueOf(5);
+
     private final int warrantyMonths;
     private final BigDecimal weight;
+    // Cached from the final weight: the boxed weight, and whether the heavy surcharge applies.
+    private final Double weightValue;
+    private final boolean heavy;
 
     /**
      * Constructs a new ElectronicsProduct.
@@ -31,6 +40,8 @@ public class ElectronicsProduct extends Product implements Shippable {
         if (weight.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Weight cannot be negative.");
         this.warrantyMonths = warrantyMonths;
         this.weight = weight;
+        this.weightValue = weight.doubleValue();
+        this.heavy = weight.compareTo(HEAVY_WEIGHT) > 0;
     }
 
     /**
@@ -42,23 +53,56 @@ public class ElectronicsProduct extends Product implements Shippable {
         return String.format("Electronics: %s, Warranty: %s months", name(), warrantyMonths);
     }
 
+    /**
+     * Retrieves the length of the product warranty.
+     *
+     * @return The warranty period in months.
+     */
+    public int warrantyMonths() {
+        return warrantyMonths;
+    }
+
+    /**
+     * Retrieves the exact weight, e.g. for writing the product to a snapshot without losing precision.
+     *
+     * @return The product's weight as a BigDecimal.
+     */
+    BigDecimal exactWeight() {
+        return this.weight;
+    }
+
     // --- Implementation of Shippable Interface ---
 
     /**
      * Calculates the shipping cost for electronics, applying a surcharge for heavy items.
      * Base cost is 79. An extra of 49 is added if the weight is over 5 units(kg).
+     * Both possible costs are shared constants, so no BigDecimal is created per call.
      * * @return The calculated shipping cost, rounded up to two decimals.
      */
     @Override
     public BigDecimal calculateShippingCost() {
 
-        BigDecimal baseShippingCost = BigDecimal.valueOf(79);
-        BigDecimal extraShippingCost = BigDecimal.valueOf(49);
+        return heavy ? HEAVY_SHIPPING_COST : BASE_SHIPPING_COST;
+    }
 
-        if (this.weight.compareTo(BigDecimal.valueOf(5)) > 0) {
-            baseShippingCost = baseShippingCost.add(extraShippingCost);
-        }
-        return baseShippingCost.setScale(2, RoundingMode.HALF_UP);
+    /**
+     * Retrieves the shipping cost in minor units.
+     *
+     * @return The shipping cost in cents.
+     */
+    @Override
+    public long shippingCostMinor() {
+        return heavy ? HEAVY_SHIPPING_COST_MINOR : BASE_SHIPPING_COST_MINOR;
+    }
+
+    /**
+     * Checks if the shipping cost fits the long arithmetic, which both shared costs do.
+     *
+     * @return Always true.
+     */
+    @Override
+    public boolean isShippingCostExact() {
+        return true;
     }
 
     /**
@@ -68,7 +112,7 @@ public class ElectronicsProduct extends Product implements Shippable {
      */
     @Override
     public Double weight() {
-        // Converts the BigDecimal weight to a double for the interface contract.
-        return this.weight.doubleValue();
+        // The BigDecimal weight converted to a double for the interface contract, once at construction.
+        return this.weightValue;
     }
 }
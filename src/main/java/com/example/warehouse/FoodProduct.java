@@ -12,8 +12,16 @@ import java.util.UUID;
  */
 public class FoodProduct extends Product implements Perishable, Shippable {
 
+    // Shipping cost per unit of weight.
+    private static final BigDecimal COST_PER_WEIGHT_UNIT = BigDecimal.valueOf(50);
+
     private final LocalDate expirationDate;
     private final BigDecimal weight;
+    // Derived from the final weight once, so weight() and the shipping cost don't allocate per call.
+    private final Double weightValue;
+    private final BigDecimal shippingCost;
+    // -1 when the cost is too large for the long arithmetic, it is then converted on every call.
+    private final long shippingCostMinor;
 
     /**
      * Constructs a new FoodProduct.
@@ -33,6 +41,9 @@ public class FoodProduct extends Product implements Perishable, Shippable {
 
         this.expirationDate = expirationDate;
         this.weight = weight;
+        this.weightValue = weight.doubleValue();
+        this.shippingCost = weight.multiply(COST_PER_WEIGHT_UNIT).setScale(2, RoundingMode.HALF_UP);
+        this.shippingCostMinor = Money.isExact(shippingCost) ? Money.toMinorUnits(shippingCost) : -1;
     }
 
     /**
@@ -48,13 +59,35 @@ public class FoodProduct extends Product implements Perishable, Shippable {
 
     /**
      * Calculates the shipping cost based on the product's weight.
-     * Uses weight * 50, rounded to two decimals.
+     * Uses weight * 50, rounded to two decimals, computed once when the product is created.
      * * @return The calculated shipping cost.
      */
     @Override
     public BigDecimal calculateShippingCost() {
 
-        return weight.multiply(new BigDecimal(50)).setScale(2, RoundingMode.HALF_UP);
+        return shippingCost;
+    }
+
+    /**
+     * Retrieves the shipping cost in minor units, computed once when the product is created
+     * unless the cost is very large.
+     *
+     * @return The shipping cost in cents.
+     * @throws ArithmeticException if the shipping cost does not fit in a long.
+     */
+    @Override
+    public long shippingCostMinor() {
+        return shippingCostMinor >= 0 ? shippingCostMinor : Money.toMinorUnits(shippingCost);
+    }
+
+    /**
+     * Checks if the shipping cost fits the long arithmetic, decided once when the product is created.
+     *
+     * @return true unless the cost is very large.
+     */
+    @Override
+    public boolean isShippingCostExact() {
+        return shippingCostMinor >= 0;
     }
 
     /**
@@ -64,7 +97,16 @@ public class FoodProduct extends Product implements Perishable, Shippable {
     @Override
     public Double weight() {
 
-        return this.weight.doubleValue();
+        return this.weightValue;
+    }
+
+    /**
+     * Retrieves the exact weight, e.g. for writing the product to a snapshot without losing precision.
+     *
+     * @return The product's weight as a BigDecimal.
+     */
+    BigDecimal exactWeight() {
+        return this.weight;
     }
     // ----Implementation of the Interface Perishable ----
 
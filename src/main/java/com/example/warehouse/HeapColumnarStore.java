@@ -0,0 +1,270 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the products of a warehouse in primitive Java arrays (struct of arrays) next to the product map.
+ * Every product occupies one row: the UUID as two longs, the price in minor units, the weight,
+ * the expiration date as an epoch day and the category as its ordinal. Scans over these dense
+ * arrays avoid chasing a pointer per field per product. Rows whose price has no exact minor-unit
+ * form also keep the BigDecimal price as it was when the row was written.
+ * <p>
+ * The rows are split into chunks of {@link #CHUNK_SIZE}, each holding its own arrays. Views share
+ * the chunks instead of copying them: handing out a view only copies the array of chunk references,
+ * and the first write to a chunk a view shares copies that one chunk. A price update between two
+ * views costs one chunk copy, not a copy of the whole catalog.
+ * <p>
+ * Rows are not stable: removing a product moves the last row into the gap, so rows are only
+ * meaningful within one {@link ColumnarView}.
+ */
+class HeapColumnarStore implements ColumnarStore {
+
+    // Rows per chunk; a power of two, so a row splits into chunk and offset with a shift and a mask.
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Rows in the first chunk until it grows, so a small catalog does not allocate a whole chunk.
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_CHUNKS = 4;
+
+    // All chunks are guarded by this lock; each write only touches a single row.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, Integer> rows = new HashMap<>();
+    private int size;
+    // Rows flagged INEXACT_PRICE.
+    private int inexactPrices;
+    private Chunk[] chunks = new Chunk[INITIAL_CHUNKS];
+    // Bumped by every view; chunks written in an older generation may be shared with a view.
+    private long generation;
+
+    @Override
+    public void add(Product p) {
+        lock.lock();
+        try {
+            write(size++, p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Product> batch) {
+        lock.lock();
+        try {
+            for (Product p : batch) {
+                write(size++, p);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updatePrice(UUID id, Product.Price newPrice) {
+        lock.lock();
+        try {
+            Integer row = rows.get(id);
+            if (row == null) return;
+            Chunk chunk = writable(row);
+            int i = row & CHUNK_MASK;
+            boolean exact = newPrice.exact();
+            chunk.priceMinor[i] = newPrice.minor();
+            chunk.decimalPrice[i] = exact ? null : newPrice.amount();
+            byte f = chunk.flags[i];
+            if ((f & ColumnarView.INEXACT_PRICE) == 0 && !exact) inexactPrices++;
+            if ((f & ColumnarView.INEXACT_PRICE) != 0 && exact) inexactPrices--;
+            chunk.flags[i] = exact ? (byte) (f & ~ColumnarView.INEXACT_PRICE) : (byte) (f | ColumnarView.INEXACT_PRICE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Moves the last row into the gap so the columns stay dense.
+    @Override
+    public void remove(UUID id) {
+        lock.lock();
+        try {
+            Integer row = rows.remove(id);
+            if (row == null) return;
+            Chunk target = writable(row);
+            int i = row & CHUNK_MASK;
+            if ((target.flags[i] & ColumnarView.INEXACT_PRICE) != 0) inexactPrices--;
+            int last = --size;
+            Chunk source = chunks[last >>> CHUNK_SHIFT];
+            int j = last & CHUNK_MASK;
+            if (row != last) {
+                target.idHigh[i] = source.idHigh[j];
+                target.idLow[i] = source.idLow[j];
+                target.priceMinor[i] = source.priceMinor[j];
+                target.weight[i] = source.weight[j];
+                target.expiryEpochDay[i] = source.expiryEpochDay[j];
+                target.category[i] = source.category[j];
+                target.flags[i] = source.flags[j];
+                target.decimalPrice[i] = source.decimalPrice[j];
+                target.product[i] = source.product[j];
+                rows.put(target.product[i].uuid(), row);
+            }
+            if (j == 0) {
+                // The last chunk is empty now and is dropped as a whole.
+                chunks[last >>> CHUNK_SHIFT] = null;
+            } else {
+                // Lets the removed product be garbage collected.
+                source = writable(last);
+                source.decimalPrice[j] = null;
+                source.product[j] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every row. Views handed out before keep the chunks they share.
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            chunks = new Chunk[INITIAL_CHUNKS];
+            rows.clear();
+            size = 0;
+            inexactPrices = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every row; the chunks are left to the garbage collector with the store.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Hands out an immutable view that shares the chunks, see the class comment.
+     * Only the array of chunk references is copied, one reference per {@link #CHUNK_SIZE} rows.
+     *
+     * @param version The modification count the view is taken at.
+     * @return A view of the columns as they are now.
+     */
+    @Override
+    public ColumnarView view(long version) {
+        lock.lock();
+        try {
+            generation++;
+            int used = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+            return new HeapColumnarView(version, size, inexactPrices, Arrays.copyOf(chunks, used));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Fills a row from a product, the caller holds the lock.
+    private void write(int row, Product p) {
+        Chunk chunk = writable(row);
+        int i = row & CHUNK_MASK;
+        UUID id = p.uuid();
+        chunk.idHigh[i] = id.getMostSignificantBits();
+        chunk.idLow[i] = id.getLeastSignificantBits();
+        Product.Price price = p.priceState();
+        chunk.priceMinor[i] = price.minor();
+        chunk.category[i] = p.category().ordinal();
+        byte f = 0;
+        double w = 0.0;
+        long expiry = 0;
+        if (p instanceof Shippable shippable) {
+            f |= ColumnarView.SHIPPABLE;
+            w = shippable.weight() == null ? 0.0 : shippable.weight();
+        }
+        if (p instanceof Perishable perishable && perishable.expirationDate() != null) {
+            f |= ColumnarView.PERISHABLE;
+            expiry = perishable.expirationDate().toEpochDay();
+        }
+        if (!price.exact()) {
+            f |= ColumnarView.INEXACT_PRICE;
+            inexactPrices++;
+        }
+        chunk.weight[i] = w;
+        chunk.expiryEpochDay[i] = expiry;
+        chunk.flags[i] = f;
+        chunk.decimalPrice[i] = price.exact() ? null : price.amount();
+        chunk.product[i] = p;
+        rows.put(id, row);
+    }
+
+    // Returns the chunk holding a row, ready to be written: a chunk a view may share is copied first,
+    // a missing one is created, and the last chunk grows by half (up to CHUNK_SIZE) when the row does not fit.
+    private Chunk writable(int row) {
+        int c = row >>> CHUNK_SHIFT;
+        int i = row & CHUNK_MASK;
+        if (c == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        Chunk chunk = chunks[c];
+        if (chunk == null) {
+            chunk = new Chunk(c == 0 ? INITIAL_CAPACITY : CHUNK_SIZE, generation);
+        } else if (i >= chunk.capacity()) {
+            chunk = chunk.copy(Math.min(CHUNK_SIZE, Math.max(i + 1, chunk.capacity() + (chunk.capacity() >> 1))), generation);
+        } else if (chunk.generation != generation) {
+            chunk = chunk.copy(chunk.capacity(), generation);
+        } else {
+            return chunk;
+        }
+        chunks[c] = chunk;
+        return chunk;
+    }
+
+    /**
+     * The columns of up to {@link #CHUNK_SIZE} consecutive rows. A chunk is only written in the
+     * generation it was created in; once a view shares it, writes go to a copy.
+     */
+    static final class Chunk {
+        final long[] idHigh;
+        final long[] idLow;
+        final long[] priceMinor;
+        final double[] weight;
+        final long[] expiryEpochDay;
+        final int[] category;
+        final byte[] flags;
+        // The BigDecimal price of rows flagged INEXACT_PRICE, null for the others.
+        final BigDecimal[] decimalPrice;
+        final Product[] product;
+        private final long generation;
+
+        private Chunk(int capacity, long generation) {
+            this(new long[capacity], new long[capacity], new long[capacity], new double[capacity], new long[capacity],
+                    new int[capacity], new byte[capacity], new BigDecimal[capacity], new Product[capacity], generation);
+        }
+
+        private Chunk(long[] idHigh, long[] idLow, long[] priceMinor, double[] weight, long[] expiryEpochDay, int[] category,
+                      byte[] flags, BigDecimal[] decimalPrice, Product[] product, long generation) {
+            this.idHigh = idHigh;
+            this.idLow = idLow;
+            this.priceMinor = priceMinor;
+            this.weight = weight;
+            this.expiryEpochDay = expiryEpochDay;
+            this.category = category;
+            this.flags = flags;
+            this.decimalPrice = decimalPrice;
+            this.product = product;
+            this.generation = generation;
+        }
+
+        int capacity() {
+            return product.length;
+        }
+
+        private Chunk copy(int capacity, long generation) {
+            return new Chunk(Arrays.copyOf(idHigh, capacity), Arrays.copyOf(idLow, capacity), Arrays.copyOf(priceMinor, capacity),
+                    Arrays.copyOf(weight, capacity), Arrays.copyOf(expiryEpochDay, capacity), Arrays.copyOf(category, capacity),
+                    Arrays.copyOf(flags, capacity), Arrays.copyOf(decimalPrice, capacity), Arrays.copyOf(product, capacity), generation);
+        }
+    }
+}
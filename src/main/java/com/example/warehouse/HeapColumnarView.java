@@ -0,0 +1,80 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static com.example.warehouse.HeapColumnarStore.CHUNK_MASK;
+import static com.example.warehouse.HeapColumnarStore.CHUNK_SHIFT;
+
+/**
+ * A {@link ColumnarView} over primitive Java arrays, created by {@link HeapColumnarStore}.
+ * The rows are read from the store's chunks, which the store no longer writes to once this view shares them.
+ */
+final class HeapColumnarView extends ColumnarView {
+
+    private final HeapColumnarStore.Chunk[] chunks;
+
+    HeapColumnarView(long version, int size, int inexactPrices, HeapColumnarStore.Chunk[] chunks) {
+        super(version, size, inexactPrices);
+        this.chunks = chunks;
+    }
+
+    private HeapColumnarStore.Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+
+    @Override
+    public UUID uuid(int row) {
+        HeapColumnarStore.Chunk chunk = chunk(row);
+        return new UUID(chunk.idHigh[row & CHUNK_MASK], chunk.idLow[row & CHUNK_MASK]);
+    }
+
+    @Override
+    public long priceMinor(int row) {
+        return chunk(row).priceMinor[row & CHUNK_MASK];
+    }
+
+    @Override
+    public long[] copyPriceColumn() {
+        long[] prices = new long[size()];
+        for (int from = 0; from < prices.length; from += HeapColumnarStore.CHUNK_SIZE) {
+            System.arraycopy(chunk(from).priceMinor, 0, prices, from, Math.min(HeapColumnarStore.CHUNK_SIZE, prices.length - from));
+        }
+        return prices;
+    }
+
+    @Override
+    public double weight(int row) {
+        return chunk(row).weight[row & CHUNK_MASK];
+    }
+
+    @Override
+    public long expiryEpochDay(int row) {
+        return chunk(row).expiryEpochDay[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int categoryOrdinal(int row) {
+        return chunk(row).category[row & CHUNK_MASK];
+    }
+
+    @Override
+    protected byte flags(int row) {
+        return chunk(row).flags[row & CHUNK_MASK];
+    }
+
+    @Override
+    protected BigDecimal inexactPrice(int row) {
+        return chunk(row).decimalPrice[row & CHUNK_MASK];
+    }
+
+    @Override
+    public String name(int row) {
+        return chunk(row).product[row & CHUNK_MASK].name();
+    }
+
+    @Override
+    public Product product(int row) {
+        return chunk(row).product[row & CHUNK_MASK];
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.warehouse;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link MetricsSink} that keeps everything in memory, to be polled by a monitoring exporter or read in tests.
+ * Counters are LongAdders and timers are {@link LatencyHistogram}s, so concurrent writers do not contend.
+ */
+public final class InMemoryMetricsSink implements MetricsSink {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordNanos(String timer, long nanos) {
+        timer(timer).record(nanos);
+    }
+
+    @Override
+    public void increment(String counter, long delta) {
+        counters.computeIfAbsent(counter, ignored -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void registerGauge(String gauge, LongSupplier value) {
+        gauges.put(gauge, value);
+    }
+
+    @Override
+    public void unregisterGauge(String gauge, LongSupplier value) {
+        gauges.remove(gauge, value);
+    }
+
+    /**
+     * Retrieves the current value of a counter.
+     *
+     * @param counter The counter name.
+     * @return The value, 0 if the counter was never incremented.
+     */
+    public long counter(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Retrieves the histogram of a timer, creating an empty one if nothing was recorded yet.
+     *
+     * @param timer The timer name.
+     * @return The histogram.
+     */
+    public LatencyHistogram timer(String timer) {
+        return timers.computeIfAbsent(timer, ignored -> new LatencyHistogram());
+    }
+
+    /**
+     * Reads the current value of a gauge.
+     *
+     * @param gauge The gauge name.
+     * @return The value, or empty if no such gauge is registered.
+     */
+    public OptionalLong gauge(String gauge) {
+        LongSupplier value = gauges.get(gauge);
+        return value == null ? OptionalLong.empty() : OptionalLong.of(value.getAsLong());
+    }
+
+    /**
+     * Retrieves the names of all timers that were recorded to.
+     *
+     * @return The timer names.
+     */
+    public Set<String> timerNames() {
+        return Set.copyOf(timers.keySet());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.warehouse;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with one bucket per power of two nanoseconds.
+ * Recording is a leading-zero count and two LongAdder increments, so it can sit on hot paths;
+ * the price is that percentiles are only accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    // Bucket i counts durations in [2^(i-1), 2^i), bucket 0 counts durations of 0.
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds, negative values count as 0.
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(duration)].increment();
+        totalNanos.add(duration);
+        maxNanos.accumulate(duration);
+    }
+
+    /**
+     * Retrieves the number of recorded durations.
+     *
+     * @return The count.
+     */
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the mean duration.
+     *
+     * @return The mean in nanoseconds, 0 if nothing was recorded.
+     */
+    public double meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Retrieves the longest recorded duration.
+     *
+     * @return The maximum in nanoseconds.
+     */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Retrieves an upper bound for a percentile: the end of the bucket that holds it.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound in nanoseconds, 0 if nothing was recorded.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i == 0 ? 0 : Math.min(maxNanos(), (1L << i) - 1);
+        }
+        return maxNanos();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.warehouse;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the metrics of a {@link Warehouse} and its analyzer, to bridge them to a monitoring system.
+ * Register a sink with {@link Warehouse#metricsSink(MetricsSink)}; {@link InMemoryMetricsSink} is a
+ * ready-made implementation that can be polled.
+ * <p>
+ * Timers, in nanoseconds per call (rejected warehouse writes are not timed):
+ * {@code warehouse.addProduct, warehouse.addProducts, warehouse.updateProductPrice, warehouse.getProductById,
+ * warehouse.remove} and {@code analyzer.<method name>} for every analyzer query.
+ * Counters: {@code warehouse.products.added, warehouse.prices.updated, warehouse.products.removed}.
+ * Gauges, registered when the sink is set and unregistered when it is replaced:
+ * {@code warehouse.products, warehouse.changedProducts}.
+ * <p>
+ * Implementations are called from the threads doing the work, so they must be thread-safe and cheap.
+ */
+public interface MetricsSink {
+
+    /**
+     * The sink used when none is registered. It does not even read the clock.
+     */
+    MetricsSink NONE = new MetricsSink() {
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void stop(String timer, long start) {
+        }
+
+        @Override
+        public void recordNanos(String timer, long nanos) {
+        }
+
+        @Override
+        public void increment(String counter, long delta) {
+        }
+
+        @Override
+        public void registerGauge(String gauge, LongSupplier value) {
+        }
+
+        @Override
+        public void unregisterGauge(String gauge, LongSupplier value) {
+        }
+    };
+
+    /**
+     * Adds the duration of one call to a timer.
+     *
+     * @param timer The timer name.
+     * @param nanos The duration in nanoseconds.
+     */
+    void recordNanos(String timer, long nanos);
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter The counter name.
+     * @param delta   The amount to add.
+     */
+    void increment(String counter, long delta);
+
+    /**
+     * Registers a gauge, whose value is read whenever the sink wants it.
+     *
+     * @param gauge The gauge name.
+     * @param value Supplies the current value.
+     */
+    void registerGauge(String gauge, LongSupplier value);
+
+    /**
+     * Removes a gauge, but only if it is still the one that was registered with this supplier,
+     * so a gauge of the same name registered later by someone else is kept.
+     *
+     * @param gauge The gauge name.
+     * @param value The supplier it was registered with.
+     */
+    void unregisterGauge(String gauge, LongSupplier value);
+
+    /**
+     * Starts timing a call.
+     *
+     * @return The start time to pass to {@link #stop(String, long)}.
+     */
+    default long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops timing a call and records its duration.
+     *
+     * @param timer The timer name.
+     * @param start The value returned by {@link #start()}.
+     */
+    default void stop(String timer, long start) {
+        recordNanos(timer, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-scale money arithmetic on long minor units (cents), e.g. 15.50 is held as 1550.
+ * Prices in the warehouse have two decimals, so sums, averages and percentages can be computed
+ * without allocating a BigDecimal per step and converted back only when a result is returned.
+ * All rounding is HALF_UP, matching the BigDecimal code it replaces.
+ * <p>
+ * BigDecimal stays the authority: an amount only takes the long path when {@link #isExact(BigDecimal)}
+ * holds for it, everything else is computed with BigDecimal as before.
+ */
+public final class Money {
+
+    // Number of decimals in a minor-unit amount.
+    public static final int SCALE = 2;
+
+    /**
+     * The largest amount in minor units that takes the long path (about 42.9 million with two decimals).
+     * Summing up to Integer.MAX_VALUE such amounts, or taking a percentage of one, cannot overflow a long.
+     */
+    public static final long MAX_EXACT_MINOR_UNITS = Long.MAX_VALUE / Integer.MAX_VALUE;
+
+    private static final BigDecimal MAX_EXACT = BigDecimal.valueOf(MAX_EXACT_MINOR_UNITS, SCALE);
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to minor units, rounding HALF_UP to two decimals.
+     *
+     * @param amount The amount to convert.
+     * @return The amount in minor units.
+     * @throws ArithmeticException if the amount does not fit in a long.
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Checks if an amount can be held in minor units without losing anything: it has at most two
+     * decimals and is at most {@link #MAX_EXACT_MINOR_UNITS} in size.
+     *
+     * @param amount The amount to check.
+     * @return true if the long arithmetic gives the same result as BigDecimal.
+     */
+    public static boolean isExact(BigDecimal amount) {
+        return amount.scale() <= SCALE && amount.abs().compareTo(MAX_EXACT) <= 0;
+    }
+
+    /**
+     * Converts an amount to minor units, rounding HALF_UP to two decimals and capping it at the
+     * range of a long, e.g. to place it in an approximate structure such as a quantile sketch.
+     *
+     * @param amount The amount to convert.
+     * @return The amount in minor units, or Long.MIN_VALUE/Long.MAX_VALUE if it is out of range.
+     */
+    public static long toMinorUnitsSaturated(BigDecimal amount) {
+        BigInteger unscaled = amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) return unscaled.longValue();
+        return unscaled.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    /**
+     * Converts minor units back to an amount with two decimals.
+     *
+     * @param minorUnits The amount in minor units.
+     * @return The amount as a BigDecimal with scale 2.
+     */
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Divides two longs and rounds the quotient HALF_UP (away from zero on a tie).
+     *
+     * @param dividend The value to divide.
+     * @param divisor  The value to divide by.
+     * @return The rounded quotient.
+     * @throws ArithmeticException if the divisor is zero.
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        // remainder >= |divisor| - remainder is the same as 2 * remainder >= |divisor|, without overflowing.
+        if (remainder >= Math.abs(divisor) - remainder) {
+            quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Takes a whole-number percentage of an amount, e.g. 85 percent for a 15% discount.
+     *
+     * @param minorUnits The amount in minor units.
+     * @param percent    The percentage to keep.
+     * @return The rounded result in minor units.
+     */
+    public static long percentOf(long minorUnits, int percent) {
+        return divideHalfUp(Math.multiplyExact(minorUnits, percent), 100);
+    }
+}
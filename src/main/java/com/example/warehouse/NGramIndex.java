@@ -0,0 +1,139 @@
+package com.example.warehouse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inverted index from character trigrams to the products whose name contains them.
+ * A substring search only has to look at products that share every trigram of the search term,
+ * instead of running String.contains over the whole catalog.
+ * <p>
+ * Names and search terms are lowercased with Locale.ROOT, so lookups are case-insensitive.
+ */
+class NGramIndex {
+
+    // Length of the grams; terms shorter than this cannot be answered from the index.
+    static final int GRAM_LENGTH = 3;
+
+    private final Map<String, Set<UUID>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Adds every trigram of a product name to the index.
+     *
+     * @param id   The UUID of the product.
+     * @param name The name of the product (may be null, then nothing is indexed).
+     */
+    void add(UUID id, String name) {
+        for (String gram : grams(normalize(name))) {
+            // Inserted inside compute: a concurrent remove could otherwise drop the emptied set from the
+            // map between looking it up and adding to it, and the id would be lost with that set.
+            postings.compute(gram, (g, ids) -> {
+                if (ids == null) ids = ConcurrentHashMap.newKeySet();
+                ids.add(id);
+                return ids;
+            });
+        }
+    }
+
+    /**
+     * Adds many product names at once. The grams are grouped first, so each posting list
+     * is looked up once per batch instead of once per product.
+     *
+     * @param products The products to index.
+     */
+    void addAll(Collection<? extends Product> products) {
+        Map<String, List<UUID>> grouped = new HashMap<>();
+        for (Product product : products) {
+            for (String gram : grams(normalize(product.name()))) {
+                grouped.computeIfAbsent(gram, g -> new ArrayList<>()).add(product.uuid());
+            }
+        }
+        grouped.forEach((gram, added) -> postings.compute(gram, (g, ids) -> {
+            if (ids == null) ids = ConcurrentHashMap.newKeySet();
+            ids.addAll(added);
+            return ids;
+        }));
+    }
+
+    /**
+     * Removes a product name from the index.
+     *
+     * @param id   The UUID of the product.
+     * @param name The name the product was added with.
+     */
+    void remove(UUID id, String name) {
+        for (String gram : grams(normalize(name))) {
+            // Drops the posting list once it is empty so the index does not keep growing.
+            postings.computeIfPresent(gram, (g, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Finds the products that contain every trigram of the search term.
+     * The result is a superset of the real matches, callers still have to check the name itself.
+     *
+     * @param normalizedTerm The lowercased search term, at least GRAM_LENGTH characters long.
+     * @return The UUIDs of the candidate products.
+     */
+    Set<UUID> candidates(String normalizedTerm) {
+        Set<String> grams = grams(normalizedTerm);
+        // Start from the shortest posting list, it bounds the size of the result.
+        Set<UUID> smallest = null;
+        for (String gram : grams) {
+            Set<UUID> ids = postings.get(gram);
+            if (ids == null) return Set.of();
+            if (smallest == null || ids.size() < smallest.size()) smallest = ids;
+        }
+        Set<UUID> result = new HashSet<>();
+        if (smallest == null) return result;
+        for (UUID id : smallest) {
+            boolean inAll = true;
+            for (String gram : grams) {
+                Set<UUID> ids = postings.get(gram);
+                if (ids == null || !ids.contains(id)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Removes every entry from the index.
+     */
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Lowercases a name or search term the same way the index does.
+     *
+     * @param text The text to normalize.
+     * @return The lowercased text, or an empty string if the text is null.
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // Splits a normalized string into its distinct, overlapping trigrams.
+    private static Set<String> grams(String normalized) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.warehouse;
+
+import java.lang.foreign.Arena;
+import java.lang.ref.Cleaner;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the product rows of a warehouse in native memory, outside the garbage-collected heap.
+ * Each row is a fixed-width record:
+ * <pre>
+ *  offset  0  long    UUID most significant bits
+ *  offset  8  long    UUID least significant bits
+ *  offset 16  long    price in minor units
+ *  offset 24  double  weight
+ *  offset 32  long    expiration epoch day
+ *  offset 40  int     category ordinal
+ *  offset 44  byte    type flags (3 bytes padding)
+ * </pre>
+ * The map from UUID to row is a hash table in native memory as well, see {@link OffHeapRowIndex}.
+ * Names are variable-length and stay in an on-heap side table, as do the BigDecimal prices of rows
+ * whose price has no exact minor-unit form, next to the product handles that map a row back to its
+ * product object. The product objects themselves are still held by the warehouse, whose indexes and
+ * snapshots hand them out, so this mode takes the scan columns and the row lookup off the heap but
+ * not the products.
+ * <p>
+ * The rows are split into chunks of {@link #CHUNK_SIZE}, each with its own segment and side tables.
+ * Views share the chunks instead of copying them, and the first write to a chunk a view shares moves
+ * that chunk to a new segment, so a write between two views copies one chunk, not every record.
+ * A segment a view may still read is freed when it becomes unreachable; every other segment is freed
+ * as soon as it is replaced, on clear and on close.
+ * <p>
+ * Rows are not stable: removing a product moves the last row into the gap.
+ */
+class OffHeapColumnarStore implements ColumnarStore {
+
+    // Record layout, see the class comment.
+    static final long RECORD_SIZE = 48;
+    static final long ID_HIGH = 0;
+    static final long ID_LOW = 8;
+    static final long PRICE_MINOR = 16;
+    static final long WEIGHT = 24;
+    static final long EXPIRY_EPOCH_DAY = 32;
+    static final long CATEGORY = 40;
+    static final long FLAGS = 44;
+
+    // Rows per chunk; a power of two, so a row splits into chunk and offset with a shift and a mask.
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Rows in the first chunk until it grows, so a small catalog does not allocate a whole chunk.
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_CHUNKS = 4;
+    // Closes the arenas of replaced segments once no view reads them any more.
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Guards the chunks and the row index.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final OffHeapRowIndex rows = new OffHeapRowIndex();
+    private int size;
+    // Rows flagged INEXACT_PRICE.
+    private int inexactPrices;
+    private Chunk[] chunks = new Chunk[INITIAL_CHUNKS];
+    // Bumped by every view; chunks written in an older generation may be shared with a view.
+    private long generation;
+    private boolean closed;
+
+    @Override
+    public void add(Product p) {
+        lock.lock();
+        try {
+            ensureOpen();
+            write(size++, p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Product> batch) {
+        lock.lock();
+        try {
+            ensureOpen();
+            for (Product p : batch) {
+                write(size++, p);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updatePrice(UUID id, Product.Price newPrice) {
+        lock.lock();
+        try {
+            ensureOpen();
+            int row = rows.get(id);
+            if (row < 0) return;
+            Chunk chunk = writable(row);
+            int i = row & CHUNK_MASK;
+            long base = i * RECORD_SIZE;
+            boolean exact = newPrice.exact();
+            chunk.records.set(ValueLayout.JAVA_LONG, base + PRICE_MINOR, newPrice.minor());
+            chunk.decimalPrices[i] = exact ? null : newPrice.amount();
+            byte flags = chunk.records.get(ValueLayout.JAVA_BYTE, base + FLAGS);
+            if ((flags & ColumnarView.INEXACT_PRICE) == 0 && !exact) inexactPrices++;
+            if ((flags & ColumnarView.INEXACT_PRICE) != 0 && exact) inexactPrices--;
+            flags = exact ? (byte) (flags & ~ColumnarView.INEXACT_PRICE) : (byte) (flags | ColumnarView.INEXACT_PRICE);
+            chunk.records.set(ValueLayout.JAVA_BYTE, base + FLAGS, flags);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(UUID id) {
+        lock.lock();
+        try {
+            ensureOpen();
+            int row = rows.remove(id);
+            if (row < 0) return;
+            Chunk target = writable(row);
+            int i = row & CHUNK_MASK;
+            if ((target.records.get(ValueLayout.JAVA_BYTE, i * RECORD_SIZE + FLAGS) & ColumnarView.INEXACT_PRICE) != 0) inexactPrices--;
+            int last = --size;
+            Chunk source = chunks[last >>> CHUNK_SHIFT];
+            int j = last & CHUNK_MASK;
+            if (row != last) {
+                // A single copy moves the whole record into the gap.
+                MemorySegment.copy(source.records, j * RECORD_SIZE, target.records, i * RECORD_SIZE, RECORD_SIZE);
+                target.names[i] = source.names[j];
+                target.decimalPrices[i] = source.decimalPrices[j];
+                target.handles[i] = source.handles[j];
+                long base = i * RECORD_SIZE;
+                rows.put(new UUID(target.records.get(ValueLayout.JAVA_LONG, base + ID_HIGH), target.records.get(ValueLayout.JAVA_LONG, base + ID_LOW)), row);
+            }
+            if (j == 0) {
+                // The last chunk is empty now and is freed as a whole.
+                release(source);
+                chunks[last >>> CHUNK_SHIFT] = null;
+            } else {
+                source = writable(last);
+                source.names[j] = null;
+                source.decimalPrices[j] = null;
+                source.handles[j] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every row and frees the records, starting over with a chunk of the initial size.
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            ensureOpen();
+            releaseAll();
+            rows.clear();
+            size = 0;
+            inexactPrices = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the records and the row index. Views handed out before stay readable until they are unreachable.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            releaseAll();
+            rows.close();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands out an immutable view that reads the records in place, sharing the chunks, see the class comment.
+     * Only the array of chunk references is copied, one reference per {@link #CHUNK_SIZE} rows.
+     *
+     * @param version The modification count the view is taken at.
+     * @return A view of the records as they are now.
+     */
+    @Override
+    public ColumnarView view(long version) {
+        lock.lock();
+        try {
+            ensureOpen();
+            generation++;
+            int used = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+            return new OffHeapColumnarView(version, size, inexactPrices, Arrays.copyOf(chunks, used));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Fills a record from a product, the caller holds the lock.
+    private void write(int row, Product p) {
+        Chunk chunk = writable(row);
+        int i = row & CHUNK_MASK;
+        long base = i * RECORD_SIZE;
+        UUID id = p.uuid();
+        Product.Price price = p.priceState();
+        byte flags = 0;
+        double weight = 0.0;
+        long expiry = 0;
+        if (p instanceof Shippable shippable) {
+            flags |= ColumnarView.SHIPPABLE;
+            weight = shippable.weight() == null ? 0.0 : shippable.weight();
+        }
+        if (p instanceof Perishable perishable && perishable.expirationDate() != null) {
+            flags |= ColumnarView.PERISHABLE;
+            expiry = perishable.expirationDate().toEpochDay();
+        }
+        if (!price.exact()) {
+            flags |= ColumnarView.INEXACT_PRICE;
+            inexactPrices++;
+        }
+        MemorySegment records = chunk.records;
+        records.set(ValueLayout.JAVA_LONG, base + ID_HIGH, id.getMostSignificantBits());
+        records.set(ValueLayout.JAVA_LONG, base + ID_LOW, id.getLeastSignificantBits());
+        records.set(ValueLayout.JAVA_LONG, base + PRICE_MINOR, price.minor());
+        records.set(ValueLayout.JAVA_DOUBLE, base + WEIGHT, weight);
+        records.set(ValueLayout.JAVA_LONG, base + EXPIRY_EPOCH_DAY, expiry);
+        records.set(ValueLayout.JAVA_INT, base + CATEGORY, p.category().ordinal());
+        records.set(ValueLayout.JAVA_BYTE, base + FLAGS, flags);
+        chunk.names[i] = p.name();
+        chunk.decimalPrices[i] = price.exact() ? null : price.amount();
+        chunk.handles[i] = p;
+        rows.put(id, row);
+    }
+
+    // Returns the chunk holding a row, ready to be written: a chunk a view may share is moved to a new
+    // segment first, a missing one is created, and the last chunk grows by half (up to CHUNK_SIZE) when the row does not fit.
+    private Chunk writable(int row) {
+        int c = row >>> CHUNK_SHIFT;
+        int i = row & CHUNK_MASK;
+        if (c == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        Chunk chunk = chunks[c];
+        Chunk replacement;
+        if (chunk == null) {
+            replacement = new Chunk(c == 0 ? INITIAL_CAPACITY : CHUNK_SIZE, generation);
+        } else if (i >= chunk.capacity()) {
+            replacement = chunk.copy(Math.min(CHUNK_SIZE, Math.max(i + 1, chunk.capacity() + (chunk.capacity() >> 1))), generation);
+        } else if (chunk.generation != generation) {
+            replacement = chunk.copy(chunk.capacity(), generation);
+        } else {
+            return chunk;
+        }
+        if (chunk != null) release(chunk);
+        chunks[c] = replacement;
+        return replacement;
+    }
+
+    // Frees a replaced chunk right away, unless a view may read it and the cleaner frees it later.
+    private void release(Chunk chunk) {
+        if (chunk.generation == generation) chunk.arena.close();
+        else CLEANER.register(chunk, chunk.arena::close);
+    }
+
+    private void releaseAll() {
+        for (Chunk chunk : chunks) {
+            if (chunk != null) release(chunk);
+        }
+        chunks = new Chunk[INITIAL_CHUNKS];
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("The off-heap records have been freed, the warehouse is closed.");
+    }
+
+    /**
+     * The records of up to {@link #CHUNK_SIZE} consecutive rows in one segment, with their side tables.
+     * A chunk is only written in the generation it was created in; once a view shares it, writes go to a copy.
+     */
+    static final class Chunk {
+        final MemorySegment records;
+        final String[] names;
+        // The BigDecimal price of rows flagged INEXACT_PRICE, null for the others.
+        final BigDecimal[] decimalPrices;
+        final Product[] handles;
+        // Each segment gets its own arena, so it can be freed on its own once it has been replaced.
+        private final Arena arena;
+        private final long generation;
+
+        private Chunk(int capacity, long generation) {
+            this.arena = Arena.ofShared();
+            this.records = arena.allocate(capacity * RECORD_SIZE, Long.BYTES);
+            this.names = new String[capacity];
+            this.decimalPrices = new BigDecimal[capacity];
+            this.handles = new Product[capacity];
+            this.generation = generation;
+        }
+
+        private Chunk(Chunk from, int capacity, long generation) {
+            this.arena = Arena.ofShared();
+            this.records = arena.allocate(capacity * RECORD_SIZE, Long.BYTES);
+            MemorySegment.copy(from.records, 0, records, 0, Math.min(from.capacity(), capacity) * RECORD_SIZE);
+            this.names = Arrays.copyOf(from.names, capacity);
+            this.decimalPrices = Arrays.copyOf(from.decimalPrices, capacity);
+            this.handles = Arrays.copyOf(from.handles, capacity);
+            this.generation = generation;
+        }
+
+        int capacity() {
+            return handles.length;
+        }
+
+        private Chunk copy(int capacity, long generation) {
+            return new Chunk(this, capacity, generation);
+        }
+    }
+}
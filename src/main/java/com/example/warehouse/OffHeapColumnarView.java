@@ -0,0 +1,88 @@
+package com.example.warehouse;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static com.example.warehouse.OffHeapColumnarStore.*;
+
+/**
+ * A {@link ColumnarView} that reads fixed-width records straight from native memory,
+ * created by {@link OffHeapColumnarStore}. See that class for the record layout.
+ * The records are read from the store's chunks, which the store no longer writes to once this view shares them.
+ */
+final class OffHeapColumnarView extends ColumnarView {
+
+    private final Chunk[] chunks;
+
+    OffHeapColumnarView(long version, int size, int inexactPrices, Chunk[] chunks) {
+        super(version, size, inexactPrices);
+        this.chunks = chunks;
+    }
+
+    private MemorySegment records(int row) {
+        return chunks[row >>> CHUNK_SHIFT].records;
+    }
+
+    // The offset of a row's record within its chunk's segment.
+    private static long base(int row) {
+        return (row & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    @Override
+    public UUID uuid(int row) {
+        MemorySegment records = records(row);
+        long base = base(row);
+        return new UUID(records.get(ValueLayout.JAVA_LONG, base + ID_HIGH), records.get(ValueLayout.JAVA_LONG, base + ID_LOW));
+    }
+
+    @Override
+    public long priceMinor(int row) {
+        return records(row).get(ValueLayout.JAVA_LONG, base(row) + PRICE_MINOR);
+    }
+
+    @Override
+    public long[] copyPriceColumn() {
+        long[] prices = new long[size()];
+        for (int row = 0; row < prices.length; row++) {
+            prices[row] = priceMinor(row);
+        }
+        return prices;
+    }
+
+    @Override
+    public double weight(int row) {
+        return records(row).get(ValueLayout.JAVA_DOUBLE, base(row) + WEIGHT);
+    }
+
+    @Override
+    public long expiryEpochDay(int row) {
+        return records(row).get(ValueLayout.JAVA_LONG, base(row) + EXPIRY_EPOCH_DAY);
+    }
+
+    @Override
+    public int categoryOrdinal(int row) {
+        return records(row).get(ValueLayout.JAVA_INT, base(row) + CATEGORY);
+    }
+
+    @Override
+    protected byte flags(int row) {
+        return records(row).get(ValueLayout.JAVA_BYTE, base(row) + FLAGS);
+    }
+
+    @Override
+    protected BigDecimal inexactPrice(int row) {
+        return chunks[row >>> CHUNK_SHIFT].decimalPrices[row & CHUNK_MASK];
+    }
+
+    @Override
+    public String name(int row) {
+        return chunks[row >>> CHUNK_SHIFT].names[row & CHUNK_MASK];
+    }
+
+    @Override
+    public Product product(int row) {
+        return chunks[row >>> CHUNK_SHIFT].handles[row & CHUNK_MASK];
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.warehouse;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.UUID;
+
+/**
+ * Maps product UUIDs to their rows in an {@link OffHeapColumnarStore}, in native memory.
+ * An open-addressing hash table with linear probing, where every slot is a fixed-width record:
+ * <pre>
+ *  offset  0  long  UUID most significant bits
+ *  offset  8  long  UUID least significant bits
+ *  offset 16  int   row + 1, 0 for an empty slot (4 bytes padding)
+ * </pre>
+ * Unlike a HashMap it costs no UUID, Integer or entry object per product on the heap.
+ * The table is kept at most half full and doubles when it fills up; removals shift the following
+ * entries back, so lookups never have to skip deleted slots.
+ * <p>
+ * Not thread-safe, the store calls it under its lock.
+ */
+final class OffHeapRowIndex {
+
+    private static final long SLOT_SIZE = 24;
+    private static final long ID_HIGH = 0;
+    private static final long ID_LOW = 8;
+    private static final long ROW = 16;
+    private static final int INITIAL_SLOTS = 32;
+
+    private Arena arena;
+    private MemorySegment slots;
+    private int mask;
+    private int size;
+
+    OffHeapRowIndex() {
+        allocate(INITIAL_SLOTS);
+    }
+
+    /**
+     * Retrieves the row of a product.
+     *
+     * @param id The UUID of the product.
+     * @return The row, or -1 if the product has none.
+     */
+    int get(UUID id) {
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        for (int slot = home(high, low); ; slot = (slot + 1) & mask) {
+            int row = row(slot);
+            if (row < 0 || matches(slot, high, low)) return row;
+        }
+    }
+
+    /**
+     * Sets the row of a product, replacing the row it had.
+     *
+     * @param id  The UUID of the product.
+     * @param row The row, at least 0.
+     */
+    void put(UUID id, int row) {
+        if (2 * (size + 1) > mask + 1) allocate(2 * (mask + 1));
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int slot = home(high, low);
+        while (row(slot) >= 0 && !matches(slot, high, low)) {
+            slot = (slot + 1) & mask;
+        }
+        if (row(slot) < 0) size++;
+        write(slot, high, low, row);
+    }
+
+    /**
+     * Removes the row of a product.
+     *
+     * @param id The UUID of the product.
+     * @return The row it had, or -1 if the product has none.
+     */
+    int remove(UUID id) {
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int gap = home(high, low);
+        while (true) {
+            int row = row(gap);
+            if (row < 0) return -1;
+            if (matches(gap, high, low)) {
+                size--;
+                shiftBack(gap);
+                return row;
+            }
+            gap = (gap + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes every entry and shrinks the table back to its initial size.
+     */
+    void clear() {
+        arena.close();
+        arena = null;
+        slots = null;
+        size = 0;
+        allocate(INITIAL_SLOTS);
+    }
+
+    /**
+     * Frees the table; it cannot be used afterwards.
+     */
+    void close() {
+        arena.close();
+        slots = null;
+    }
+
+    // Fills the gap left by a removal with the next entries of its probe run that may move there.
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; row(slot) >= 0; slot = (slot + 1) & mask) {
+            int home = home(slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE + ID_HIGH), slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE + ID_LOW));
+            // The entry may move back if the gap lies between its home slot and where it is now.
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                MemorySegment.copy(slots, slot * SLOT_SIZE, slots, gap * SLOT_SIZE, SLOT_SIZE);
+                gap = slot;
+            }
+        }
+        slots.set(ValueLayout.JAVA_INT, gap * SLOT_SIZE + ROW, 0);
+    }
+
+    // Moves every entry into a new table of the given number of slots, a power of two.
+    private void allocate(int capacity) {
+        Arena oldArena = arena;
+        MemorySegment old = slots;
+        int oldSlots = old == null ? 0 : mask + 1;
+        arena = Arena.ofShared();
+        // Allocated memory is zeroed, so every slot starts out empty.
+        slots = arena.allocate(capacity * SLOT_SIZE, Long.BYTES);
+        mask = capacity - 1;
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long base = slot * SLOT_SIZE;
+            int row = old.get(ValueLayout.JAVA_INT, base + ROW) - 1;
+            if (row < 0) continue;
+            long high = old.get(ValueLayout.JAVA_LONG, base + ID_HIGH);
+            long low = old.get(ValueLayout.JAVA_LONG, base + ID_LOW);
+            int target = home(high, low);
+            while (row(target) >= 0) {
+                target = (target + 1) & mask;
+            }
+            write(target, high, low, row);
+        }
+        if (oldArena != null) oldArena.close();
+    }
+
+    private int home(long high, long low) {
+        long h = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int row(int slot) {
+        return slots.get(ValueLayout.JAVA_INT, slot * SLOT_SIZE + ROW) - 1;
+    }
+
+    private boolean matches(int slot, long high, long low) {
+        long base = slot * SLOT_SIZE;
+        return slots.get(ValueLayout.JAVA_LONG, base + ID_HIGH) == high && slots.get(ValueLayout.JAVA_LONG, base + ID_LOW) == low;
+    }
+
+    private void write(int slot, long high, long low, int row) {
+        long base = slot * SLOT_SIZE;
+        slots.set(ValueLayout.JAVA_LONG, base + ID_HIGH, high);
+        slots.set(ValueLayout.JAVA_LONG, base + ID_LOW, low);
+        slots.set(ValueLayout.JAVA_INT, base + ROW, row + 1);
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.warehouse;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * An immutable list that is changed by creating new versions of it, each sharing almost all of its
+ * structure with the previous one. The elements sit in a tree of 32-wide nodes with the last (up to)
+ * 32 elements in a separate tail, so get and set cost O(log32 n), and appending or removing the last
+ * element is usually a copy of the tail alone.
+ * <p>
+ * Every version stays valid and unchanged for as long as it is referenced, which makes a version a
+ * snapshot that costs nothing to keep and can be read from any thread without locking.
+ *
+ * @param <E> The type of the elements.
+ */
+final class PersistentVector<E> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    // The bit offset of the root's index digit; leaves are at level 0.
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Retrieves the empty vector.
+     *
+     * @param <E> The type of the elements.
+     * @return A vector without elements.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Retrieves the number of elements.
+     *
+     * @return The size of the vector.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves an element.
+     *
+     * @param index The position of the element.
+     * @return The element at that position.
+     * @throws IndexOutOfBoundsException if the index is not within the vector.
+     */
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Creates a version with an element added at the end.
+     *
+     * @param element The element to append.
+     * @return The new version.
+     */
+    PersistentVector<E> append(E element) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: it moves into the tree, adding a level when the root is full as well.
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * Creates a version with an element replaced.
+     *
+     * @param index   The position of the element.
+     * @param element The new element.
+     * @return The new version.
+     * @throws IndexOutOfBoundsException if the index is not within the vector.
+     */
+    PersistentVector<E> set(int index, E element) {
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, set(shift, root, index, element), tail);
+    }
+
+    /**
+     * Creates a version without the last element.
+     *
+     * @return The new version.
+     * @throws IllegalStateException if the vector is empty.
+     */
+    PersistentVector<E> removeLast() {
+        if (size == 0) throw new IllegalStateException("Cannot remove from an empty vector.");
+        if (size == 1) return empty();
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        // The tail becomes empty: the last leaf of the tree becomes the new tail.
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Retrieves an unmodifiable list view of this version, e.g. to hand it out from a snapshot.
+     * The view does not copy: every read goes to the vector through the mapping function.
+     *
+     * @param mapper Turns an element into what the list exposes.
+     * @param <T>    The type of the list elements.
+     * @return A random-access list of the mapped elements.
+     */
+    <T> List<T> asList(Function<? super E, ? extends T> mapper) {
+        return new View<>(this, mapper);
+    }
+
+    /**
+     * Retrieves an unmodifiable list view of several vectors one after the other, e.g. to hand out a
+     * catalog that is kept in parts. Like {@link #asList(Function)} it does not copy the elements;
+     * only the offset of every part is computed up front.
+     *
+     * @param parts  The vectors to join, in order.
+     * @param mapper Turns an element into what the list exposes.
+     * @param <E>    The type of the elements.
+     * @param <T>    The type of the list elements.
+     * @return A random-access list of the mapped elements of every part.
+     */
+    static <E, T> List<T> concat(PersistentVector<PersistentVector<E>> parts, Function<? super E, ? extends T> mapper) {
+        return new ConcatView<>(parts, mapper);
+    }
+
+    // The position of the first element in the tail.
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size + ".");
+    }
+
+    // Copies the path to the rightmost free leaf slot and hangs the full tail there.
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int slot = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[slot] = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[slot];
+            copy[slot] = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        return copy;
+    }
+
+    // Wraps a leaf in single-child nodes down from the given level.
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) return node;
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int slot = (index >>> level) & MASK;
+            copy[slot] = set(level - BITS, (Object[]) node[slot], index, element);
+        }
+        return copy;
+    }
+
+    // Copies the path to the rightmost leaf without that leaf, null if nothing is left of the node.
+    private Object[] popTail(int level, Object[] node) {
+        int slot = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] child = popTail(level - BITS, (Object[]) node[slot]);
+            if (child == null && slot == 0) return null;
+            Object[] copy = node.clone();
+            copy[slot] = child;
+            return copy;
+        }
+        if (slot == 0) return null;
+        Object[] copy = node.clone();
+        copy[slot] = null;
+        return copy;
+    }
+
+    private static final class ConcatView<E, T> extends AbstractList<T> implements RandomAccess {
+
+        private final PersistentVector<PersistentVector<E>> parts;
+        private final Function<? super E, ? extends T> mapper;
+        // offsets[i] is the index of the first element of part i; the last entry is the size.
+        private final int[] offsets;
+
+        private ConcatView(PersistentVector<PersistentVector<E>> parts, Function<? super E, ? extends T> mapper) {
+            this.parts = parts;
+            this.mapper = mapper;
+            this.offsets = new int[parts.size + 1];
+            for (int i = 0; i < parts.size; i++) {
+                offsets[i + 1] = offsets[i] + parts.get(i).size;
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size() + ".");
+            // The last part starting at or before the index; empty parts share their offset with the next one.
+            int found = Arrays.binarySearch(offsets, 0, parts.size, index);
+            int part = found >= 0 ? found : -found - 2;
+            while (offsets[part + 1] == index) part++;
+            return mapper.apply(parts.get(part).get(index - offsets[part]));
+        }
+
+        @Override
+        public int size() {
+            return offsets[parts.size];
+        }
+    }
+
+    private static final class View<E, T> extends AbstractList<T> implements RandomAccess {
+
+        private final PersistentVector<E> vector;
+        private final Function<? super E, ? extends T> mapper;
+
+        private View(PersistentVector<E> vector, Function<? super E, ? extends T> mapper) {
+            this.vector = vector;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public T get(int index) {
+            return mapper.apply(vector.get(index));
+        }
+
+        @Override
+        public int size() {
+            return vector.size;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.warehouse;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A streaming quantile sketch of the product prices in a {@link Warehouse}, in the style of DDSketch.
+ * Prices (in minor units) are counted in logarithmic buckets whose bounds grow by a factor of
+ * (1 + a) / (1 - a), so any quantile read back is within a relative error a of a price at that rank.
+ * <p>
+ * Unlike t-digest or KLL sketches, counted buckets can also be decremented, so the warehouse keeps the
+ * sketch current through price updates and removals. The number of buckets only depends on the accuracy,
+ * which makes a quantile query constant-time with respect to the catalog size. Sketches with the same
+ * accuracy can be merged, e.g. to get quantiles across several warehouses.
+ * <p>
+ * Updates are lock-free. A query that runs alongside writers sees some of their effects, which is
+ * within what an approximate answer promises anyway.
+ */
+public final class PriceSketch {
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    // Bucket k counts prices p (in minor units) with gamma^(k-1) < p <= gamma^k, so 1 lands in bucket 0.
+    private final AtomicLongArray buckets;
+    private final AtomicLong zeroCount = new AtomicLong();
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param relativeAccuracy The relative error bound of the quantiles, from 0.0001 to 0.5.
+     * @throws IllegalArgumentException if the accuracy is out of range.
+     */
+    PriceSketch(double relativeAccuracy) {
+        // The lower bound keeps the bucket array (about 1.7 MB at 0.0001) reasonable.
+        if (!(relativeAccuracy >= 0.0001 && relativeAccuracy <= 0.5)) throw new IllegalArgumentException("Relative accuracy must be between 0.0001 and 0.5.");
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.buckets = new AtomicLongArray(bucketOf(Long.MAX_VALUE) + 1);
+    }
+
+    /**
+     * Retrieves the relative error bound of this sketch.
+     *
+     * @return The relative accuracy.
+     */
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Retrieves the number of prices in the sketch.
+     *
+     * @return The count.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Estimates a price quantile.
+     *
+     * @param quantile The quantile, from 0 (the lowest price) to 1 (the highest).
+     * @return The estimated price in minor units, or NaN if the sketch is empty.
+     * @throws IllegalArgumentException if the quantile is out of range.
+     */
+    public double quantileMinor(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        long total = count.get();
+        if (total <= 0) return Double.NaN;
+        long rank = (long) (quantile * (total - 1));
+        long seen = zeroCount.get();
+        if (seen > rank) return 0;
+        int last = -1;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            long inBucket = buckets.get(bucket);
+            if (inBucket <= 0) continue;
+            seen += inBucket;
+            last = bucket;
+            if (seen > rank) break;
+        }
+        // Writers may have removed prices since the count was read, then the highest bucket seen has to do.
+        return last < 0 ? 0 : valueOf(last);
+    }
+
+    /**
+     * Creates a new sketch holding the prices of this sketch and another one.
+     *
+     * @param other A sketch with the same accuracy.
+     * @return The merged sketch, neither input is changed.
+     * @throws IllegalArgumentException if the accuracies differ.
+     */
+    public PriceSketch mergedWith(PriceSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) throw new IllegalArgumentException("Only sketches with the same accuracy can be merged.");
+        PriceSketch merged = new PriceSketch(relativeAccuracy);
+        for (PriceSketch source : new PriceSketch[]{this, other}) {
+            for (int bucket = 0; bucket < buckets.length(); bucket++) {
+                long inBucket = source.buckets.get(bucket);
+                if (inBucket != 0) merged.buckets.addAndGet(bucket, inBucket);
+            }
+            merged.zeroCount.addAndGet(source.zeroCount.get());
+            merged.count.addAndGet(source.count.get());
+        }
+        return merged;
+    }
+
+    /**
+     * Counts a price.
+     *
+     * @param priceMinor The price in minor units, not negative.
+     */
+    void add(long priceMinor) {
+        adjust(priceMinor, 1);
+    }
+
+    /**
+     * Uncounts a price that was added before.
+     *
+     * @param priceMinor The price in minor units.
+     */
+    void remove(long priceMinor) {
+        adjust(priceMinor, -1);
+    }
+
+    /**
+     * Removes every price from the sketch. Must not race with add or remove.
+     */
+    void clear() {
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            buckets.set(bucket, 0);
+        }
+        zeroCount.set(0);
+        count.set(0);
+    }
+
+    private void adjust(long priceMinor, int delta) {
+        if (priceMinor <= 0) {
+            zeroCount.addAndGet(delta);
+        } else {
+            buckets.addAndGet(bucketOf(priceMinor), delta);
+        }
+        count.addAndGet(delta);
+    }
+
+    private int bucketOf(long priceMinor) {
+        return (int) Math.ceil(Math.log(priceMinor) / logGamma);
+    }
+
+    // The point of a bucket with the same relative distance to both of its bounds.
+    private double valueOf(int bucket) {
+        double upper = Math.exp(bucket * logGamma);
+        return upper * (1 - relativeAccuracy);
+    }
+}
@@ -14,7 +14,45 @@ public abstract class Product {
     private final UUID id;
     private final String name;
     private final Category category;
-    private BigDecimal price; // Price is not final (can be changed later)
+    // Price is not final (can be changed later). The BigDecimal and its minor units are published together
+    // in one immutable holder, volatile so readers see updates and never a price paired with another's minor units.
+    private volatile Price price;
+    // The warehouse whose indexes hold this product, so a price set on the product moves them as well.
+    private volatile Warehouse owner;
+
+    /**
+     * A price together with its minor units, for allocation-free arithmetic.
+     *
+     * @param amount       The price.
+     * @param encodedMinor The price in minor units, or the complement of the rounded, capped value when the
+     *                     price has no exact minor-unit form (see {@link Money#isExact(BigDecimal)}).
+     */
+    record Price(BigDecimal amount, long encodedMinor) {
+
+        // Prices are never negative, so the sign bit is free to mark a rounded minor-unit value.
+        static Price of(BigDecimal amount) {
+            long minor = Money.isExact(amount) ? Money.toMinorUnits(amount) : ~Money.toMinorUnitsSaturated(amount);
+            return new Price(amount, minor);
+        }
+
+        /**
+         * Retrieves the minor units, rounded and capped when not exact.
+         *
+         * @return The price in minor units.
+         */
+        long minor() {
+            return encodedMinor >= 0 ? encodedMinor : ~encodedMinor;
+        }
+
+        /**
+         * Checks if the minor units are exactly the price.
+         *
+         * @return true if the minor-unit price can stand in for the BigDecimal price.
+         */
+        boolean exact() {
+            return encodedMinor >= 0;
+        }
+    }
 
     /**
      * protected Constructor - Constructs a new Product instance. A unique UUID is generated automatically.
@@ -30,7 +68,7 @@ public abstract class Product {
         this.id = id; // Gives a random id-number (128bit)
         this.name = name;
         this.category = category;
-        this.price = price;
+        this.price = Price.of(price);
     }
 
     /**
@@ -66,19 +104,85 @@ public abstract class Product {
      * @return The price as a BigDecimal.
      */
     public BigDecimal price() {
+        return price.amount();
+    }
+
+    /**
+     * Retrieves the price and its minor units from a single read, so the two always belong together
+     * even while the price is being updated.
+     *
+     * @return The current price holder.
+     */
+    Price priceState() {
         return price;
     }
 
     /**
-     * Updates the product's price.
+     * Retrieves the current price in minor units (e.g. 15.50 is 1550), rounded HALF_UP to two decimals
+     * and capped at Long.MAX_VALUE. Only use it for exact arithmetic if {@link #isPriceMinorExact()}.
+     *
+     * @return The price in minor units.
+     */
+    public long priceMinor() {
+        return price.minor();
+    }
+
+    /**
+     * Checks if {@link #priceMinor()} is exactly the price, see {@link Money#isExact(BigDecimal)}.
+     * Prices with more than two decimals or beyond {@link Money#MAX_EXACT_MINOR_UNITS} are not.
+     *
+     * @return true if the minor-unit price can stand in for the BigDecimal price.
+     */
+    public boolean isPriceMinorExact() {
+        return price.exact();
+    }
+
+    /**
+     * Updates the product's price. While the product is stored in a warehouse the update goes through
+     * {@link Warehouse#updateProductPrice}, so the warehouse's price index, totals and change tracking
+     * move together with the price. A product stored in several warehouses routes through the one it
+     * was added to last.
      *
      * @param newPrice The new price to set.
      * @throws IllegalArgumentException if the provided new price is negative.
      */
     public void price(BigDecimal newPrice) {
-        this.price = newPrice;
         if (newPrice.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price cannot be negative.");
+        Warehouse owner = this.owner;
+        // The owner declines if the product was removed in the meantime, the price is then only set here.
+        if (owner != null && owner.updatePrice(this, newPrice)) return;
+        applyPrice(newPrice);
+    }
+
+    /**
+     * Sets the price without involving the warehouse. Only the warehouse calls this, while it
+     * updates its own indexes under the product's lock.
+     *
+     * @param newPrice The new price to set.
+     * @throws IllegalArgumentException if the provided new price is negative.
+     */
+    void applyPrice(BigDecimal newPrice) {
+        // Validate before assigning so concurrent readers never observe a rejected price.
+        if (newPrice.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price cannot be negative.");
+        this.price = Price.of(newPrice);
+    }
+
+    /**
+     * Records the warehouse that just stored this product.
+     *
+     * @param warehouse The warehouse.
+     */
+    synchronized void attach(Warehouse warehouse) {
+        owner = warehouse;
+    }
 
+    /**
+     * Forgets a warehouse that no longer stores this product, unless another one has taken it since.
+     *
+     * @param warehouse The warehouse the product was removed from.
+     */
+    synchronized void detach(Warehouse warehouse) {
+        if (owner == warehouse) owner = null;
     }
 
     /**
@@ -95,8 +199,9 @@ public abstract class Product {
         return Objects.equals(id, product.id);
     }
 
+    // Only the id, like equals: the price is mutable, and a hash that moves breaks hash-based collections.
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, category, price);
+        return Objects.hashCode(id);
     }
 }
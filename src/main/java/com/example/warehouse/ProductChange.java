@@ -0,0 +1,15 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A single entry of a {@link ChangeLog}.
+ *
+ * @param sequence  The position of the change in the log, starting at 1 and increasing without gaps.
+ * @param type      What kind of mutation happened.
+ * @param productId The UUID of the product, or null for {@link ChangeType#CLEARED}.
+ * @param price     The price of the product after the change, or null for REMOVED and CLEARED.
+ */
+public record ProductChange(long sequence, ChangeType type, UUID productId, BigDecimal price) {
+}
@@ -0,0 +1,213 @@
+package com.example.warehouse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Translates products to and from the plain fields used by the binary formats (snapshot files and
+ * the write-ahead log).
+ * Only the concrete product types of this package can be encoded; every BigDecimal is stored as
+ * its unscaled long value plus its scale, so it comes back exactly as it was written. Strings are
+ * written as a presence flag plus length-prefixed UTF-8, so unnamed products and names of any length
+ * round-trip.
+ */
+final class ProductCodec {
+
+    // Product type tags.
+    static final byte FOOD = 1;
+    static final byte ELECTRONICS = 2;
+    // Stored instead of an epoch day when a food product has no expiration date.
+    static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    private ProductCodec() {
+    }
+
+    /**
+     * Retrieves the type tag of a product.
+     *
+     * @param product The product to encode.
+     * @return FOOD or ELECTRONICS.
+     * @throws IllegalArgumentException if the product is of another type.
+     */
+    static byte typeOf(Product product) {
+        if (product instanceof FoodProduct) return FOOD;
+        if (product instanceof ElectronicsProduct) return ELECTRONICS;
+        throw new IllegalArgumentException("Product type cannot be encoded: " + product.getClass().getName());
+    }
+
+    /**
+     * Retrieves the exact weight of a product.
+     *
+     * @param product A food or electronics product.
+     * @return The weight.
+     */
+    static BigDecimal weightOf(Product product) {
+        return switch (product) {
+            case FoodProduct food -> food.exactWeight();
+            case ElectronicsProduct electronics -> electronics.exactWeight();
+            default -> throw new IllegalArgumentException("Product type cannot be encoded: " + product.getClass().getName());
+        };
+    }
+
+    /**
+     * Retrieves the type-specific detail of a product: the expiration epoch day of a food product,
+     * or the warranty months of an electronics product.
+     *
+     * @param product A food or electronics product.
+     * @return The detail as a long.
+     */
+    static long detailOf(Product product) {
+        return switch (product) {
+            case FoodProduct food -> food.expirationDate() == null ? NO_EXPIRY : food.expirationDate().toEpochDay();
+            case ElectronicsProduct electronics -> electronics.warrantyMonths();
+            default -> throw new IllegalArgumentException("Product type cannot be encoded: " + product.getClass().getName());
+        };
+    }
+
+    /**
+     * Creates a product from its decoded fields.
+     *
+     * @param type     The type tag.
+     * @param id       The product UUID.
+     * @param name     The product name.
+     * @param category The product category.
+     * @param price    The product price.
+     * @param weight   The product weight.
+     * @param detail   The type-specific detail, see {@link #detailOf(Product)}.
+     * @return A new product instance.
+     * @throws IllegalArgumentException if the type tag is unknown.
+     */
+    static Product create(byte type, UUID id, String name, Category category, BigDecimal price, BigDecimal weight, long detail) {
+        return switch (type) {
+            case FOOD -> new FoodProduct(id, name, category, price, detail == NO_EXPIRY ? null : LocalDate.ofEpochDay(detail), weight);
+            case ELECTRONICS -> new ElectronicsProduct(id, name, category, price, Math.toIntExact(detail), weight);
+            default -> throw new IllegalArgumentException("Unknown product type: " + type);
+        };
+    }
+
+    /**
+     * Writes a whole product, for formats that store products as variable-length records.
+     * The category is written by name, since ordinals differ between runs.
+     *
+     * @param product The product to write.
+     * @param out     Where to write it.
+     * @throws IOException if writing fails.
+     */
+    static void write(Product product, DataOutput out) throws IOException {
+        BigDecimal weight = weightOf(product);
+        out.writeByte(typeOf(product));
+        out.writeLong(product.uuid().getMostSignificantBits());
+        out.writeLong(product.uuid().getLeastSignificantBits());
+        writeDecimal(product.price(), out);
+        writeDecimal(weight, out);
+        out.writeLong(detailOf(product));
+        writeString(product.category().getName(), out);
+        writeString(product.name(), out);
+    }
+
+    /**
+     * Reads a product written by {@link #write(Product, DataOutput)}.
+     *
+     * @param in Where to read it from.
+     * @return A new product instance.
+     * @throws IOException if reading fails.
+     */
+    static Product read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        UUID id = new UUID(in.readLong(), in.readLong());
+        BigDecimal price = readDecimal(in);
+        BigDecimal weight = readDecimal(in);
+        long detail = in.readLong();
+        Category category = Category.of(readString(in));
+        return create(type, id, readString(in), category, price, weight, detail);
+    }
+
+    /**
+     * Writes a string as a presence flag followed, if present, by its UTF-8 length and bytes.
+     * Unlike DataOutput.writeUTF this accepts null and strings of more than 64 KB.
+     *
+     * @param value The string to write, may be null.
+     * @param out   Where to write it.
+     * @throws IOException if writing fails.
+     */
+    static void writeString(String value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value == null) return;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(String, DataOutput)}.
+     *
+     * @param in Where to read it from.
+     * @return The string, or null if none was written.
+     * @throws IOException if reading fails or the length is negative.
+     */
+    static String readString(DataInput in) throws IOException {
+        if (!in.readBoolean()) return null;
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Invalid string length: " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a decimal as its unscaled value followed by its scale.
+     *
+     * @param value The decimal to write.
+     * @param out   Where to write it.
+     * @throws IOException if writing fails.
+     */
+    static void writeDecimal(BigDecimal value, DataOutput out) throws IOException {
+        out.writeLong(unscaled(value));
+        out.writeByte(scale(value));
+    }
+
+    /**
+     * Reads a decimal written by {@link #writeDecimal(BigDecimal, DataOutput)}.
+     *
+     * @param in Where to read it from.
+     * @return The decimal.
+     * @throws IOException if reading fails.
+     */
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+        long unscaled = in.readLong();
+        return BigDecimal.valueOf(unscaled, in.readByte());
+    }
+
+    /**
+     * Retrieves the unscaled value of a decimal as a long.
+     *
+     * @param value The decimal to encode.
+     * @return The unscaled value.
+     * @throws IllegalArgumentException if the unscaled value does not fit in a long.
+     */
+    static long unscaled(BigDecimal value) {
+        try {
+            return value.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Value is too large to encode: " + value, e);
+        }
+    }
+
+    /**
+     * Retrieves the scale of a decimal as a byte.
+     *
+     * @param value The decimal to encode.
+     * @return The scale.
+     * @throws IllegalArgumentException if the scale does not fit in a byte.
+     */
+    static byte scale(BigDecimal value) {
+        int scale = value.scale();
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) throw new IllegalArgumentException("Scale is too large to encode: " + value);
+        return (byte) scale;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.warehouse;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits the row numbers of a {@link ColumnarView} for parallel scans.
+ * Ranges are halved exactly, so the pieces are balanced and their sizes known, and they are not split
+ * below a minimum chunk, so a fork/join task always has enough rows to pay for itself.
+ * Rows are handed out in ascending order, which keeps ordered stream results identical to a sequential scan.
+ */
+final class RowSpliterator implements Spliterator.OfInt {
+
+    private int origin;
+    private final int fence;
+    private final int minChunk;
+
+    /**
+     * @param origin   The first row (inclusive).
+     * @param fence    The last row (exclusive).
+     * @param minChunk The smallest range that is still split in two halves of at least this size.
+     */
+    RowSpliterator(int origin, int fence, int minChunk) {
+        this.origin = origin;
+        this.fence = fence;
+        this.minChunk = Math.max(1, minChunk);
+    }
+
+    @Override
+    public OfInt trySplit() {
+        int remaining = fence - origin;
+        if (remaining < 2 * minChunk) return null;
+        int mid = origin + (remaining >>> 1);
+        RowSpliterator prefix = new RowSpliterator(origin, mid, minChunk);
+        origin = mid;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (origin >= fence) return false;
+        action.accept(origin++);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        // Reads the fields once, so the loop works on locals only.
+        int row = origin;
+        int end = fence;
+        origin = end;
+        for (; row < end; row++) {
+            action.accept(row);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super Integer> getComparator() {
+        // Natural order.
+        return null;
+    }
+}
@@ -19,4 +19,25 @@ public interface Shippable {
      * @return The weight of the item in a standard unit (e.g., kilograms or pounds) as a Double.
      */
     Double weight();
+
+    /**
+     * Checks if the shipping cost can be summed in minor units without losing anything (see {@link Money#isExact}).
+     * Costs with more than two decimals, e.g. from a third-party carrier rate, are then summed as BigDecimal.
+     * The default checks calculateShippingCost(); the warehouse products return a value computed once.
+     * @return true if shippingCostMinor() is the exact cost.
+     */
+    default boolean isShippingCostExact() {
+        return Money.isExact(calculateShippingCost());
+    }
+
+    /**
+     * Retrieves the shipping cost in minor units (cents), so costs can be summed as longs.
+     * Only exact when {@link #isShippingCostExact()} holds, so callers check that first.
+     * The default converts calculateShippingCost(); the warehouse products return a value computed once.
+     * @return The shipping cost in minor units, rounded HALF_UP to two decimals.
+     * @throws ArithmeticException if the shipping cost does not fit in a long.
+     */
+    default long shippingCostMinor() {
+        return Money.toMinorUnits(calculateShippingCost());
+    }
 }
@@ -0,0 +1,152 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A table-driven shipping tariff: weight brackets, each with a fixed cost and a cost per unit of weight,
+ * e.g. "up to 2 kg: 4.90 + 0.00/kg, up to 10 kg: 6.90 + 0.50/kg, above: 19.00 + 1.10/kg".
+ * <p>
+ * The table is held as parallel long arrays in grams and minor units. Quoting is a binary search over the
+ * brackets plus long arithmetic, so pricing thousands of items in one call creates no BigDecimal per item.
+ * Weights are rounded to whole grams (thousandths of a unit), the table's costs to cents, and every
+ * item's cost is rounded HALF_UP to cents, like {@link Money}.
+ */
+public final class ShippingTariff {
+
+    // Grams per unit of weight, the resolution weights are quoted at.
+    private static final long GRAMS_PER_UNIT = 1000;
+    // The largest bracket limit, in grams, that can be held as a long.
+    private static final BigDecimal MAX_GRAMS = BigDecimal.valueOf(Long.MAX_VALUE);
+    // The largest cost, in minor units, that can be held as a long.
+    private static final BigDecimal MAX_COST = BigDecimal.valueOf(Long.MAX_VALUE, Money.SCALE);
+
+    /**
+     * One row of the tariff.
+     *
+     * @param maxWeight The heaviest weight the bracket applies to (inclusive), or null for no limit.
+     * @param fixedCost The cost of every item in the bracket.
+     * @param costPerWeightUnit The cost added per unit of weight.
+     */
+    public record Bracket(BigDecimal maxWeight, BigDecimal fixedCost, BigDecimal costPerWeightUnit) {
+
+        /**
+         * @throws IllegalArgumentException if a cost is null or negative, or the maximum weight is negative.
+         */
+        public Bracket {
+            if (fixedCost == null || fixedCost.signum() < 0) throw new IllegalArgumentException("Fixed cost cannot be null or negative.");
+            if (costPerWeightUnit == null || costPerWeightUnit.signum() < 0) throw new IllegalArgumentException("Cost per weight unit cannot be null or negative.");
+            if (maxWeight != null && maxWeight.signum() < 0) throw new IllegalArgumentException("Maximum weight cannot be negative.");
+        }
+    }
+
+    private final long[] maxGrams;
+    private final long[] fixedMinor;
+    private final long[] perUnitMinor;
+
+    /**
+     * Creates a tariff from its brackets. Items heavier than the last bracket's maximum are priced by
+     * the last bracket.
+     *
+     * @param brackets The brackets, by ascending maximum weight; only the last may have no limit.
+     * @throws IllegalArgumentException if there are no brackets, they are not in ascending order, or a
+     *                                  weight or cost is too large for the table.
+     */
+    public ShippingTariff(List<Bracket> brackets) {
+        Objects.requireNonNull(brackets, "Brackets cannot be null.");
+        if (brackets.isEmpty()) throw new IllegalArgumentException("A tariff needs at least one bracket.");
+        int n = brackets.size();
+        maxGrams = new long[n];
+        fixedMinor = new long[n];
+        perUnitMinor = new long[n];
+        for (int i = 0; i < n; i++) {
+            Bracket bracket = brackets.get(i);
+            if (bracket.maxWeight() == null && i < n - 1) throw new IllegalArgumentException("Only the last bracket can have no weight limit.");
+            maxGrams[i] = bracket.maxWeight() == null ? Long.MAX_VALUE : grams(bracket.maxWeight());
+            if (i > 0 && maxGrams[i] <= maxGrams[i - 1]) throw new IllegalArgumentException("Brackets must be in ascending order of weight.");
+            fixedMinor[i] = minorUnits(bracket.fixedCost());
+            perUnitMinor[i] = minorUnits(bracket.costPerWeightUnit());
+        }
+    }
+
+    /**
+     * Prices one weight.
+     *
+     * @param weight The weight to ship; a negative weight counts as 0.
+     * @return The cost in minor units.
+     * @throws ArithmeticException if the cost does not fit in a long.
+     */
+    public long quoteMinor(double weight) {
+        long grams = weight > 0 ? Math.round(weight * GRAMS_PER_UNIT) : 0;
+        int bracket = Arrays.binarySearch(maxGrams, grams);
+        // Not found: the insertion point is the first bracket whose maximum is above the weight.
+        if (bracket < 0) bracket = Math.min(-bracket - 1, maxGrams.length - 1);
+        return Math.addExact(fixedMinor[bracket], Money.divideHalfUp(Math.multiplyExact(perUnitMinor[bracket], grams), GRAMS_PER_UNIT));
+    }
+
+    /**
+     * Prices one item.
+     *
+     * @param item The item to ship.
+     * @return The cost with two decimals.
+     */
+    public BigDecimal quote(Shippable item) {
+        return Money.toBigDecimal(quoteMinor(weightOf(item)));
+    }
+
+    /**
+     * Prices many items into a caller-owned array, e.g. one reused across batches.
+     *
+     * @param items The items to ship.
+     * @param costs Receives the cost of items.get(i) in minor units at index i.
+     * @throws IllegalArgumentException if the array is shorter than the list.
+     */
+    public void quoteMinor(List<? extends Shippable> items, long[] costs) {
+        int n = items.size();
+        if (costs.length < n) throw new IllegalArgumentException("Cost array is shorter than the item list.");
+        for (int i = 0; i < n; i++) costs[i] = quoteMinor(weightOf(items.get(i)));
+    }
+
+    /**
+     * Prices many items.
+     *
+     * @param items The items to ship.
+     * @return The cost of every item in minor units, in list order.
+     */
+    public long[] quoteMinor(List<? extends Shippable> items) {
+        long[] costs = new long[items.size()];
+        quoteMinor(items, costs);
+        return costs;
+    }
+
+    /**
+     * Prices many items together.
+     *
+     * @param items The items to ship.
+     * @return The sum of their costs with two decimals.
+     */
+    public BigDecimal quoteTotal(Iterable<? extends Shippable> items) {
+        long total = 0;
+        for (Shippable item : items) total = Math.addExact(total, quoteMinor(weightOf(item)));
+        return Money.toBigDecimal(total);
+    }
+
+    private static long grams(BigDecimal weight) {
+        BigDecimal grams = weight.movePointRight(3).setScale(0, RoundingMode.HALF_UP);
+        if (grams.compareTo(MAX_GRAMS) > 0) throw new IllegalArgumentException("Maximum weight " + weight + " is too large, use null for no limit.");
+        return grams.longValue();
+    }
+
+    private static long minorUnits(BigDecimal cost) {
+        if (cost.setScale(Money.SCALE, RoundingMode.HALF_UP).compareTo(MAX_COST) > 0) throw new IllegalArgumentException("Cost " + cost + " is too large.");
+        return Money.toMinorUnits(cost);
+    }
+
+    private static double weightOf(Shippable item) {
+        Double weight = item.weight();
+        return weight == null ? 0.0 : weight;
+    }
+}
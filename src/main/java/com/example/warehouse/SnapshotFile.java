@@ -0,0 +1,446 @@
+package com.example.warehouse;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A compact binary snapshot of a warehouse's products, its category table and its changed products,
+ * used to restart without rebuilding the catalog one product at a time.
+ * <p>
+ * An opened snapshot is memory-mapped, so opening costs about the same for any number of products.
+ * Products are only decoded when they are first read, and each one is decoded at most once.
+ * The file is laid out as follows (all numbers big-endian):
+ * <pre>
+ *  header      int magic, int format version, int category count, int product count,
+ *              long categories offset, long records offset, long names offset, long names length
+ *  categories  per category: int length, UTF-8 name (in ordinal order)
+ *  records     64 bytes per product, sorted by UUID, see the record offsets below
+ *  names       UTF-8 product names, referenced by offset and length from the records
+ *              (a length of -1 stands for a product without a name)
+ * </pre>
+ * Since the records are sorted, a product can be looked up in the file by its UUID.
+ * A snapshot must be closed to unmap the file; products that were already read stay usable.
+ * A warehouse restoring the snapshot keeps the file mapped until it has taken every product,
+ * see {@link #restoreInto(Warehouse)}.
+ */
+public final class SnapshotFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x57485331; // "WHS1"
+    // Version 1 did not sort the records.
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 48;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Record layout, offsets within a 64-byte record.
+    private static final int RECORD_SIZE = 64;
+    private static final int TYPE = 0;
+    private static final int PRICE_SCALE = 1;
+    private static final int WEIGHT_SCALE = 2;
+    private static final int RECORD_FLAGS = 3;
+    private static final int CATEGORY = 4;
+    private static final int ID_HIGH = 8;
+    private static final int ID_LOW = 16;
+    private static final int PRICE_UNSCALED = 24;
+    private static final int WEIGHT_UNSCALED = 32;
+    private static final int DETAIL = 40;
+    private static final int NAME_OFFSET = 48;
+    private static final int NAME_LENGTH = 56;
+
+    // Bits in the record flags.
+    private static final byte CHANGED = 1;
+
+    private static final long NO_NAME = -1;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment file;
+    private final Category[] categories;
+    private final int size;
+    private final long recordsOffset;
+    private final long namesOffset;
+    private final long namesLength;
+    private final AtomicReferenceArray<Product> decoded;
+    // The caller's reference plus one per warehouse still restoring the snapshot; unmapped at zero.
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SnapshotFile(Arena arena, MemorySegment file, Category[] categories, int size, long recordsOffset, long namesOffset, long namesLength) {
+        this.arena = arena;
+        this.file = file;
+        this.categories = categories;
+        this.size = size;
+        this.recordsOffset = recordsOffset;
+        this.namesOffset = namesOffset;
+        this.namesLength = namesLength;
+        this.decoded = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Writes a snapshot of a warehouse to a file. The snapshot is written to a temporary file next to
+     * the target and then moved into place, so readers never see a half-written snapshot.
+     *
+     * @param warehouse The warehouse to write.
+     * @param path      The file to write to, replaced if it exists.
+     * @throws IOException              if the file cannot be written.
+     * @throws IllegalArgumentException if the warehouse holds a product type that cannot be encoded.
+     */
+    public static void write(Warehouse warehouse, Path path) throws IOException {
+        WarehouseSnapshot snapshot = warehouse.snapshot();
+        List<Product> products = snapshot.products();
+        // The records are written in UUID order, so open snapshots can binary search them.
+        int[] order = sortedByUuid(products);
+        Set<UUID> changed = new HashSet<>();
+        for (Product product : warehouse.getChangedProducts()) {
+            changed.add(product.uuid());
+        }
+
+        // The whole category table is written, so ordinals can be used as the category reference.
+        int categoryCount = Category.count();
+        byte[][] categoryNames = new byte[categoryCount][];
+        long categoriesLength = 0;
+        for (int i = 0; i < categoryCount; i++) {
+            categoryNames[i] = Category.byOrdinal(i).getName().getBytes(StandardCharsets.UTF_8);
+            categoriesLength += Integer.BYTES + categoryNames[i].length;
+        }
+        // A missing name stays null here and is written as NO_NAME.
+        byte[][] names = new byte[products.size()][];
+        long namesLength = 0;
+        for (int i = 0; i < names.length; i++) {
+            String name = products.get(i).name();
+            if (name == null) continue;
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            namesLength += names[i].length;
+        }
+        long recordsOffset = align(HEADER_SIZE + categoriesLength);
+        long namesOffset = recordsOffset + (long) products.size() * RECORD_SIZE;
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeFile(temp, snapshot, order, changed, categoryNames, names, categoriesLength, namesLength, recordsOffset, namesOffset);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static void writeFile(Path temp, WarehouseSnapshot snapshot, int[] order, Set<UUID> changed, byte[][] categoryNames, byte[][] names,
+                                  long categoriesLength, long namesLength, long recordsOffset, long namesOffset) throws IOException {
+        List<Product> products = snapshot.products();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(categoryNames.length).putInt(products.size())
+                    .putLong(HEADER_SIZE).putLong(recordsOffset).putLong(namesOffset).putLong(namesLength);
+            for (byte[] categoryName : categoryNames) {
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                buffer.putInt(categoryName.length);
+                putBytes(channel, buffer, categoryName);
+            }
+            putBytes(channel, buffer, new byte[(int) (recordsOffset - HEADER_SIZE - categoriesLength)]);
+
+            long nameOffset = 0;
+            for (int i : order) {
+                Product product = products.get(i);
+                BigDecimal price = snapshot.price(i);
+                BigDecimal weight = ProductCodec.weightOf(product);
+                ensureRemaining(channel, buffer, RECORD_SIZE);
+                buffer.put(ProductCodec.typeOf(product))
+                        .put(ProductCodec.scale(price))
+                        .put(ProductCodec.scale(weight))
+                        .put(changed.contains(product.uuid()) ? CHANGED : 0)
+                        .putInt(product.category().ordinal())
+                        .putLong(product.uuid().getMostSignificantBits())
+                        .putLong(product.uuid().getLeastSignificantBits())
+                        .putLong(ProductCodec.unscaled(price))
+                        .putLong(ProductCodec.unscaled(weight))
+                        .putLong(ProductCodec.detailOf(product))
+                        .putLong(nameOffset)
+                        .putLong(names[i] == null ? NO_NAME : names[i].length);
+                if (names[i] != null) nameOffset += names[i].length;
+            }
+            for (int i : order) {
+                if (names[i] != null) putBytes(channel, buffer, names[i]);
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Opens a snapshot file by memory-mapping it. Only the header and the category table are read;
+     * every offset and count in the header is checked against the file size, so a damaged file is
+     * rejected here instead of failing on some later read.
+     *
+     * @param path The snapshot file.
+     * @return The opened snapshot, to be closed by the caller.
+     * @throws IOException if the file cannot be read, is not a snapshot file or is damaged.
+     */
+    public static SnapshotFile open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            if (file.byteSize() < HEADER_SIZE || file.get(INT, 0) != MAGIC) throw new IOException("Not a warehouse snapshot: " + path);
+            int formatVersion = file.get(INT, 4);
+            if (formatVersion != FORMAT_VERSION) throw new IOException("Unsupported snapshot format version " + formatVersion + ": " + path);
+            int categoryCount = file.get(INT, 8);
+            int size = file.get(INT, 12);
+            long categoriesOffset = file.get(LONG, 16);
+            long recordsOffset = file.get(LONG, 24);
+            long namesOffset = file.get(LONG, 32);
+            long namesLength = file.get(LONG, 40);
+            if (categoryCount < 0 || size < 0 || categoriesOffset != HEADER_SIZE) throw corrupt(path);
+            // Compared without adding up header values, which could overflow.
+            if (recordsOffset < HEADER_SIZE || recordsOffset > file.byteSize()) throw corrupt(path);
+            if ((file.byteSize() - recordsOffset) / RECORD_SIZE < size || namesOffset != recordsOffset + (long) size * RECORD_SIZE) throw corrupt(path);
+            if (namesLength != file.byteSize() - namesOffset) throw new IOException("Truncated warehouse snapshot: " + path);
+
+            // Every category takes at least its length field.
+            if (categoryCount > (recordsOffset - categoriesOffset) / Integer.BYTES) throw corrupt(path);
+            // The whole table is checked before any category is created, since categories are never dropped.
+            String[] categoryNames = new String[categoryCount];
+            long offset = categoriesOffset;
+            for (int i = 0; i < categoryCount; i++) {
+                if (recordsOffset - offset < Integer.BYTES) throw corrupt(path);
+                int length = file.get(INT, offset);
+                if (length < 0 || length > recordsOffset - offset - Integer.BYTES) throw corrupt(path);
+                categoryNames[i] = readString(file, offset + Integer.BYTES, length);
+                if (categoryNames[i].isBlank()) throw corrupt(path);
+                offset += Integer.BYTES + length;
+            }
+            if (recordsOffset != align(offset)) throw corrupt(path);
+            Category[] categories = new Category[categoryCount];
+            for (int i = 0; i < categoryCount; i++) {
+                categories[i] = Category.of(categoryNames[i]);
+            }
+            return new SnapshotFile(arena, file, categories, size, recordsOffset, namesOffset, namesLength);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the number of products in the snapshot.
+     *
+     * @return The product count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the UUID of a product without decoding the rest of it.
+     *
+     * @param index The position of the product, from 0 to size() - 1.
+     * @return The product UUID.
+     */
+    public UUID uuid(int index) {
+        long base = record(index);
+        return new UUID(file.get(LONG, base + ID_HIGH), file.get(LONG, base + ID_LOW));
+    }
+
+    /**
+     * Looks up the position of a product by its UUID, with a binary search over the sorted records.
+     * Nothing is decoded.
+     *
+     * @param id The UUID of the product.
+     * @return The position of the product, or -1 if the snapshot does not hold it.
+     */
+    public int indexOf(UUID id) {
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int from = 0;
+        int to = size - 1;
+        while (from <= to) {
+            int middle = (from + to) >>> 1;
+            long base = recordsOffset + (long) middle * RECORD_SIZE;
+            // Signed comparisons, the order of UUID.compareTo that the records were sorted in.
+            int order = Long.compare(file.get(LONG, base + ID_HIGH), high);
+            if (order == 0) order = Long.compare(file.get(LONG, base + ID_LOW), low);
+            if (order < 0) from = middle + 1;
+            else if (order > 0) to = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a product was marked as 'changed' when the snapshot was written.
+     *
+     * @param index The position of the product, from 0 to size() - 1.
+     * @return true if the product was in the warehouse's changed products.
+     */
+    public boolean isChanged(int index) {
+        return (file.get(ValueLayout.JAVA_BYTE, record(index) + RECORD_FLAGS) & CHANGED) != 0;
+    }
+
+    /**
+     * Retrieves a product, decoding it on first access.
+     *
+     * @param index The position of the product, from 0 to size() - 1.
+     * @return The product.
+     */
+    public Product product(int index) {
+        Product product = decoded.get(index);
+        if (product != null) return product;
+        // Concurrent readers may both decode, but only the first result is ever handed out.
+        Product created = decode(index);
+        return decoded.compareAndSet(index, null, created) ? created : decoded.get(index);
+    }
+
+    /**
+     * Streams every product in the snapshot, decoding them as they are consumed.
+     *
+     * @return A Stream of the products in UUID order.
+     */
+    public Stream<Product> products() {
+        return IntStream.range(0, size).mapToObj(this::product);
+    }
+
+    /**
+     * Restores the snapshot into a warehouse: adds every product and marks the products that
+     * were 'changed' when the snapshot was written.
+     * <p>
+     * Into an empty warehouse the restore is lazy and returns at once. Until the products are added,
+     * the warehouse serves lookups by id and its product count from this file, decoding only the
+     * products that are read. The products are added and indexed in the background, or by the first
+     * call that needs the whole catalog, whichever comes first. The warehouse keeps the file mapped
+     * until then, so the snapshot can be closed right away.
+     * Into a warehouse that already holds products, the snapshot is restored before returning.
+     *
+     * @param warehouse The warehouse to restore into, normally empty.
+     * @throws IllegalArgumentException if the warehouse already holds one of the products.
+     * @throws IllegalStateException    if the snapshot is closed.
+     */
+    public void restoreInto(Warehouse warehouse) {
+        warehouse.restore(this);
+    }
+
+    /**
+     * Unmaps the file, unless a warehouse is still restoring it; it is unmapped once the warehouse
+     * is done then. Products that were already decoded stay usable.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) release();
+    }
+
+    /**
+     * Keeps the file mapped for a warehouse restoring it, until it calls {@link #release()}.
+     *
+     * @return false if the file is no longer mapped.
+     */
+    boolean retain() {
+        int count = references.get();
+        while (count > 0) {
+            if (references.compareAndSet(count, count + 1)) return true;
+            count = references.get();
+        }
+        return false;
+    }
+
+    /**
+     * Gives up a reference taken by {@link #retain()}, or the caller's own one on close.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) arena.close();
+    }
+
+    private Product decode(int index) {
+        long base = record(index);
+        byte type = file.get(ValueLayout.JAVA_BYTE, base + TYPE);
+        BigDecimal price = BigDecimal.valueOf(file.get(LONG, base + PRICE_UNSCALED), file.get(ValueLayout.JAVA_BYTE, base + PRICE_SCALE));
+        BigDecimal weight = BigDecimal.valueOf(file.get(LONG, base + WEIGHT_UNSCALED), file.get(ValueLayout.JAVA_BYTE, base + WEIGHT_SCALE));
+        int category = file.get(INT, base + CATEGORY);
+        long nameOffset = file.get(LONG, base + NAME_OFFSET);
+        long nameLength = file.get(LONG, base + NAME_LENGTH);
+        // The header was checked on open, the records are checked as they are decoded.
+        if (category < 0 || category >= categories.length) throw corruptRecord(index);
+        if (nameLength != NO_NAME && (nameLength < 0 || nameLength > Integer.MAX_VALUE || nameOffset < 0 || nameOffset > namesLength - nameLength)) {
+            throw corruptRecord(index);
+        }
+        String name = nameLength == NO_NAME ? null : readString(file, namesOffset + nameOffset, (int) nameLength);
+        return ProductCodec.create(type, uuid(index), name, categories[category], price, weight, file.get(LONG, base + DETAIL));
+    }
+
+    private static int[] sortedByUuid(List<Product> products) {
+        Integer[] order = new Integer[products.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(i -> products.get(i).uuid()));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static IOException corrupt(Path path) {
+        return new IOException("Corrupt warehouse snapshot header: " + path);
+    }
+
+    private IllegalStateException corruptRecord(int index) {
+        return new IllegalStateException("Corrupt record " + index + " in warehouse snapshot");
+    }
+
+    private long record(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        return recordsOffset + (long) index * RECORD_SIZE;
+    }
+
+    private static String readString(MemorySegment segment, long offset, int length) {
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Records start on an 8-byte boundary.
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        int written = 0;
+        while (written < bytes.length) {
+            if (!buffer.hasRemaining()) flush(channel, buffer);
+            int chunk = Math.min(buffer.remaining(), bytes.length - written);
+            buffer.put(bytes, written, chunk);
+            written += chunk;
+        }
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
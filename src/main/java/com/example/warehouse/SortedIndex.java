@@ -0,0 +1,149 @@
+package com.example.warehouse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A concurrent secondary index that keeps values ordered by a key (e.g. price or expiration date).
+ * Several products can share the same key, so every entry is stored under the pair (key, UUID),
+ * which keeps entries unique and gives range lookups in O(log n + k).
+ * <p>
+ * The index does not watch the values, callers must remove an entry under its old key before the
+ * key changes and add it back afterwards.
+ *
+ * @param <K> The type of the ordering key.
+ * @param <V> The type of the indexed values.
+ */
+class SortedIndex<K extends Comparable<? super K>, V> {
+
+    // The lowest and highest possible UUIDs, used as open ends when searching for a key.
+    private static final UUID LOWEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID HIGHEST_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final ConcurrentSkipListMap<Entry<K>, V> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * The composite key of the index, ordered by key first and then by UUID.
+     */
+    private record Entry<K extends Comparable<? super K>>(K key, UUID id) implements Comparable<Entry<K>> {
+        @Override
+        public int compareTo(Entry<K> other) {
+            int result = key.compareTo(other.key);
+            return result != 0 ? result : id.compareTo(other.id);
+        }
+    }
+
+    /**
+     * Adds a value to the index.
+     *
+     * @param key   The key to order the value by.
+     * @param id    The UUID of the product the value belongs to.
+     * @param value The value to store.
+     */
+    void put(K key, UUID id, V value) {
+        entries.put(new Entry<>(key, id), value);
+    }
+
+    /**
+     * Removes the value stored under the given key and UUID, if any.
+     *
+     * @param key The key the value was added with.
+     * @param id  The UUID of the product the value belongs to.
+     */
+    void remove(K key, UUID id) {
+        entries.remove(new Entry<>(key, id));
+    }
+
+    /**
+     * Retrieves all values whose key lies between the two bounds.
+     *
+     * @param from          The lower bound.
+     * @param fromInclusive true if values at the lower bound should be included.
+     * @param to            The upper bound.
+     * @param toInclusive   true if values at the upper bound should be included.
+     * @return The matching values in ascending key order.
+     */
+    List<V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int order = from.compareTo(to);
+        if (order > 0 || (order == 0 && !(fromInclusive && toInclusive))) return List.of();
+        return copyOf(entries.subMap(lower(from, fromInclusive), fromInclusive, upper(to, toInclusive), toInclusive));
+    }
+
+    /**
+     * Retrieves all values whose key is above (or at) the given bound.
+     *
+     * @param from      The lower bound.
+     * @param inclusive true if values at the bound should be included.
+     * @return The matching values in ascending key order.
+     */
+    List<V> tail(K from, boolean inclusive) {
+        return copyOf(entries.tailMap(lower(from, inclusive), inclusive));
+    }
+
+    /**
+     * Retrieves all values whose key is below (or at) the given bound.
+     *
+     * @param to        The upper bound.
+     * @param inclusive true if values at the bound should be included.
+     * @return The matching values in ascending key order.
+     */
+    List<V> head(K to, boolean inclusive) {
+        return copyOf(entries.headMap(upper(to, inclusive), inclusive));
+    }
+
+    /**
+     * Counts the values whose key is below (or at) the given bound, without copying them.
+     *
+     * @param to        The upper bound.
+     * @param inclusive true if values at the bound should be counted.
+     * @return The number of matching values.
+     */
+    int headCount(K to, boolean inclusive) {
+        // size() on a skip-list view walks the view, so this is O(k) for k matches.
+        return entries.headMap(upper(to, inclusive), inclusive).size();
+    }
+
+    /**
+     * Retrieves the value with the lowest key.
+     *
+     * @return An Optional containing the value, or an empty Optional if the index is empty.
+     */
+    Optional<V> first() {
+        Map.Entry<Entry<K>, V> first = entries.firstEntry();
+        return first == null ? Optional.empty() : Optional.of(first.getValue());
+    }
+
+    /**
+     * Retrieves the value with the highest key.
+     *
+     * @return An Optional containing the value, or an empty Optional if the index is empty.
+     */
+    Optional<V> last() {
+        Map.Entry<Entry<K>, V> last = entries.lastEntry();
+        return last == null ? Optional.empty() : Optional.of(last.getValue());
+    }
+
+    /**
+     * Removes every entry from the index.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    // Builds the composite key that sits just before (or just after) every entry with the given key.
+    private Entry<K> lower(K key, boolean inclusive) {
+        return new Entry<>(key, inclusive ? LOWEST_ID : HIGHEST_ID);
+    }
+
+    private Entry<K> upper(K key, boolean inclusive) {
+        return new Entry<>(key, inclusive ? HIGHEST_ID : LOWEST_ID);
+    }
+
+    private List<V> copyOf(Map<Entry<K>, V> view) {
+        return new ArrayList<>(view.values());
+    }
+}
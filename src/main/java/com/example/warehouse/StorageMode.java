@@ -0,0 +1,24 @@
+package com.example.warehouse;
+
+/**
+ * Where a {@link Warehouse} keeps the fixed-width product records that analytics scan.
+ * The mode is chosen once, when the warehouse is created with {@link Warehouse#getInstance(String, StorageMode)}.
+ */
+public enum StorageMode {
+
+    /**
+     * Records are kept in primitive Java arrays on the heap. This is the default.
+     */
+    ON_HEAP,
+
+    /**
+     * Records are kept in native memory through the Foreign Function &amp; Memory API, outside the
+     * garbage-collected heap, together with the hash table mapping UUIDs to rows. Names, the exact
+     * prices that do not fit in minor units and the product handles stay in on-heap side tables.
+     * This moves the scan columns and the row lookup off the heap; the product objects stay on the
+     * heap either way, as the warehouse indexes and snapshots hand them out, so the catalog's heap
+     * footprint only shrinks by the columns and the row map.
+     * Call {@link Warehouse#close()} to free the native memory.
+     */
+    OFF_HEAP
+}
@@ -1,31 +1,113 @@
 package com.example.warehouse;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a specific warehouse instance, acting as a registry for products.
  * This class implements a Singleton pattern, ensuring only one instance exists per name.
+ * <p>
+ * The warehouse is safe for concurrent use. Reads never block, and writes are serialized
+ * per product through a fixed set of striped locks, so producers touching different
+ * products can proceed in parallel. Writers share a structure lock that is only taken
+ * exclusively for whole-catalog operations such as a batch add, a clear or a checkpoint.
+ * Every write also publishes a new {@link WarehouseSnapshot}, which readers pick up without locking.
+ * The catalog behind the snapshots is kept per stripe as well and published with a compare-and-set,
+ * so writers on different stripes do not wait for each other there either.
  */
 public class Warehouse {
 
+    // Number of lock stripes; a power of two so the stripe can be picked with a mask.
+    private static final int LOCK_STRIPES = 64;
+    // Number of products a streamed ingest hands to addProducts(Collection) at a time.
+    private static final int INGEST_BATCH_SIZE = 10_000;
+    // Relative error of the price quantiles until configured otherwise.
+    private static final double DEFAULT_SKETCH_ACCURACY = 0.01;
 
     private final String name;
     // Map used to implement the Singleton pattern (stores instances by name).
-    private static final Map<String, Warehouse> warehouses = new HashMap<>();
+    private static final Map<String, Warehouse> warehouses = new ConcurrentHashMap<>();
     // Stores all products currently in the warehouse, keyed by UUID for fast lookup.
-    private final Map<UUID, Product> products = new HashMap<>();
-    // Tracks products whose price has been updated since being added/last check.
-    private final Set<Product> changedProducts = new HashSet<>();
+    private final Map<UUID, Product> products = new ConcurrentHashMap<>();
+    // Tracks products whose price has been updated since being added/last check, keyed by UUID
+    // since a product's price (and formerly its hash) changes with every update.
+    private final Map<UUID, Product> changedProducts = new ConcurrentHashMap<>();
+    // Ordered feed of every mutation, read by consumers through their own cursors.
+    private final ChangeLog changeLog = new ChangeLog();
+    // Secondary index ordering products by price, for range and threshold queries.
+    private final SortedIndex<BigDecimal, Product> priceIndex = new SortedIndex<>();
+    // Secondary index ordering perishable products by expiration date.
+    private final SortedIndex<LocalDate, Perishable> expirationIndex = new SortedIndex<>();
+    // Products bucketed per category, kept up to date on every add and remove.
+    private final Map<Category, CategoryBucket> categoryBuckets = new ConcurrentHashMap<>();
+    // Trigram index over lowercased product names, for substring search.
+    private final NGramIndex nameIndex = new NGramIndex();
+    // Where the fixed-width product records are kept, on or off the heap.
+    private final StorageMode storageMode;
+    // The same products kept as fixed-width records, for cache-friendly scans.
+    private final ColumnarStore columns;
+    // Running sum of all product prices in minor units, updated on every mutation without allocating.
+    private final LongAdder totalValueMinor = new LongAdder();
+    // Products whose price has no exact minor-unit form and is left out of totalValueMinor.
+    private final LongAdder inexactPrices = new LongAdder();
+    // Striped write locks, a product always maps to the same stripe via its UUID.
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    // Held shared by writers and exclusively when the whole catalog must be seen (or changed) at once.
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    // Every product with its price as of the last write, in one vector per lock stripe, and the snapshot
+    // handed out for it. Replaced by compare-and-set; earlier versions live on in the snapshots.
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>(Catalog.EMPTY);
+    // The slot of every product in its stripe's vector, each map guarded by that stripe's lock.
+    private final List<Map<UUID, Integer>> catalogSlots = new ArrayList<>(LOCK_STRIPES);
+    // Bumped on every mutation, including price updates, identifies the current column contents.
+    private final AtomicLong modCount = new AtomicLong();
+    // The last columnar view handed out, reused until modCount moves on.
+    private volatile ColumnarView columnarView;
+    // Where mutations are recorded for crash recovery, null until a log is attached.
+    private volatile WriteAheadLog log;
+    // A snapshot restore whose products are not added yet, null otherwise.
+    private volatile PendingRestore pendingRestore;
+    // Where operation metrics go, NONE (which does not even read the clock) until a sink is registered.
+    private volatile MetricsSink metrics = MetricsSink.NONE;
+    // The gauge suppliers, kept so they can be unregistered from a sink that is replaced.
+    private final LongSupplier productsGauge = products::size;
+    private final LongSupplier changedProductsGauge = changedProducts::size;
+    // Price quantiles kept current on every mutation, replaced only when its accuracy is changed.
+    private volatile PriceSketch priceSketch = new PriceSketch(DEFAULT_SKETCH_ACCURACY);
 
     /**
      * Private constructor to enforce the Multiton pattern.
      *
-     * @param name The unique name of the warehouse.
+     * @param name        The unique name of the warehouse.
+     * @param storageMode Where the product records are kept.
      */
-    private Warehouse(String name) {
+    private Warehouse(String name, StorageMode storageMode) {
         this.name = name;
+        this.storageMode = storageMode;
+        this.columns = ColumnarStore.create(storageMode);
+        this.columnarView = columns.view(0);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+            catalogSlots.add(new HashMap<>());
+        }
     }
 
     public static Warehouse getInstance() {
@@ -33,15 +115,41 @@ public class Warehouse {
     }
 
     /**
-     * Retrieves the instance of the Warehouse with the specified name.
-     * If an instance with that name does not yet exist, a new one is created and cached.
+     * Retrieves the instance of the Warehouse with the specified name, whatever its storage mode.
+     * If an instance with that name does not yet exist, a new ON_HEAP one is created and cached.
+     * Safe to call from several threads, all callers receive the same instance.
      *
      * @param name The unique name of the warehouse to get or create.
      * @return The existing or newly created Warehouse instance.
      */
     public static Warehouse getInstance(String name) {
 
-        return warehouses.computeIfAbsent(name, Warehouse::new);
+        return warehouses.computeIfAbsent(name, key -> new Warehouse(key, StorageMode.ON_HEAP));
+    }
+
+    /**
+     * Retrieves the instance of the Warehouse with the specified name, creating it with the given
+     * storage mode if it does not exist yet. The storage mode cannot change after creation.
+     *
+     * @param name        The unique name of the warehouse to get or create.
+     * @param storageMode Where the new warehouse should keep its product records.
+     * @return The existing or newly created Warehouse instance.
+     * @throws IllegalStateException if the warehouse already exists with another storage mode.
+     */
+    public static Warehouse getInstance(String name, StorageMode storageMode) {
+        if (storageMode == null) throw new IllegalArgumentException("Storage mode cannot be null.");
+        Warehouse warehouse = warehouses.computeIfAbsent(name, key -> new Warehouse(key, storageMode));
+        if (warehouse.storageMode != storageMode) throw new IllegalStateException("Warehouse " + name + " already exists with storage mode " + warehouse.storageMode);
+        return warehouse;
+    }
+
+    /**
+     * Retrieves where this warehouse keeps its product records.
+     *
+     * @return The storage mode chosen when the warehouse was created.
+     */
+    public StorageMode storageMode() {
+        return storageMode;
     }
 
     /**
@@ -52,32 +160,252 @@ public class Warehouse {
      */
     public void addProduct(Product product) {
         if (product == null) throw new IllegalArgumentException("Product cannot be null.");
-        if (products.containsKey(product.uuid())) throw new IllegalArgumentException("Product with that id already exists, use updateProduct for updates.");
-        products.put(product.uuid(), product);
+        awaitRestore();
+        MetricsSink metrics = this.metrics;
+        long start = metrics.start();
+        Lock shared = structureLock.readLock();
+        shared.lock();
+        ReentrantLock lock = lockFor(product.uuid());
+        lock.lock();
+        try {
+            // The stripe makes the duplicate check and the insert a single step for this id.
+            if (products.containsKey(product.uuid())) throw new IllegalArgumentException("Product with that id already exists, use updateProduct for updates.");
+            // Encoded and logged before anything is stored, so an unsupported type or a failed write changes nothing.
+            WriteAheadLog log = this.log;
+            if (log != null) log.commit(log.append(WriteAheadLog.added(product)));
+            products.put(product.uuid(), product);
+            product.attach(this);
+            index(product);
+            columns.add(product);
+            addToTotal(product, 1);
+            catalogAdd(List.of(product));
+            modCount.incrementAndGet();
+            changeLog.append(ChangeType.ADDED, product.uuid(), product.price());
+        } finally {
+            lock.unlock();
+            shared.unlock();
+            // Also when a step failed, so the changes recorded before it still reach the subscribers.
+            changeLog.publishPending();
+        }
+        metrics.increment("warehouse.products.added", 1);
+        metrics.stop("warehouse.addProduct", start);
+    }
 
+    /**
+     * Adds many products in one operation, e.g. when loading a catalog.
+     * All products are validated in a single pass before anything is stored, so either the whole
+     * batch is added or none of it is. The product map is pre-sized for the batch, and the indexes
+     * and running aggregates are updated once per batch instead of once per product.
+     *
+     * @param batch The products to add.
+     * @throws IllegalArgumentException if the batch or any product in it is null, or if a UUID
+     *                                  appears twice in the batch or is already in the warehouse.
+     */
+    public void addProducts(Collection<? extends Product> batch) {
+        if (batch == null) throw new IllegalArgumentException("Products cannot be null.");
+        awaitRestore();
+        addAll(batch, true);
+    }
+
+    // The batch add behind addProducts; a snapshot restore passes logged = false to keep its products out of the log.
+    private void addAll(Collection<? extends Product> batch, boolean logged) {
+        // Duplicates inside the batch are found here, before any lock is taken.
+        Map<UUID, Product> staged = LinkedHashMap.newLinkedHashMap(batch.size());
+        long batchValueMinor = 0;
+        int batchInexact = 0;
+        for (Product product : batch) {
+            if (product == null) throw new IllegalArgumentException("Product cannot be null.");
+            if (staged.putIfAbsent(product.uuid(), product) != null) throw new IllegalArgumentException("Product with that id already exists, use updateProduct for updates.");
+            Product.Price price = product.priceState();
+            if (price.exact()) batchValueMinor += price.minor();
+            else batchInexact++;
+        }
+        if (staged.isEmpty()) return;
+        MetricsSink metrics = this.metrics;
+        long start = metrics.start();
+
+        // The batch is applied exclusively, which keeps it all-or-nothing for readers and writers.
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            for (UUID id : staged.keySet()) {
+                if (products.containsKey(id)) throw new IllegalArgumentException("Product with that id already exists, use updateProduct for updates.");
+            }
+            WriteAheadLog log = logged ? this.log : null;
+            if (log != null) {
+                List<byte[]> records = new ArrayList<>(staged.size());
+                for (Product product : staged.values()) {
+                    records.add(WriteAheadLog.added(product));
+                }
+                log.commit(log.appendAll(records));
+            }
+            // putAll lets the ConcurrentHashMap resize once for the whole batch.
+            products.putAll(staged);
+            staged.values().forEach(product -> product.attach(this));
+            indexAll(staged.values());
+            columns.addAll(staged.values());
+            totalValueMinor.add(batchValueMinor);
+            inexactPrices.add(batchInexact);
+            catalogAdd(staged.values());
+            modCount.incrementAndGet();
+            changeLog.appendAdded(staged.values());
+        } finally {
+            exclusive.unlock();
+            changeLog.publishPending();
+        }
+        metrics.increment("warehouse.products.added", staged.size());
+        metrics.stop("warehouse.addProducts", start);
+    }
+
+    /**
+     * Adds products from a stream, e.g. while reading a large catalog file.
+     * The stream is consumed in batches that are each added with {@link #addProducts(Collection)},
+     * so memory stays bounded. Every batch is all-or-nothing, but batches that were already
+     * added stay in the warehouse if a later batch is rejected.
+     *
+     * @param stream The products to add.
+     * @throws IllegalArgumentException if the stream or any product in it is null, or if a UUID is duplicated.
+     */
+    public void addProducts(Stream<? extends Product> stream) {
+        if (stream == null) throw new IllegalArgumentException("Products cannot be null.");
+        List<Product> batch = new ArrayList<>(INGEST_BATCH_SIZE);
+        Iterator<? extends Product> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == INGEST_BATCH_SIZE) {
+                addProducts(batch);
+                batch.clear();
+            }
+        }
+        addProducts(batch);
     }
 
     /**
      * Retrieves an unmodifiable copy of all products currently in the warehouse.
      * The returned list is immutable, preventing external modification of the warehouse contents.
+     * The list comes from the current snapshot, so it is never copied.
      *
      * @return An unmodifiable List of all products.
      */
     public List<Product> getProducts() {
 
-        return List.copyOf(products.values());
+        return snapshot().products();
+    }
+
+    /**
+     * Retrieves an immutable snapshot of the products in the warehouse.
+     * Writers keep the catalog in persistent vectors, one per lock stripe, and publish every version
+     * of it, so taking a snapshot is a single read that never blocks and never copies, and holding one
+     * only keeps the parts of the catalog alive that have changed since. A snapshot reflects a sequence
+     * of whole writes, and it freezes the product prices as they were, see {@link WarehouseSnapshot#prices()}.
+     * The products are grouped by stripe, not listed in the order they were added.
+     *
+     * @return The current snapshot of the warehouse.
+     */
+    public WarehouseSnapshot snapshot() {
+        awaitRestore();
+        return catalog.get().snapshot();
+    }
+
+    /**
+     * Retrieves a column-oriented view of the products, for scan-heavy analytics.
+     * The same view is handed out until the warehouse is modified (prices included). A new view
+     * shares the records with the store instead of copying them, on or off the heap depending on the
+     * storage mode, and no product objects are visited; the store copies what it writes next instead.
+     *
+     * @return The current columnar view of the warehouse.
+     */
+    public ColumnarView columns() {
+        awaitRestore();
+        ColumnarView current = columnarView;
+        long latest = modCount.get();
+        if (current.version() == latest) return current;
+        // The count is read before copying, so a write racing with the copy only causes a later rebuild.
+        ColumnarView fresh = columns.view(latest);
+        columnarView = fresh;
+        return fresh;
     }
 
     /**
      * Retrieves a product by its unique ID.
      * Uses Optional to clearly indicate whether a product was found or not, avoiding null checks.
+     * While a snapshot restore is pending, the product is looked up in the snapshot file instead,
+     * see {@link SnapshotFile#restoreInto(Warehouse)}; it is the same instance the restore adds later.
      *
      * @param productID The unique identifier of the product.
      * @return An Optional containing the product if found, or an empty Optional otherwise.
      */
     public Optional<Product> getProductById(UUID productID) {
+        MetricsSink metrics = this.metrics;
+        long start = metrics.start();
+        PendingRestore pending = pendingRestore;
+        Optional<Product> product = Optional.ofNullable(pending == null ? products.get(productID) : pending.find(productID));
+        metrics.stop("warehouse.getProductById", start);
+        return product;
+    }
+
+    /**
+     * Finds all products whose price is within the inclusive range [minPrice, maxPrice],
+     * using the price index instead of scanning the whole catalog.
+     *
+     * @param minPrice The lower bound (inclusive).
+     * @param maxPrice The upper bound (inclusive).
+     * @return A List of matching products, ordered by ascending price.
+     */
+    public List<Product> findProductsInPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        awaitRestore();
+        return priceIndex.range(minPrice, true, maxPrice, true);
+    }
 
-        return Optional.ofNullable(products.get(productID));
+    /**
+     * Finds all products whose price is strictly greater than the given price,
+     * using the price index instead of scanning the whole catalog.
+     *
+     * @param price The threshold (exclusive).
+     * @return A List of matching products, ordered by ascending price.
+     */
+    public List<Product> findProductsAbovePrice(BigDecimal price) {
+        awaitRestore();
+        return priceIndex.tail(price, false);
+    }
+
+    /**
+     * Finds all products whose price is strictly less than the given price,
+     * using the price index instead of scanning the whole catalog.
+     *
+     * @param price The threshold (exclusive).
+     * @return A List of matching products, ordered by ascending price.
+     */
+    public List<Product> findProductsBelowPrice(BigDecimal price) {
+        awaitRestore();
+        return priceIndex.head(price, false);
+    }
+
+    /**
+     * Performs a case-insensitive substring search on product names.
+     * Terms of three characters or more are answered from the trigram index, so only products
+     * sharing every trigram of the term are checked. Shorter terms fall back to a scan.
+     *
+     * @param searchTerm The substring to search for.
+     * @return A List of products whose name contains the term.
+     * @throws NullPointerException if the search term is null.
+     */
+    public List<Product> searchProductsByName(String searchTerm) {
+        awaitRestore();
+        String term = NGramIndex.normalize(Objects.requireNonNull(searchTerm, "Search term cannot be null."));
+        List<Product> result = new ArrayList<>();
+        if (term.length() < NGramIndex.GRAM_LENGTH) {
+            for (Product product : products.values()) {
+                if (NGramIndex.normalize(product.name()).contains(term)) result.add(product);
+            }
+            return result;
+        }
+        for (UUID id : nameIndex.candidates(term)) {
+            Product product = products.get(id);
+            // Sharing all trigrams does not guarantee a match, so the name is still verified.
+            if (product != null && NGramIndex.normalize(product.name()).contains(term)) result.add(product);
+        }
+        return result;
     }
 
     /**
@@ -88,35 +416,204 @@ public class Warehouse {
      * @throws NoSuchElementException if no product with the given ID is found.
      */
     public void updateProductPrice(UUID productID, BigDecimal newPrice) {
-        Product product = products.get(productID);
-        if (product == null) throw new NoSuchElementException("Product not found with id: " + productID);
+        if (!updatePrice(productID, null, newPrice)) throw new NoSuchElementException("Product not found with id: " + productID);
+    }
+
+    /**
+     * Updates the price of a product on behalf of {@link Product#price(BigDecimal)}.
+     *
+     * @param product  The product whose price is set.
+     * @param newPrice The new price to set.
+     * @return false if the product is no longer stored in this warehouse.
+     */
+    boolean updatePrice(Product product, BigDecimal newPrice) {
+        return updatePrice(product.uuid(), product, newPrice);
+    }
 
-        product.price(newPrice);
-        changedProducts.add(product);
+    // Returns false, without changing anything, when no product or another instance than the expected one has the id.
+    private boolean updatePrice(UUID productID, Product expected, BigDecimal newPrice) {
+        awaitRestore();
+        MetricsSink metrics = this.metrics;
+        long start = metrics.start();
+        Lock shared = structureLock.readLock();
+        shared.lock();
+        ReentrantLock lock = lockFor(productID);
+        lock.lock();
+        try {
+            Product product = products.get(productID);
+            if (product == null || (expected != null && product != expected)) return false;
+            // Validated and logged before the product is touched, so a rejected price or a failed write changes nothing.
+            if (newPrice.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price cannot be negative.");
+            WriteAheadLog log = this.log;
+            if (log != null) log.commit(log.append(WriteAheadLog.priceUpdated(productID, newPrice)));
+
+            // The index entry is keyed by the old price, so it has to be moved along with the update.
+            Product.Price oldPrice = product.priceState();
+            addToTotal(product, -1);
+            product.applyPrice(newPrice);
+            Product.Price price = product.priceState();
+            addToTotal(product, 1);
+            priceIndex.remove(oldPrice.amount(), productID);
+            priceIndex.put(newPrice, productID, product);
+            PriceSketch sketch = priceSketch;
+            sketch.remove(oldPrice.minor());
+            sketch.add(price.minor());
+            columns.updatePrice(productID, price);
+            modCount.incrementAndGet();
+            changedProducts.put(productID, product);
+            catalogUpdate(product);
+            changeLog.append(ChangeType.PRICE_UPDATED, productID, newPrice);
+        } finally {
+            lock.unlock();
+            shared.unlock();
+            changeLog.publishPending();
+        }
+        metrics.increment("warehouse.prices.updated", 1);
+        metrics.stop("warehouse.updateProductPrice", start);
+        return true;
     }
 
     /**
      * Retrieves an unmodifiable list of products whose prices have been updated
      * since they were added or since the last clear of the changed set.
+     * Consumers that poll for changes should read the deltas from {@link #changeLog()} instead.
      *
      * @return An unmodifiable List of products that have been modified.
      */
     public List<Product> getChangedProducts() {
-
+        awaitRestore();
         //Takes a copy of the data
-        return List.copyOf(changedProducts);
+        return List.copyOf(changedProducts.values());
+    }
+
+    /**
+     * Retrieves the ordered feed of every add, price update, remove and clear of this warehouse.
+     *
+     * @return The change log of the warehouse.
+     */
+    public ChangeLog changeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Retrieves a publisher of the add, price update, remove and clear events of this warehouse,
+     * so consumers can keep their own caches up to date instead of polling.
+     * Every subscriber has a bounded buffer and is served by request (backpressure). Writers never wait
+     * for a subscriber; one that falls too far behind receives onError and has to subscribe again, see
+     * {@link ChangeLog}.
+     *
+     * @return The event publisher.
+     */
+    public Flow.Publisher<ProductChange> events() {
+        return changeLog.publisher();
+    }
+
+    /**
+     * Registers the sink that receives the metrics of this warehouse and of the analyzers reading it,
+     * and registers the catalog size and changed-set size gauges with it. The gauges are unregistered
+     * from the sink this one replaces. Without a sink the operations are not timed at all.
+     *
+     * @param sink The sink, or null to stop recording metrics.
+     */
+    public synchronized void metricsSink(MetricsSink sink) {
+        MetricsSink target = sink == null ? MetricsSink.NONE : sink;
+        MetricsSink previous = this.metrics;
+        if (previous == target) return;
+        target.registerGauge("warehouse.products", productsGauge);
+        target.registerGauge("warehouse.changedProducts", changedProductsGauge);
+        this.metrics = target;
+        previous.unregisterGauge("warehouse.products", productsGauge);
+        previous.unregisterGauge("warehouse.changedProducts", changedProductsGauge);
+    }
+
+    /**
+     * Retrieves the streaming quantile sketch of the product prices, kept current on every add,
+     * price update, remove and clear. Use it for approximate quantiles in constant time; the sketch
+     * is live, so take {@link PriceSketch#mergedWith(PriceSketch)} of it to combine warehouses.
+     *
+     * @return The price sketch.
+     */
+    public PriceSketch priceSketch() {
+        awaitRestore();
+        return priceSketch;
+    }
+
+    /**
+     * Changes the relative error bound of the price sketch. The sketch is rebuilt from the current
+     * catalog while writers are briefly paused.
+     *
+     * @param relativeAccuracy The relative error of the quantiles, from 0.0001 to 0.5 (the default is 0.01).
+     * @throws IllegalArgumentException if the accuracy is out of range.
+     */
+    public void priceSketchAccuracy(double relativeAccuracy) {
+        awaitRestore();
+        PriceSketch rebuilt = new PriceSketch(relativeAccuracy);
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            for (Product product : products.values()) {
+                rebuilt.add(product.priceMinor());
+            }
+            priceSketch = rebuilt;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the sink that receives the metrics of this warehouse.
+     *
+     * @return The registered sink, or {@link MetricsSink#NONE}.
+     */
+    public MetricsSink metricsSink() {
+        return metrics;
+    }
+
+    /**
+     * Marks an existing product as 'changed' without touching its price, e.g. when the
+     * change-tracking state is restored from a snapshot file.
+     *
+     * @param productID The ID of the product to mark.
+     * @throws NoSuchElementException if no product with the given ID is found.
+     */
+    void markChanged(UUID productID) {
+        Lock shared = structureLock.readLock();
+        shared.lock();
+        ReentrantLock lock = lockFor(productID);
+        lock.lock();
+        try {
+            Product product = products.get(productID);
+            if (product == null) throw new NoSuchElementException("Product not found with id: " + productID);
+            changedProducts.put(productID, product);
+        } finally {
+            lock.unlock();
+            shared.unlock();
+        }
     }
 
     /**
      * Retrieves a list of all products in the warehouse that implement the Perishable interface
      * AND are currently expired.
      *
-     * @return A List of expired Perishable products.
+     * @return A List of expired Perishable products, ordered by expiration date.
      */
     public List<Perishable> expiredProducts() {
-        // Stream filters for Perishable interface, casts, and then filters for the expired status.
-        return products.values().stream().filter(product -> product instanceof Perishable)
-                .map(product -> (Perishable) product).filter(Perishable::isExpired).collect(Collectors.toList());
+        awaitRestore();
+        // Everything in the expiration index that expires before today has expired.
+        return expirationIndex.head(LocalDate.now(), false);
+    }
+
+    /**
+     * Retrieves all perishable products that expire within the inclusive date range [from, to],
+     * using the expiration index instead of scanning the whole catalog.
+     *
+     * @param from The first expiration date to include.
+     * @param to   The last expiration date to include.
+     * @return A List of matching Perishable products, ordered by expiration date.
+     */
+    public List<Perishable> findProductsExpiringBetween(LocalDate from, LocalDate to) {
+        awaitRestore();
+        return expirationIndex.range(from, true, to, true);
     }
 
     /**
@@ -125,6 +622,7 @@ public class Warehouse {
      * @return A List of Shippable products.
      */
     public List<Shippable> shippableProducts() {
+        awaitRestore();
         // Stream filters for Shippable interface and safely casts them.
         return products.values().stream().filter(product -> product instanceof Shippable)
                 .map(product -> (Shippable) product).collect(Collectors.toList());
@@ -136,42 +634,529 @@ public class Warehouse {
      * @param productID The ID of the product to remove.
      */
     public void remove(UUID productID) {
-        Product product = products.remove(productID);
-        if (product != null) {
-            changedProducts.remove(product);
+        awaitRestore();
+        MetricsSink metrics = this.metrics;
+        long start = metrics.start();
+        boolean removed = false;
+        Lock shared = structureLock.readLock();
+        shared.lock();
+        ReentrantLock lock = lockFor(productID);
+        lock.lock();
+        try {
+            Product product = products.get(productID);
+            if (product != null) {
+                WriteAheadLog log = this.log;
+                if (log != null) log.commit(log.append(WriteAheadLog.removed(productID)));
+                products.remove(productID);
+                product.detach(this);
+                removed = true;
+                changedProducts.remove(productID);
+                unindex(product);
+                columns.remove(productID);
+                addToTotal(product, -1);
+                catalogRemove(productID);
+                modCount.incrementAndGet();
+                changeLog.append(ChangeType.REMOVED, productID, null);
+            }
+        } finally {
+            lock.unlock();
+            shared.unlock();
+            changeLog.publishPending();
         }
+        if (removed) metrics.increment("warehouse.products.removed", 1);
+        metrics.stop("warehouse.remove", start);
     }
 
     /**
      * Clears all products from the warehouse and resets the changed products tracker.
+     * Holds the structure lock exclusively so no write is half-applied while clearing.
      */
     public void clearProducts() {
-        products.clear();
-        changedProducts.clear();
+        try {
+            awaitRestore();
+        } catch (IllegalStateException failed) {
+            // A failed restore added nothing, so clearing ends it as well.
+            pendingRestore = null;
+        }
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            WriteAheadLog log = this.log;
+            if (log != null) log.commit(log.append(WriteAheadLog.cleared()));
+            products.values().forEach(product -> product.detach(this));
+            products.clear();
+            changedProducts.clear();
+            priceIndex.clear();
+            priceSketch.clear();
+            expirationIndex.clear();
+            categoryBuckets.clear();
+            nameIndex.clear();
+            columns.clear();
+            totalValueMinor.reset();
+            inexactPrices.reset();
+            catalogClear();
+            modCount.incrementAndGet();
+            changeLog.append(ChangeType.CLEARED, null, null);
+        } finally {
+            exclusive.unlock();
+            changeLog.publishPending();
+        }
+    }
+
+    /**
+     * Rebuilds the warehouse after a restart: restores the latest snapshot file, if there is one,
+     * replays the write-ahead log on top of it, and then attaches the log so that every further
+     * mutation is recorded in it.
+     * <p>
+     * Into an empty warehouse the snapshot is restored lazily, see {@link SnapshotFile#restoreInto(Warehouse)}:
+     * with an empty log, the warehouse is back as soon as the log is attached, and the products are added
+     * in the background. A replayed mutation needs the whole catalog, so it restores the snapshot first.
+     *
+     * @param snapshotFile The snapshot written by {@link #checkpoint(Path)}, may not exist yet.
+     * @param log          The opened write-ahead log.
+     * @throws IOException           if the snapshot or the log cannot be read.
+     * @throws IllegalStateException if the warehouse already has a log attached, see {@link #closeLog()}.
+     */
+    public void recover(Path snapshotFile, WriteAheadLog log) throws IOException {
+        if (log == null) throw new IllegalArgumentException("Write-ahead log cannot be null.");
+        if (this.log != null) throw new IllegalStateException("Warehouse " + name + " already has a write-ahead log attached.");
+        PendingRestore pending = null;
+        if (Files.exists(snapshotFile)) {
+            try (SnapshotFile snapshot = SnapshotFile.open(snapshotFile)) {
+                // Not started before the log is attached, so the restored products are never logged.
+                pending = beginRestore(snapshot, false);
+            }
+        }
+        // Replayed before attaching, so the replayed mutations are not logged a second time.
+        log.replayInto(this);
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            if (this.log != null) throw new IllegalStateException("Warehouse " + name + " already has a write-ahead log attached.");
+            this.log = log;
+        } finally {
+            exclusive.unlock();
+        }
+        if (pending != null) pending.start();
+    }
+
+    /**
+     * Restores a snapshot on behalf of {@link SnapshotFile#restoreInto(Warehouse)}.
+     *
+     * @param snapshot The opened snapshot.
+     * @throws IllegalArgumentException if the warehouse already holds one of the products.
+     * @throws IllegalStateException    if the snapshot is closed.
+     */
+    void restore(SnapshotFile snapshot) {
+        PendingRestore pending = beginRestore(snapshot, true);
+        if (pending != null) pending.start();
+    }
+
+    /**
+     * Registers a restore that adds the snapshot's products later, if the warehouse is empty. A warehouse
+     * that already holds products takes them right away instead, since each one is checked against the
+     * catalog anyway.
+     *
+     * @param snapshot The opened snapshot, kept mapped by the warehouse until its products are added.
+     * @param logged   Whether the products are written to the write-ahead log attached by then.
+     * @return The pending restore, not started yet, or null if the products were added right away.
+     */
+    private PendingRestore beginRestore(SnapshotFile snapshot, boolean logged) {
+        awaitRestore();
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            if (products.isEmpty() && pendingRestore == null) {
+                if (!snapshot.retain()) throw new IllegalStateException("Snapshot is closed.");
+                PendingRestore pending = new PendingRestore(snapshot, logged);
+                pendingRestore = pending;
+                return pending;
+            }
+        } finally {
+            exclusive.unlock();
+        }
+        addProducts(snapshot.products());
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.isChanged(i)) markChanged(snapshot.uuid(i));
+        }
+        return null;
+    }
+
+    /**
+     * Waits until a pending snapshot restore has added its products, running it on this thread if the
+     * background restore has not started yet. Every operation on the catalog calls this first, apart from
+     * the lookups a pending restore answers from the snapshot file.
+     *
+     * @throws IllegalStateException if the restore failed, e.g. on a damaged record.
+     */
+    private void awaitRestore() {
+        PendingRestore pending = pendingRestore;
+        if (pending != null) pending.await();
+    }
+
+    /**
+     * Detaches the write-ahead log and closes it, e.g. on shutdown, or to recover with a fresh log after
+     * the attached one failed. Mutations are no longer recorded afterwards. Does nothing without a log.
+     *
+     * @throws IOException if the final sync or closing the file fails; the log is detached either way.
+     */
+    public void closeLog() throws IOException {
+        WriteAheadLog detached;
+        // Taken exclusively, so no mutation is between writing its record and being applied.
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            detached = this.log;
+            this.log = null;
+        } finally {
+            exclusive.unlock();
+        }
+        if (detached != null) detached.close();
+    }
+
+    /**
+     * Closes the warehouse, e.g. on shutdown: removes it from the registry, so the next getInstance
+     * for its name creates a new one, frees the native memory of an OFF_HEAP warehouse and closes the
+     * write-ahead log, see {@link #closeLog()}. The instance must not be used afterwards.
+     *
+     * @throws IOException if the final sync or closing the log fails; everything else is released either way.
+     */
+    public void close() throws IOException {
+        warehouses.remove(name, this);
+        try {
+            awaitRestore();
+        } catch (IllegalStateException failed) {
+            // A failed restore has already unmapped its snapshot, nothing is left to close.
+            pendingRestore = null;
+        }
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            columns.close();
+        } finally {
+            exclusive.unlock();
+        }
+        closeLog();
+    }
+
+    /**
+     * Writes a snapshot file of the warehouse and empties the attached write-ahead log, whose
+     * mutations are all part of the snapshot. Holds the structure lock exclusively while doing so.
+     *
+     * @param snapshotFile Where to write the snapshot.
+     * @throws IOException if the snapshot cannot be written or the log cannot be truncated.
+     */
+    public void checkpoint(Path snapshotFile) throws IOException {
+        awaitRestore();
+        Lock exclusive = structureLock.writeLock();
+        exclusive.lock();
+        try {
+            SnapshotFile.write(this, snapshotFile);
+            WriteAheadLog log = this.log;
+            if (log != null) log.truncate();
+        } finally {
+            exclusive.unlock();
+        }
     }
 
     /**
      * Checks if the warehouse currently contains any products.
+     * While a snapshot restore is pending, the snapshot's product count answers instead.
      *
      * @return true if the products map is empty, false otherwise.
      */
     public boolean isEmpty() {
-        return products.isEmpty();
+        return productCount() == 0;
     }
 
     /**
      * Groups all products in the warehouse by their category.
+     * The groups are read from the category buckets, so nothing is re-hashed on each call, and each
+     * bucket's list is only copied again after that category has changed.
      *
-     * @return A Map where the Key is the Category and the Value is a List of Products belonging to that category.
+     * @return An unmodifiable Map where the Key is the Category and the Value is an unmodifiable List of Products belonging to that category.
      */
     public Map<Category, List<Product>> getProductsGroupedByCategories() {
+        awaitRestore();
+        Map<Category, List<Product>> grouped = new HashMap<>();
+        categoryBuckets.forEach((category, bucket) -> grouped.put(category, bucket.list()));
+        return Collections.unmodifiableMap(grouped);
+    }
+
+    /**
+     * Retrieves the categories that currently hold at least one product.
+     *
+     * @return An unmodifiable, live view of the categories in the warehouse.
+     */
+    public Set<Category> getCategories() {
+        awaitRestore();
+        return Collections.unmodifiableSet(categoryBuckets.keySet());
+    }
+
+    /**
+     * Retrieves the products of a single category without copying them.
+     *
+     * @param category The category to look up.
+     * @return An unmodifiable, live view of the products in that category (empty if there are none).
+     */
+    public Collection<Product> getProductsInCategory(Category category) {
+        awaitRestore();
+        CategoryBucket bucket = categoryBuckets.get(category);
+        return bucket == null ? List.of() : Collections.unmodifiableCollection(bucket.values());
+    }
+
+
+    /**
+     * Retrieves the number of products in the warehouse.
+     * While a snapshot restore is pending, it is the number of products in the snapshot.
+     *
+     * @return The product count.
+     */
+    public int productCount() {
+        PendingRestore pending = pendingRestore;
+        return pending == null || pending.isDone() ? products.size() : pending.size();
+    }
+
+    /**
+     * Retrieves the sum of all product prices. The sum is kept up to date on every mutation,
+     * so this is a constant-time read, unless some price has no exact minor-unit form (see
+     * {@link Product#isPriceMinorExact()}); then the BigDecimal prices are summed.
+     *
+     * @return The total value of the inventory.
+     */
+    public BigDecimal totalValue() {
+        awaitRestore();
+        if (inexactPrices.sum() == 0) return Money.toBigDecimal(totalValueMinor.sum());
+        return products.values().stream().map(Product::price).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * Retrieves the sum of all product prices in minor units, see {@link Money}.
+     *
+     * @return The total value of the inventory in minor units.
+     * @throws ArithmeticException if a price has no exact minor-unit form, use {@link #totalValue()} then.
+     */
+    public long totalValueMinor() {
+        awaitRestore();
+        if (inexactPrices.sum() != 0) throw new ArithmeticException("The total value has no exact minor-unit form.");
+        return totalValueMinor.sum();
+    }
+
+    /**
+     * Counts the perishable products that have expired, read from the expiration index.
+     * Only the expired entries are visited, never the rest of the catalog.
+     *
+     * @return The number of expired products.
+     */
+    public int expiredCount() {
+        awaitRestore();
+        return expirationIndex.headCount(LocalDate.now(), false);
+    }
+
+    /**
+     * Retrieves the most expensive product, read from the end of the price index in O(log n).
+     *
+     * @return An Optional containing the product, or an empty Optional if the warehouse is empty.
+     */
+    public Optional<Product> getMostExpensiveProduct() {
+        awaitRestore();
+        return priceIndex.last();
+    }
+
+    /**
+     * Retrieves the cheapest product, read from the start of the price index in O(log n).
+     *
+     * @return An Optional containing the product, or an empty Optional if the warehouse is empty.
+     */
+    public Optional<Product> getCheapestProduct() {
+        awaitRestore();
+        return priceIndex.first();
+    }
+
+    /**
+     * Adds a product to every secondary index. Must be called while holding the product's stripe.
+     *
+     * @param product The product that was just stored.
+     */
+    private void index(Product product) {
+        priceIndex.put(product.price(), product.uuid(), product);
+        priceSketch.add(product.priceMinor());
+        if (product instanceof Perishable perishable && perishable.expirationDate() != null) {
+            expirationIndex.put(perishable.expirationDate(), product.uuid(), perishable);
+        }
+        categoryBuckets.compute(product.category(), (category, bucket) -> {
+            if (bucket == null) bucket = new CategoryBucket();
+            bucket.put(product.uuid(), product);
+            return bucket;
+        });
+        nameIndex.add(product.uuid(), product.name());
+    }
+
+    /**
+     * Adds a batch of products to every secondary index. Products are grouped per category and
+     * names are indexed together, so shared structures are touched once per batch.
+     * Must be called while holding the structure lock exclusively.
+     *
+     * @param batch The products that were just stored.
+     */
+    private void indexAll(Collection<Product> batch) {
+        Map<Category, Map<UUID, Product>> byCategory = new HashMap<>();
+        PriceSketch sketch = priceSketch;
+        for (Product product : batch) {
+            priceIndex.put(product.price(), product.uuid(), product);
+            sketch.add(product.priceMinor());
+            if (product instanceof Perishable perishable && perishable.expirationDate() != null) {
+                expirationIndex.put(perishable.expirationDate(), product.uuid(), perishable);
+            }
+            byCategory.computeIfAbsent(product.category(), category -> new HashMap<>()).put(product.uuid(), product);
+        }
+        byCategory.forEach((category, group) -> categoryBuckets.compute(category, (c, bucket) -> {
+            if (bucket == null) bucket = new CategoryBucket();
+            bucket.putAll(group);
+            return bucket;
+        }));
+        nameIndex.addAll(batch);
+    }
+
+    /**
+     * Removes a product from every secondary index. Must be called while holding the product's stripe.
+     *
+     * @param product The product that was just removed.
+     */
+    private void unindex(Product product) {
+        UUID productID = product.uuid();
+        priceIndex.remove(product.price(), productID);
+        priceSketch.remove(product.priceMinor());
+        if (product instanceof Perishable perishable && perishable.expirationDate() != null) {
+            expirationIndex.remove(perishable.expirationDate(), productID);
+        }
+        // Drops the bucket once its last product is gone, so only non-empty categories are listed.
+        categoryBuckets.computeIfPresent(product.category(), (category, bucket) -> {
+            bucket.remove(productID);
+            return bucket.isEmpty() ? null : bucket;
+        });
+        nameIndex.remove(productID, product.name());
+    }
+
+    /**
+     * Adds a price to the running total, or takes it out with a sign of -1. Exact prices go into the
+     * minor-unit sum, the others are only counted and make totalValue() sum the BigDecimal prices.
+     *
+     * @param product The product whose current price is added or taken out.
+     * @param sign    1 to add, -1 to take out.
+     */
+    private void addToTotal(Product product, int sign) {
+        Product.Price price = product.priceState();
+        if (price.exact()) totalValueMinor.add(sign * price.minor());
+        else inexactPrices.add(sign);
+    }
+
+    /**
+     * Appends products to their stripes' catalog vectors and publishes the new snapshot.
+     * The caller holds the lock of every stripe the products map to, or the structure lock exclusively.
+     *
+     * @param added The products that were just stored.
+     */
+    private void catalogAdd(Collection<Product> added) {
+        PersistentVector<PersistentVector<CatalogEntry>> stripes = catalog.get().stripes();
+        // Stripes other writers may publish in the meantime are not touched, only these are carried over.
+        Map<Integer, PersistentVector<CatalogEntry>> changed = new HashMap<>();
+        for (Product product : added) {
+            int stripe = stripeOf(product.uuid());
+            PersistentVector<CatalogEntry> entries = changed.getOrDefault(stripe, stripes.get(stripe));
+            catalogSlots.get(stripe).put(product.uuid(), entries.size());
+            changed.put(stripe, entries.append(new CatalogEntry(product, product.price())));
+        }
+        publish(current -> {
+            PersistentVector<PersistentVector<CatalogEntry>> next = current;
+            for (Map.Entry<Integer, PersistentVector<CatalogEntry>> entry : changed.entrySet()) {
+                next = next.set(entry.getKey(), entry.getValue());
+            }
+            return next;
+        });
+    }
 
-        // Uses the functional groupingBy collector to efficiently create the map.
-        return products.values().stream()
-                .collect(Collectors.groupingBy(Product::category));
+    /**
+     * Records a product's new price in its stripe's catalog vector and publishes the new snapshot.
+     * The caller holds the product's stripe lock.
+     *
+     * @param product The product whose price was just updated.
+     */
+    private void catalogUpdate(Product product) {
+        int stripe = stripeOf(product.uuid());
+        int slot = catalogSlots.get(stripe).get(product.uuid());
+        PersistentVector<CatalogEntry> entries = catalog.get().stripes().get(stripe)
+                .set(slot, new CatalogEntry(product, product.price()));
+        publish(current -> current.set(stripe, entries));
+    }
 
+    /**
+     * Removes a product from its stripe's catalog vector by moving the stripe's last entry into its
+     * slot, and publishes the new snapshot. The caller holds the product's stripe lock.
+     *
+     * @param productID The ID of the product that was just removed.
+     */
+    private void catalogRemove(UUID productID) {
+        int stripe = stripeOf(productID);
+        Map<UUID, Integer> slots = catalogSlots.get(stripe);
+        int slot = slots.remove(productID);
+        PersistentVector<CatalogEntry> entries = catalog.get().stripes().get(stripe);
+        int last = entries.size() - 1;
+        if (slot != last) {
+            CatalogEntry moved = entries.get(last);
+            entries = entries.set(slot, moved);
+            slots.put(moved.product().uuid(), slot);
+        }
+        PersistentVector<CatalogEntry> next = entries.removeLast();
+        publish(current -> current.set(stripe, next));
     }
 
+    /**
+     * Empties the catalog and publishes the empty snapshot. The caller holds the structure lock exclusively.
+     */
+    private void catalogClear() {
+        catalogSlots.forEach(Map::clear);
+        publish(current -> Catalog.EMPTY.stripes());
+    }
+
+    /**
+     * Makes a new catalog version the current one and hands it to readers as a snapshot.
+     * Writers on other stripes publish concurrently, so the change is applied to whatever version is
+     * current and retried if another writer got there first. Each stripe is only changed under its own
+     * lock, so a retry only redoes the O(1) set of the stripe vectors, never the path copy inside a stripe.
+     *
+     * @param change Derives the new stripe vectors from the current ones.
+     */
+    private void publish(UnaryOperator<PersistentVector<PersistentVector<CatalogEntry>>> change) {
+        Catalog current;
+        Catalog next;
+        do {
+            current = catalog.get();
+            next = current.next(change.apply(current.stripes()));
+        } while (!catalog.compareAndSet(current, next));
+    }
+
+    /**
+     * Picks the lock stripe guarding writes to the given product.
+     *
+     * @param productID The ID of the product about to be written.
+     * @return The lock for that product's stripe.
+     */
+    private ReentrantLock lockFor(UUID productID) {
+        return locks[stripeOf(productID)];
+    }
+
+    /**
+     * Picks the stripe of a product, which selects both its write lock and its part of the catalog.
+     *
+     * @param productID The ID of the product.
+     * @return The stripe number, from 0 to LOCK_STRIPES - 1.
+     */
+    private static int stripeOf(UUID productID) {
+        int h = productID.hashCode();
+        // Spread the high bits so that similar UUIDs still end up on different stripes.
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -192,4 +1177,148 @@ public class Warehouse {
                 ", products=" + products +
                 '}';
     }
+
+    // One slot of the catalog vector: a product and the price it had when the slot was written.
+    private record CatalogEntry(Product product, BigDecimal price) {
+    }
+
+    // One published version of the catalog: a vector of entries per lock stripe and the snapshot over all of them.
+    private record Catalog(PersistentVector<PersistentVector<CatalogEntry>> stripes, WarehouseSnapshot snapshot) {
+
+        static final Catalog EMPTY = empty();
+
+        private static Catalog empty() {
+            PersistentVector<PersistentVector<CatalogEntry>> stripes = PersistentVector.empty();
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                stripes = stripes.append(PersistentVector.empty());
+            }
+            return new Catalog(stripes, new WarehouseSnapshot(0, List.of(), List.of()));
+        }
+
+        // The version after this one, holding the given stripes.
+        Catalog next(PersistentVector<PersistentVector<CatalogEntry>> nextStripes) {
+            return new Catalog(nextStripes, new WarehouseSnapshot(snapshot.version() + 1,
+                    PersistentVector.concat(nextStripes, CatalogEntry::product), PersistentVector.concat(nextStripes, CatalogEntry::price)));
+        }
+    }
+
+    // A snapshot restore into an empty warehouse whose products are not added yet; until then, lookups by id
+    // are answered from the mapped snapshot file. The task adds them in the background or on the first thread
+    // that needs the whole catalog. A failed restore stays pending, so every later call reports the failure.
+    private final class PendingRestore {
+
+        private final SnapshotFile snapshot;
+        private final boolean logged;
+        private final FutureTask<Void> task = new FutureTask<>(this::materialize, null);
+
+        PendingRestore(SnapshotFile snapshot, boolean logged) {
+            this.snapshot = snapshot;
+            this.logged = logged;
+        }
+
+        void start() {
+            if (!task.isDone()) Thread.ofVirtual().name("warehouse-restore-" + name).start(task);
+        }
+
+        boolean isDone() {
+            return task.isDone();
+        }
+
+        int size() {
+            return snapshot.size();
+        }
+
+        void await() {
+            // Does nothing if the task has already run or another thread is running it.
+            task.run();
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        task.get();
+                        return;
+                    } catch (InterruptedException e) {
+                        // The catalog cannot be used before the restore is done, so the wait goes on.
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Restoring the snapshot into warehouse " + name + " failed.", e.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        // Looks the product up in the snapshot, or in the warehouse once the snapshot is no longer mapped.
+        Product find(UUID productID) {
+            if (!snapshot.retain()) return products.get(productID);
+            try {
+                int index = snapshot.indexOf(productID);
+                if (index < 0) return null;
+                Product product = snapshot.product(index);
+                // A price set on it goes through the warehouse, which finishes the restore first.
+                product.attach(Warehouse.this);
+                return product;
+            } finally {
+                snapshot.release();
+            }
+        }
+
+        private void materialize() {
+            try {
+                addAll(snapshot.products().toList(), logged);
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.isChanged(i)) markChanged(snapshot.uuid(i));
+                }
+                pendingRestore = null;
+            } finally {
+                snapshot.release();
+            }
+        }
+    }
+
+    // The products of one category, with a list copy that is reused until the category changes.
+    private static final class CategoryBucket {
+
+        private final Map<UUID, Product> products = new ConcurrentHashMap<>();
+        // Bumped after every change, so a cached list can tell whether it is still current.
+        private final AtomicLong modifications = new AtomicLong();
+        private volatile CachedList cached;
+
+        void put(UUID id, Product product) {
+            products.put(id, product);
+            modifications.incrementAndGet();
+        }
+
+        void putAll(Map<UUID, Product> group) {
+            products.putAll(group);
+            modifications.incrementAndGet();
+        }
+
+        void remove(UUID id) {
+            products.remove(id);
+            modifications.incrementAndGet();
+        }
+
+        boolean isEmpty() {
+            return products.isEmpty();
+        }
+
+        Collection<Product> values() {
+            return products.values();
+        }
+
+        List<Product> list() {
+            // The count is read before copying, so a change made during the copy makes the next call copy again.
+            long stamp = modifications.get();
+            CachedList current = cached;
+            if (current != null && current.stamp() == stamp) return current.products();
+            List<Product> copy = List.copyOf(products.values());
+            cached = new CachedList(stamp, copy);
+            return copy;
+        }
+
+        private record CachedList(long stamp, List<Product> products) {
+        }
+    }
 }
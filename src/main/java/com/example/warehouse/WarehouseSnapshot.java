@@ -0,0 +1,48 @@
+package com.example.warehouse;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * An immutable, versioned view of the products in a {@link Warehouse}.
+ * A snapshot never changes after it has been created, so it can be held and shared between
+ * threads freely while writers keep mutating the warehouse. A newer version means the warehouse
+ * has changed since.
+ * <p>
+ * The products are the live instances, so their {@link Product#price()} follows later updates; the
+ * prices they had when the snapshot was taken are frozen in {@link #prices()}, at the same index.
+ *
+ * @param version  The number of changes the warehouse had seen when the snapshot was taken.
+ * @param products The products in the warehouse at that version, as an unmodifiable list.
+ * @param prices   The price of each product at that version, as an unmodifiable list.
+ */
+public record WarehouseSnapshot(long version, List<Product> products, List<BigDecimal> prices) {
+
+    /**
+     * Retrieves the number of products in the snapshot.
+     *
+     * @return The product count.
+     */
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Checks if the snapshot contains any products.
+     *
+     * @return true if the snapshot is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return products.isEmpty();
+    }
+
+    /**
+     * Retrieves the price a product had when the snapshot was taken.
+     *
+     * @param index The position of the product in {@link #products()}.
+     * @return The frozen price.
+     */
+    public BigDecimal price(int index) {
+        return prices.get(index);
+    }
+}
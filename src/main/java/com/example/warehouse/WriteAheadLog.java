@@ -0,0 +1,436 @@
+package com.example.warehouse;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of warehouse mutations, used to recover the mutations made since the last
+ * snapshot after a crash. Once attached with {@link Warehouse#recover(Path, WriteAheadLog)}, every
+ * add, price update, remove and clear appends one binary record:
+ * <pre>
+ *  int length, int CRC32 of the payload, payload (byte record type, then the type's fields)
+ * </pre>
+ * A mutation's record is appended before the mutation is applied, so a write that fails leaves the
+ * warehouse unchanged. Records are buffered in memory and written and forced to disk in groups, so
+ * concurrent writers share fsyncs. The {@link Durability} decides whether a mutation waits for its
+ * record to be on disk. Once a write has failed the log refuses every further record; detach it with
+ * {@link Warehouse#closeLog()}.
+ * <p>
+ * A record that was only partly written when the process died fails its length or checksum check,
+ * and the log is cut off before it when it is opened again.
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x57484C31; // "WHL1"
+    // Version 2 writes strings as a presence flag plus length-prefixed UTF-8 instead of modified UTF-8.
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long BATCH_INTERVAL_MILLIS = 10;
+
+    // Record types.
+    private static final byte ADDED = 1;
+    private static final byte PRICE_UPDATED = 2;
+    private static final byte REMOVED = 3;
+    private static final byte CLEARED = 4;
+
+    private final Path path;
+    private final Durability durability;
+    private final FileChannel channel;
+    // Guards the pending records and the appended count.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Serializes writing and forcing, writers waiting on it are covered by the sync in progress.
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    // Positions count every byte ever appended, so they keep increasing across truncations.
+    private long appended;
+    private volatile long durable;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    // Forces the batched records in the background, only for BATCHED durability.
+    private final ScheduledExecutorService flusher;
+
+    private WriteAheadLog(Path path, Durability durability, FileChannel channel) {
+        this.path = path;
+        this.durability = durability;
+        this.channel = channel;
+        if (durability == Durability.BATCHED) {
+            flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("wal-" + path.getFileName()).daemon().factory());
+            flusher.scheduleWithFixedDelay(this::syncQuietly, BATCH_INTERVAL_MILLIS, BATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens a log file for appending, creating it if it does not exist. A torn record at the end of
+     * the file, left by a crash, is cut off.
+     *
+     * @param path       The log file.
+     * @param durability When mutations are forced to disk.
+     * @return The opened log, to be closed by the caller.
+     * @throws IOException              if the file cannot be opened or is not a log file.
+     * @throws IllegalArgumentException if the durability is null.
+     */
+    public static WriteAheadLog open(Path path, Durability durability) throws IOException {
+        if (durability == null) throw new IllegalArgumentException("Durability cannot be null.");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+                end = HEADER_SIZE;
+            } else {
+                end = scan(channel, path, null);
+                if (end < channel.size()) channel.truncate(end);
+            }
+            channel.position(end);
+            return new WriteAheadLog(path, durability, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves when this log forces mutations to disk.
+     *
+     * @return The durability of the log.
+     */
+    public Durability durability() {
+        return durability;
+    }
+
+    /**
+     * Forces every record appended so far to disk.
+     *
+     * @throws IOException if writing or forcing fails.
+     */
+    public void sync() throws IOException {
+        long target;
+        appendLock.lock();
+        try {
+            target = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        syncTo(target);
+    }
+
+    /**
+     * Forces the remaining records to disk and closes the file.
+     *
+     * @throws IOException if the last sync or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (flusher != null) flusher.shutdown();
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Creates the record of an added product.
+     *
+     * @param product The product that is added.
+     * @return The framed record.
+     * @throws IllegalArgumentException if the product type cannot be encoded.
+     */
+    static byte[] added(Product product) {
+        return record(ADDED, out -> ProductCodec.write(product, out));
+    }
+
+    /**
+     * Creates the record of a price update.
+     *
+     * @param id       The UUID of the product.
+     * @param newPrice The new price.
+     * @return The framed record.
+     */
+    static byte[] priceUpdated(UUID id, BigDecimal newPrice) {
+        return record(PRICE_UPDATED, out -> {
+            writeUuid(id, out);
+            ProductCodec.writeDecimal(newPrice, out);
+        });
+    }
+
+    /**
+     * Creates the record of a removed product.
+     *
+     * @param id The UUID of the product.
+     * @return The framed record.
+     */
+    static byte[] removed(UUID id) {
+        return record(REMOVED, out -> writeUuid(id, out));
+    }
+
+    /**
+     * Creates the record of a cleared warehouse.
+     *
+     * @return The framed record.
+     */
+    static byte[] cleared() {
+        return record(CLEARED, out -> {
+        });
+    }
+
+    /**
+     * Buffers a record, before its mutation is applied. The caller holds the warehouse lock that orders
+     * the mutation, so records of the same product are appended in the order the mutations are applied.
+     *
+     * @param record The framed record.
+     * @return The position to pass to {@link #commit(long)}.
+     * @throws IllegalStateException if the log is closed.
+     * @throws UncheckedIOException  if an earlier write to the log failed.
+     */
+    long append(byte[] record) {
+        appendLock.lock();
+        try {
+            checkWritable();
+            pending.writeBytes(record);
+            appended += record.length;
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Buffers several records at once, e.g. for a bulk add.
+     *
+     * @param records The framed records.
+     * @return The position to pass to {@link #commit(long)}.
+     * @throws IllegalStateException if the log is closed.
+     * @throws UncheckedIOException  if an earlier write to the log failed.
+     */
+    long appendAll(List<byte[]> records) {
+        appendLock.lock();
+        try {
+            checkWritable();
+            for (byte[] record : records) {
+                pending.writeBytes(record);
+                appended += record.length;
+            }
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Makes an appended record count, still under the warehouse lock and before the mutation is applied.
+     * With SYNC durability this waits until the record is on disk; writers on other lock stripes
+     * keep appending meanwhile and are covered by the same sync. With BATCHED durability it returns
+     * immediately.
+     *
+     * @param position The position returned when the record was appended.
+     * @throws UncheckedIOException if the log could not be written. The caller must not apply the mutation.
+     */
+    void commit(long position) {
+        if (durability == Durability.SYNC) {
+            try {
+                syncTo(position);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        IOException failed = failure;
+        if (failed != null) throw new UncheckedIOException("Write-ahead log failed: " + path, failed);
+    }
+
+    /**
+     * Drops every record, once a snapshot holding all of their mutations has been written.
+     * The caller holds the warehouse exclusively, so no mutation is in flight.
+     *
+     * @throws IOException if the file cannot be truncated.
+     */
+    void truncate() throws IOException {
+        syncLock.lock();
+        try {
+            appendLock.lock();
+            try {
+                pending.reset();
+                durable = appended;
+            } finally {
+                appendLock.unlock();
+            }
+            channel.truncate(HEADER_SIZE);
+            channel.position(HEADER_SIZE);
+            channel.force(true);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Applies every record in the file to a warehouse, in the order they were appended.
+     * Replay tolerates records whose effect is already in the warehouse, e.g. when the snapshot
+     * was written but the log was not yet truncated: products that already exist are not added
+     * again, and price updates of products that no longer exist are skipped.
+     *
+     * @param warehouse The warehouse to apply the records to, which must not have a log attached.
+     * @throws IOException if the file cannot be read.
+     */
+    void replayInto(Warehouse warehouse) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(reader, path, payload -> apply(payload, warehouse));
+        }
+    }
+
+    // Must hold appendLock.
+    private void checkWritable() {
+        if (closed) throw new IllegalStateException("Write-ahead log is closed: " + path);
+        IOException failed = failure;
+        if (failed != null) throw new UncheckedIOException("Write-ahead log failed: " + path, failed);
+    }
+
+    // Writes and forces the pending records unless a concurrent sync already covered the target.
+    private void syncTo(long target) throws IOException {
+        if (durable >= target) return;
+        syncLock.lock();
+        try {
+            if (durable >= target) return;
+            byte[] bytes;
+            long end;
+            appendLock.lock();
+            try {
+                bytes = pending.toByteArray();
+                pending.reset();
+                end = appended;
+            } finally {
+                appendLock.unlock();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            durable = end;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            // Reported to the next writer by commit().
+            failure = e;
+        }
+    }
+
+    private void apply(byte[] payload, Warehouse warehouse) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case ADDED -> {
+                Product product = ProductCodec.read(in);
+                if (warehouse.getProductById(product.uuid()).isEmpty()) warehouse.addProduct(product);
+            }
+            case PRICE_UPDATED -> {
+                UUID id = readUuid(in);
+                BigDecimal newPrice = ProductCodec.readDecimal(in);
+                if (warehouse.getProductById(id).isPresent()) warehouse.updateProductPrice(id, newPrice);
+            }
+            case REMOVED -> warehouse.remove(readUuid(in));
+            case CLEARED -> warehouse.clearProducts();
+            default -> throw new IOException("Unknown record type " + type + " in write-ahead log: " + path);
+        }
+    }
+
+    // Reads the records that pass their length and checksum checks and returns where the valid part ends.
+    private static long scan(FileChannel channel, Path path, RecordHandler handler) throws IOException {
+        long size = channel.size();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        if (size < HEADER_SIZE || in.readInt() != MAGIC) throw new IOException("Not a write-ahead log: " + path);
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) throw new IOException("Unsupported write-ahead log format version " + formatVersion + ": " + path);
+
+        long offset = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > size) break;
+            byte[] payload = new byte[length];
+            try {
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) break;
+            if (handler != null) handler.accept(payload);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static byte[] record(byte type, RecordWriter body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            // Room for the length and checksum, filled in once the payload is known.
+            out.writeLong(0);
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+        ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER_SIZE).putInt((int) crc.getValue());
+        return record;
+    }
+
+    private static void writeUuid(UUID id, DataOutput out) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RecordHandler {
+        void accept(byte[] payload) throws IOException;
+    }
+}
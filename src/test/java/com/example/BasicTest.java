@@ -3,17 +3,30 @@ package com.example;
 
 import com.example.warehouse.*;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 /**
  * A collection of tests for the business domain classes.
@@ -111,6 +124,7 @@ class BasicTest {
         void setUp() {
             warehouse = Warehouse.getInstance("TestWarehouse");
             warehouse.clearProducts(); // Ensures test isolation
+            warehouse.metricsSink(null);
         }
 
         @Test
@@ -209,6 +223,24 @@ class BasicTest {
                         .hasMessage("Product with that id already exists, use updateProduct for updates.");
             }
 
+            @Test
+            @DisplayName("❌ should reject a whole bulk batch when one UUID is duplicated")
+            void should_rejectWholeBatch_when_bulkAddContainsDuplicate() {
+                // Arrange
+                UUID sharedId = UUID.randomUUID();
+                Product milk = new FoodProduct(sharedId, "Milk", Category.of("Dairy"), BigDecimal.ONE, LocalDate.now(), BigDecimal.ONE);
+                Product apple = new FoodProduct(UUID.randomUUID(), "Apple", Category.of("Fruit"), BigDecimal.ONE, LocalDate.now(), BigDecimal.ONE);
+                Product cheese = new FoodProduct(sharedId, "Cheese", Category.of("Dairy"), BigDecimal.TEN, LocalDate.now(), BigDecimal.TEN);
+
+                // Act & Assert
+                assertThatThrownBy(() -> warehouse.addProducts(List.of(milk, apple, cheese)))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessage("Product with that id already exists, use updateProduct for updates.");
+                assertThat(warehouse.isEmpty())
+                        .as("A rejected batch should not leave any of its products behind.")
+                        .isTrue();
+            }
+
             @Test
             @DisplayName("✅ should update the price of an existing product")
             void should_updateExistingProductPrice() {
@@ -229,6 +261,255 @@ class BasicTest {
                         );
             }
 
+            @Test
+            @DisplayName("✅ should track a product once and forget it on remove after repeated price updates")
+            void should_trackChangedProductOnce_when_priceUpdatedRepeatedly() {
+                // Arrange
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(7), new BigDecimal("1.0"));
+                warehouse.addProduct(milk);
+
+                // Act
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("16.00"));
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("17.00"));
+
+                // Assert
+                assertThat(warehouse.getChangedProducts())
+                        .as("A product updated twice should appear once in the changed products.")
+                        .containsExactly(milk);
+                warehouse.remove(milk.uuid());
+                assertThat(warehouse.getChangedProducts())
+                        .as("Removing the product should also drop it from the changed products.")
+                        .isEmpty();
+            }
+
+            @Test
+            @DisplayName("✅ should deliver changes in order, again until they are acknowledged")
+            void should_deliverChangesSincePosition_when_drainingChangeLog() {
+                // Arrange
+                ChangeLog.Cursor cursor = warehouse.changeLog().cursor("sync");
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(7), new BigDecimal("1.0"));
+
+                // Act
+                warehouse.addProduct(milk);
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("17.00"));
+                warehouse.remove(milk.uuid());
+                List<ProductChange> firstRead = cursor.drain(10);
+                List<ProductChange> secondRead = cursor.drain(10);
+                cursor.acknowledge(firstRead.getLast().sequence());
+
+                // Assert
+                assertThat(firstRead)
+                        .as("Every mutation should be delivered once, in the order it happened.")
+                        .extracting(ProductChange::type, ProductChange::productId, ProductChange::price)
+                        .containsExactly(
+                                tuple(ChangeType.ADDED, milk.uuid(), new BigDecimal("15.50")),
+                                tuple(ChangeType.PRICE_UPDATED, milk.uuid(), new BigDecimal("17.00")),
+                                tuple(ChangeType.REMOVED, milk.uuid(), null));
+                assertThat(secondRead)
+                        .as("Changes that were not acknowledged should be delivered again.")
+                        .isEqualTo(firstRead);
+                assertThat(cursor.drain(10))
+                        .as("Nothing should be left after acknowledging the last change.")
+                        .isEmpty();
+                cursor.close();
+            }
+
+            @Test
+            @DisplayName("📡 should publish add, price update and remove events to subscribers")
+            void should_publishEvents_when_productsChange() throws InterruptedException {
+                // Arrange
+                List<ProductChange> received = new CopyOnWriteArrayList<>();
+                CountDownLatch allReceived = new CountDownLatch(3);
+                warehouse.events().subscribe(new Flow.Subscriber<>() {
+                    private Flow.Subscription subscription;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        this.subscription = subscription;
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onNext(ProductChange change) {
+                        received.add(change);
+                        allReceived.countDown();
+                        // Stops listening once the events of this test are in, the warehouse outlives the test.
+                        if (allReceived.getCount() == 0) subscription.cancel();
+                        else subscription.request(1);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(7), new BigDecimal("1.0"));
+
+                // Act
+                warehouse.addProduct(milk);
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("17.00"));
+                warehouse.remove(milk.uuid());
+
+                // Assert
+                assertThat(allReceived.await(5, TimeUnit.SECONDS))
+                        .as("Every event should reach the subscriber.")
+                        .isTrue();
+                assertThat(received)
+                        .as("Events should arrive in the order the mutations happened.")
+                        .extracting(ProductChange::type)
+                        .containsExactly(ChangeType.ADDED, ChangeType.PRICE_UPDATED, ChangeType.REMOVED);
+            }
+
+            @Test
+            @DisplayName("📡 should drop a subscriber that stops requesting instead of blocking writers")
+            void should_dropStalledSubscriber_when_itFallsTooFarBehind() throws InterruptedException {
+                // Arrange
+                CountDownLatch dropped = new CountDownLatch(1);
+                List<Throwable> errors = new CopyOnWriteArrayList<>();
+                warehouse.events().subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        // Never requests anything.
+                    }
+
+                    @Override
+                    public void onNext(ProductChange change) {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        errors.add(throwable);
+                        dropped.countDown();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+                List<Product> batch = new ArrayList<>();
+                for (int i = 0; i <= ChangeLog.SUBSCRIBER_BUFFER_SIZE; i++) {
+                    batch.add(new ElectronicsProduct(UUID.randomUUID(), "Cable", Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE));
+                }
+
+                // Act
+                warehouse.addProducts(batch);
+                warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Plug", Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE));
+
+                // Assert
+                assertThat(dropped.await(5, TimeUnit.SECONDS))
+                        .as("The stalled subscriber should be told that it was dropped.")
+                        .isTrue();
+                assertThat(errors).singleElement().isInstanceOf(IllegalStateException.class);
+                assertThat(warehouse.productCount())
+                        .as("Writers should not wait for the stalled subscriber.")
+                        .isEqualTo(ChangeLog.SUBSCRIBER_BUFFER_SIZE + 2);
+            }
+
+            @Test
+            @DisplayName("📡 should call subscribers on the delivery executor instead of the common pool")
+            void should_deliverOnDeliveryExecutor_when_oneIsSet() throws InterruptedException {
+                // Arrange
+                List<String> deliveryThreads = new CopyOnWriteArrayList<>();
+                List<ProductChange> received = new CopyOnWriteArrayList<>();
+                CountDownLatch defaultDelivery = new CountDownLatch(1);
+                warehouse.changeLog().deliveryExecutor(task -> {
+                    deliveryThreads.add(Thread.currentThread().getName());
+                    task.run();
+                });
+                Flow.Subscriber<ProductChange> subscriber = new Flow.Subscriber<>() {
+                    private Flow.Subscription subscription;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        this.subscription = subscription;
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    @Override
+                    public void onNext(ProductChange change) {
+                        received.add(change);
+                        if (change.type() == ChangeType.REMOVED) {
+                            // The default executor runs each delivery on a virtual thread of its own.
+                            if (Thread.currentThread().isVirtual()) defaultDelivery.countDown();
+                            subscription.cancel();
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                };
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(7), new BigDecimal("1.0"));
+
+                try {
+                    // Act
+                    warehouse.events().subscribe(subscriber);
+                    warehouse.addProduct(milk);
+                    List<ProductChange> receivedInline = List.copyOf(received);
+                    warehouse.changeLog().deliveryExecutor(null);
+                    warehouse.remove(milk.uuid());
+
+                    // Assert
+                    assertThat(receivedInline)
+                            .as("The injected executor runs delivery inline, so the change has arrived when addProduct returns.")
+                            .extracting(ProductChange::type)
+                            .containsExactly(ChangeType.ADDED);
+                    assertThat(deliveryThreads)
+                            .as("Every delivery should go through the injected executor.")
+                            .isNotEmpty()
+                            .containsOnly(Thread.currentThread().getName());
+                    assertThat(defaultDelivery.await(5, TimeUnit.SECONDS))
+                            .as("Without an injected executor delivery runs on a virtual thread, not the common pool.")
+                            .isTrue();
+                } finally {
+                    warehouse.changeLog().deliveryExecutor(null);
+                }
+            }
+
+            @Test
+            @DisplayName("✅ should close a cursor that falls more than the retention limit behind")
+            void should_closeCursor_when_itFallsBeyondRetentionLimit() {
+                // Arrange
+                ChangeLog changeLog = warehouse.changeLog();
+                changeLog.retentionLimit(3);
+                ChangeLog.Cursor slow = changeLog.cursor("slow");
+                ChangeLog.Cursor fast = changeLog.cursor("fast");
+
+                try {
+                    // Act
+                    for (int i = 0; i < 5; i++) {
+                        Product cable = new ElectronicsProduct(UUID.randomUUID(), "Cable" + i, Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE);
+                        warehouse.addProduct(cable);
+                        fast.acknowledge(fast.drain(10).getLast().sequence());
+                    }
+                    ChangeLog.Cursor reopened = changeLog.cursor("slow");
+
+                    // Assert
+                    assertThatThrownBy(() -> slow.drain(10))
+                            .as("A cursor that lagged beyond the limit should be closed instead of retaining every change.")
+                            .isInstanceOf(IllegalStateException.class)
+                            .hasMessageContaining("behind");
+                    assertThat(reopened)
+                            .as("The consumer gets a new cursor at the end of the log.")
+                            .isNotSameAs(slow);
+                    assertThat(reopened.drain(10)).isEmpty();
+                    assertThat(fast.position())
+                            .as("A cursor that keeps up is not affected.")
+                            .isEqualTo(changeLog.lastSequence());
+                } finally {
+                    changeLog.cursor("slow").close();
+                    fast.close();
+                    changeLog.retentionLimit(ChangeLog.DEFAULT_RETENTION_LIMIT);
+                }
+            }
+
             @Test
             @DisplayName("✅ should group products correctly by their category")
             void should_groupProductsByCategories() {
@@ -266,6 +547,49 @@ class BasicTest {
                         .isInstanceOf(UnsupportedOperationException.class);
             }
 
+            @Test
+            @DisplayName("📸 should reuse a snapshot until the catalog changes and keep old snapshots intact")
+            void should_reuseSnapshot_until_catalogChanges() {
+                // Arrange
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), BigDecimal.ONE, LocalDate.now(), BigDecimal.ONE);
+                Product cheese = new FoodProduct(UUID.randomUUID(), "Cheese", Category.of("Dairy"), BigDecimal.TEN, LocalDate.now(), BigDecimal.ONE);
+                warehouse.addProduct(milk);
+
+                // Act
+                WarehouseSnapshot first = warehouse.snapshot();
+                WarehouseSnapshot again = warehouse.snapshot();
+                warehouse.addProduct(cheese);
+                WarehouseSnapshot afterAdd = warehouse.snapshot();
+
+                // Assert
+                assertThat(again)
+                        .as("Without writes in between, the same snapshot should be handed out.")
+                        .isSameAs(first);
+                assertThat(first.products()).containsExactly(milk);
+                assertThat(afterAdd.version()).isGreaterThan(first.version());
+                assertThat(afterAdd.products()).containsExactlyInAnyOrder(milk, cheese);
+            }
+
+            @Test
+            @DisplayName("📸 should keep the prices a snapshot was taken at")
+            void should_freezePrices_when_priceUpdatedAfterSnapshot() {
+                // Arrange
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now(), BigDecimal.ONE);
+                warehouse.addProduct(milk);
+                WarehouseSnapshot before = warehouse.snapshot();
+
+                // Act
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("17.00"));
+                WarehouseSnapshot after = warehouse.snapshot();
+
+                // Assert
+                assertThat(before.price(0))
+                        .as("A snapshot should keep the price the product had when it was taken.")
+                        .isEqualByComparingTo("15.50");
+                assertThat(after.price(0)).isEqualByComparingTo("17.00");
+                assertThat(after.version()).isGreaterThan(before.version());
+            }
+
             @Test
             @DisplayName("✅ should correctly remove an existing product")
             void should_removeExistingProduct() {
@@ -294,6 +618,423 @@ class BasicTest {
                         .hasMessage("Product cannot be null.");
             }
 
+            @Test
+            @DisplayName("🧵 should keep every product when several threads add concurrently")
+            void should_keepAllProducts_when_addingConcurrently() throws InterruptedException {
+                // Arrange
+                int threads = 8;
+                int perThread = 500;
+                List<Thread> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    workers.add(Thread.ofPlatform().unstarted(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Cable", Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE));
+                        }
+                    }));
+                }
+
+                // Act
+                workers.forEach(Thread::start);
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+
+                // Assert
+                assertThat(warehouse.getProducts())
+                        .as("No product should be lost when adds race on different stripes.")
+                        .hasSize(threads * perThread);
+            }
+
+            @Test
+            @DisplayName("🧵 should publish every write when several threads add, update and remove concurrently")
+            void should_publishEveryWrite_when_writingConcurrently() throws InterruptedException {
+                // Arrange
+                int threads = 8;
+                int perThread = 300;
+                long startVersion = warehouse.snapshot().version();
+                List<Thread> workers = new ArrayList<>();
+                List<Product> kept = new CopyOnWriteArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    workers.add(Thread.ofPlatform().unstarted(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            Product keep = new ElectronicsProduct(UUID.randomUUID(), "Cable", Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE);
+                            Product drop = new ElectronicsProduct(UUID.randomUUID(), "Plug", Category.of("Electronics"), BigDecimal.ONE, 12, BigDecimal.ONE);
+                            warehouse.addProduct(keep);
+                            warehouse.addProduct(drop);
+                            warehouse.updateProductPrice(keep.uuid(), BigDecimal.valueOf(i, 2));
+                            warehouse.remove(drop.uuid());
+                            kept.add(keep);
+                        }
+                    }));
+                }
+                // Every write publishes a snapshot, so the versions a reader sees can only go up.
+                List<Long> versions = new ArrayList<>();
+                Thread reader = Thread.ofPlatform().unstarted(() -> {
+                    while (kept.size() < threads * perThread) {
+                        versions.add(warehouse.snapshot().version());
+                    }
+                });
+
+                // Act
+                reader.start();
+                workers.forEach(Thread::start);
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                reader.join();
+
+                // Assert
+                WarehouseSnapshot snapshot = warehouse.snapshot();
+                assertThat(snapshot.products())
+                        .as("The snapshot should hold exactly the products that were kept.")
+                        .containsExactlyInAnyOrderElementsOf(kept);
+                for (int i = 0; i < snapshot.size(); i++) {
+                    assertThat(snapshot.price(i))
+                            .as("The snapshot should hold the last price written for every product.")
+                            .isEqualTo(snapshot.products().get(i).price());
+                }
+                assertThat(snapshot.version())
+                        .as("Each of the four writes per round should publish exactly one version.")
+                        .isEqualTo(startVersion + 4L * threads * perThread);
+                assertThat(versions).isSorted();
+            }
+
+            @Test
+            @DisplayName("💾 should restore products and changed products from a snapshot file")
+            void should_restoreProducts_when_readingSnapshotFile(@TempDir Path dir) throws IOException {
+                // Arrange
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(3), new BigDecimal("1.0"));
+                Product laptop = new ElectronicsProduct(UUID.randomUUID(), "Laptop", Category.of("Electronics"), new BigDecimal("1500.00"), 24, new BigDecimal("2.5"));
+                warehouse.addProduct(milk);
+                warehouse.addProduct(laptop);
+                warehouse.updateProductPrice(laptop.uuid(), new BigDecimal("1400.00"));
+                Path file = dir.resolve("warehouse.snapshot");
+                Warehouse restored = Warehouse.getInstance("RestoredWarehouse");
+                restored.clearProducts();
+
+                // Act
+                SnapshotFile.write(warehouse, file);
+                try (SnapshotFile snapshot = SnapshotFile.open(file)) {
+                    snapshot.restoreInto(restored);
+                }
+
+                // Assert
+                assertThat(restored.getProducts())
+                        .as("Every product should come back with the same fields.")
+                        .extracting(Product::uuid, Product::name, Product::price)
+                        .containsExactlyInAnyOrder(
+                                tuple(milk.uuid(), "Milk", new BigDecimal("15.50")),
+                                tuple(laptop.uuid(), "Laptop", new BigDecimal("1400.00")));
+                assertThat(restored.getChangedProducts())
+                        .as("Only the product whose price was updated should be marked as changed.")
+                        .extracting(Product::uuid)
+                        .containsExactly(laptop.uuid());
+            }
+
+            @Test
+            @DisplayName("💾 should serve products from the snapshot file before the lazy restore has added them")
+            void should_serveProductsFromFile_when_restoreIsPending(@TempDir Path dir) throws IOException {
+                // Arrange
+                List<Product> products = IntStream.range(0, 2_000)
+                        .mapToObj(i -> (Product) new FoodProduct(UUID.randomUUID(), "Food " + i, Category.of("Dairy"), new BigDecimal(i + ".25"), LocalDate.now().plusDays(3), new BigDecimal("1.0")))
+                        .toList();
+                warehouse.addProducts(products);
+                Path file = dir.resolve("warehouse.snapshot");
+                SnapshotFile.write(warehouse, file);
+                Warehouse restored = Warehouse.getInstance("LazyRestoredWarehouse");
+                restored.clearProducts();
+                Product wanted = products.get(1_234);
+
+                // Act
+                Product served;
+                try (SnapshotFile snapshot = SnapshotFile.open(file)) {
+                    snapshot.restoreInto(restored);
+                    served = restored.getProductById(wanted.uuid()).orElseThrow();
+                }
+                served.price(new BigDecimal("9.99"));
+
+                // Assert
+                assertThat(served)
+                        .as("The product read from the file should carry the fields it was written with.")
+                        .extracting(Product::uuid, Product::name)
+                        .containsExactly(wanted.uuid(), wanted.name());
+                assertThat(restored.productCount())
+                        .as("The product count should be the snapshot's, whether or not the restore is done.")
+                        .isEqualTo(products.size());
+                assertThat(restored.getProductById(UUID.randomUUID()))
+                        .as("A product that is not in the snapshot should not be found.")
+                        .isEmpty();
+                assertThat(restored.getProducts())
+                        .as("The restore should add the very instance that was served from the file.")
+                        .hasSize(products.size())
+                        .anySatisfy(product -> assertThat(product).isSameAs(served));
+                assertThat(restored.getChangedProducts())
+                        .as("A price set on the served product should go through the warehouse.")
+                        .containsExactly(served);
+                assertThat(restored.findProductsInPriceRange(new BigDecimal("9.99"), new BigDecimal("9.99")))
+                        .as("The price index should hold the served product at its new price.")
+                        .contains(served);
+            }
+
+            @Test
+            @DisplayName("💾 should reject a snapshot file whose header does not match its size")
+            void should_rejectSnapshot_when_headerIsCorrupt(@TempDir Path dir) throws IOException {
+                // Arrange
+                warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(3), new BigDecimal("1.0")));
+                Path file = dir.resolve("warehouse.snapshot");
+                SnapshotFile.write(warehouse, file);
+                byte[] valid = Files.readAllBytes(file);
+                Path wrongCount = dir.resolve("count.snapshot");
+                Path wrongOffset = dir.resolve("offset.snapshot");
+
+                // Act
+                Files.write(wrongCount, ByteBuffer.wrap(valid.clone()).putInt(12, 1_000_000).array());
+                Files.write(wrongOffset, ByteBuffer.wrap(valid.clone()).putLong(24, Long.MAX_VALUE - 8).array());
+
+                // Assert
+                assertThatThrownBy(() -> SnapshotFile.open(wrongCount))
+                        .as("A product count beyond the end of the file should be rejected on open.")
+                        .isInstanceOf(IOException.class);
+                assertThatThrownBy(() -> SnapshotFile.open(wrongOffset))
+                        .as("A records offset beyond the end of the file should be rejected on open.")
+                        .isInstanceOf(IOException.class);
+                try (SnapshotFile snapshot = SnapshotFile.open(file)) {
+                    assertThat(snapshot.size()).isEqualTo(1);
+                }
+            }
+
+            @Test
+            @DisplayName("💾 should recover mutations made after the last checkpoint from the write-ahead log")
+            void should_recoverMutations_when_replayingWriteAheadLog(@TempDir Path dir) throws IOException {
+                // Arrange
+                Path snapshotFile = dir.resolve("warehouse.snapshot");
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(3), new BigDecimal("1.0"));
+                Product laptop = new ElectronicsProduct(UUID.randomUUID(), "Laptop", Category.of("Electronics"), new BigDecimal("1500.00"), 24, new BigDecimal("2.5"));
+                // The warehouses are shared singletons, so a log left attached by an earlier run is detached first.
+                Warehouse logged = Warehouse.getInstance("LoggedWarehouse");
+                logged.closeLog();
+                logged.clearProducts();
+                logged.recover(snapshotFile, WriteAheadLog.open(dir.resolve("warehouse.log"), Durability.SYNC));
+                try {
+                    logged.addProduct(milk);
+                    logged.checkpoint(snapshotFile);
+                    logged.addProduct(laptop);
+                    logged.updateProductPrice(milk.uuid(), new BigDecimal("12.00"));
+                } finally {
+                    logged.closeLog();
+                }
+                Warehouse recovered = Warehouse.getInstance("RecoveredWarehouse");
+                recovered.closeLog();
+                recovered.clearProducts();
+
+                // Act
+                recovered.recover(snapshotFile, WriteAheadLog.open(dir.resolve("warehouse.log"), Durability.BATCHED));
+                recovered.closeLog();
+
+                // Assert
+                assertThat(recovered.getProducts())
+                        .as("The snapshot and the logged mutations after it should both be recovered.")
+                        .extracting(Product::uuid, Product::price)
+                        .containsExactlyInAnyOrder(
+                                tuple(milk.uuid(), new BigDecimal("12.00")),
+                                tuple(laptop.uuid(), new BigDecimal("1500.00")));
+            }
+
+            @Test
+            @DisplayName("💾 should replay products without a name or with a very long name from the write-ahead log")
+            void should_recoverNames_when_replayingWriteAheadLog(@TempDir Path dir) throws IOException {
+                // Arrange
+                // Longer than the 64 KB modified UTF-8 limit, with multi-byte characters.
+                String longName = "Ost-" + "å".repeat(40_000) + "-" + "x".repeat(30_000);
+                Product unnamed = new FoodProduct(UUID.randomUUID(), null, Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(3), new BigDecimal("1.0"));
+                Product longNamed = new ElectronicsProduct(UUID.randomUUID(), longName, Category.of("Electronics"), new BigDecimal("1500.00"), 24, new BigDecimal("2.5"));
+                Warehouse logged = Warehouse.getInstance("NamesLoggedWarehouse");
+                logged.closeLog();
+                logged.clearProducts();
+                logged.recover(dir.resolve("warehouse.snapshot"), WriteAheadLog.open(dir.resolve("warehouse.log"), Durability.SYNC));
+                try {
+                    logged.addProduct(unnamed);
+                    logged.addProduct(longNamed);
+                } finally {
+                    logged.closeLog();
+                }
+                Warehouse recovered = Warehouse.getInstance("NamesRecoveredWarehouse");
+                recovered.closeLog();
+                recovered.clearProducts();
+
+                // Act
+                recovered.recover(dir.resolve("warehouse.snapshot"), WriteAheadLog.open(dir.resolve("warehouse.log"), Durability.SYNC));
+                recovered.closeLog();
+
+                // Assert
+                assertThat(recovered.getProductById(unnamed.uuid()))
+                        .as("A product without a name should be replayed without a name.")
+                        .hasValueSatisfying(product -> assertThat(product.name()).isNull());
+                assertThat(recovered.getProductById(longNamed.uuid()))
+                        .as("A name longer than 64 KB should be replayed unchanged.")
+                        .hasValueSatisfying(product -> assertThat(product.name()).isEqualTo(longName));
+            }
+
+            @Test
+            @DisplayName("💾 should leave the warehouse unchanged when the write-ahead log rejects a mutation")
+            void should_notApplyMutation_when_writeAheadLogRejectsIt(@TempDir Path dir) throws IOException {
+                // Arrange
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(3), new BigDecimal("1.0"));
+                Warehouse logged = Warehouse.getInstance("RejectingLogWarehouse");
+                logged.closeLog();
+                logged.clearProducts();
+                WriteAheadLog log = WriteAheadLog.open(dir.resolve("warehouse.log"), Durability.SYNC);
+                logged.recover(dir.resolve("warehouse.snapshot"), log);
+
+                // Act
+                log.close();
+
+                // Assert
+                assertThatThrownBy(() -> logged.addProduct(milk))
+                        .isInstanceOf(IllegalStateException.class);
+                assertThat(logged.getProducts())
+                        .as("A mutation whose record could not be logged should not be applied.")
+                        .isEmpty();
+                logged.closeLog();
+                logged.addProduct(milk);
+                assertThat(logged.getProducts())
+                        .as("Once the log is detached, mutations should be applied again.")
+                        .containsExactly(milk);
+            }
+
+            @Test
+            @DisplayName("📥 should import every product type from a CSV catalog file")
+            void should_importProducts_when_readingCsvCatalog(@TempDir Path dir) throws IOException {
+                // Arrange
+                UUID milkId = UUID.randomUUID();
+                UUID laptopId = UUID.randomUUID();
+                Path file = dir.resolve("catalog.csv");
+                Files.writeString(file, """
+                        type,id,name,category,price,weight,detail
+                        food,%s,"Milk, fresh",dairy,15.50,1.0,2030-01-01
+                        electronics,%s,Laptop,Electronics,1500.00,2.5,24
+                        """.formatted(milkId, laptopId));
+
+                // Act
+                long imported = new CatalogImporter(warehouse).importFile(file);
+
+                // Assert
+                assertThat(imported).isEqualTo(2);
+                assertThat(warehouse.getProductById(milkId))
+                        .as("A quoted name may contain commas, and the category should be normalized.")
+                        .hasValueSatisfying(milk -> {
+                            assertThat(milk).isInstanceOf(FoodProduct.class);
+                            assertThat(milk.name()).isEqualTo("Milk, fresh");
+                            assertThat(milk.category()).isSameAs(Category.of("Dairy"));
+                        });
+                assertThat(warehouse.getProductById(laptopId))
+                        .hasValueSatisfying(laptop -> assertThat(laptop).isInstanceOf(ElectronicsProduct.class));
+            }
+
+            @Test
+            @DisplayName("📥 should import every product type from an NDJSON catalog file")
+            void should_importProducts_when_readingNdjsonCatalog(@TempDir Path dir) throws IOException {
+                // Arrange
+                UUID milkId = UUID.randomUUID();
+                UUID laptopId = UUID.randomUUID();
+                Path file = dir.resolve("catalog.ndjson");
+                Files.writeString(file, """
+                        {"type": "food", "id": "%s", "name": "Milk \\"fresh\\"", "category": "dairy", "price": 15.50, "weight": 1.0, "expirationDate": null}
+
+                        {"type":"electronics","id":"%s","name":"Laptop","category":"Electronics","price":"1500.00","weight":2.5,"warrantyMonths":24}
+                        """.formatted(milkId, laptopId));
+
+                // Act
+                long imported = new CatalogImporter(warehouse).importFile(file);
+
+                // Assert
+                assertThat(imported).isEqualTo(2);
+                assertThat(warehouse.getProductById(milkId))
+                        .as("Escaped quotes should be unescaped, and a null expiration date means none.")
+                        .hasValueSatisfying(milk -> {
+                            assertThat(milk.name()).isEqualTo("Milk \"fresh\"");
+                            assertThat(((FoodProduct) milk).expirationDate()).isNull();
+                            assertThat(milk.price()).isEqualByComparingTo("15.50");
+                        });
+                assertThat(warehouse.getProductById(laptopId))
+                        .hasValueSatisfying(laptop -> assertThat(((ElectronicsProduct) laptop).warrantyMonths()).isEqualTo(24));
+            }
+
+            @Test
+            @DisplayName("📥 should import a line that crosses the boundary between two read chunks")
+            void should_importLine_when_lineCrossesChunkBoundary(@TempDir Path dir) throws IOException {
+                // Arrange - the importer reads 1 MiB at a time, the long line starts just before that mark
+                int chunkSize = 1 << 20;
+                StringBuilder csv = new StringBuilder("type,id,name,category,price,weight,detail\n");
+                int lines = 0;
+                while (csv.length() < chunkSize - 100) {
+                    csv.append("food,").append(UUID.randomUUID()).append(",Filler,Dairy,1.00,1.0,\n");
+                    lines++;
+                }
+                UUID crossingId = UUID.randomUUID();
+                String crossingName = "Crossing" + "x".repeat(500);
+                csv.append("electronics,").append(crossingId).append(',').append(crossingName).append(",Electronics,99.99,2.0,12\n");
+                csv.append("food,").append(UUID.randomUUID()).append(",After,Dairy,1.00,1.0,2030-01-01\n");
+                Path file = dir.resolve("catalog.csv");
+                Files.writeString(file, csv);
+
+                // Act
+                long imported = new CatalogImporter(warehouse, 2).importFile(file);
+
+                // Assert
+                assertThat(imported).isEqualTo(lines + 2);
+                assertThat(warehouse.getProductById(crossingId))
+                        .as("The line split across two reads should be parsed as one whole line.")
+                        .hasValueSatisfying(product -> assertThat(product.name()).isEqualTo(crossingName));
+            }
+
+            @Test
+            @DisplayName("❌ should name the rejected line and stop adding chunks after it")
+            void should_throwException_when_catalogLineIsInvalid(@TempDir Path dir) throws IOException {
+                // Arrange - an invalid price on line 3, followed by more than a chunk of valid lines
+                StringBuilder csv = new StringBuilder("type,id,name,category,price,weight,detail\n");
+                csv.append("food,").append(UUID.randomUUID()).append(",Milk,Dairy,15.50,1.0,\n");
+                csv.append("food,").append(UUID.randomUUID()).append(",Cheese,Dairy,not-a-price,1.0,\n");
+                while (csv.length() < 3 << 20) {
+                    csv.append("food,").append(UUID.randomUUID()).append(",Filler,Dairy,1.00,1.0,\n");
+                }
+                Path file = dir.resolve("catalog.csv");
+                Files.writeString(file, csv);
+
+                // Act & Assert
+                assertThatThrownBy(() -> new CatalogImporter(warehouse, 1).importFile(file))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessageStartingWith("Line 3:");
+                assertThat(warehouse.getProducts())
+                        .as("The rejected chunk is not added, and neither is any chunk after it.")
+                        .isEmpty();
+            }
+
+            @Test
+            @DisplayName("📈 should report operation counts, latencies and gauges to a registered metrics sink")
+            void should_recordMetrics_when_sinkIsRegistered() {
+                // Arrange
+                InMemoryMetricsSink metrics = new InMemoryMetricsSink();
+                warehouse.metricsSink(metrics);
+                Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), new BigDecimal("15.50"), LocalDate.now().plusDays(5), BigDecimal.ONE);
+
+                // Act
+                warehouse.addProduct(milk);
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("14.00"));
+                warehouse.getProductById(milk.uuid());
+                new WarehouseAnalyzer(warehouse).getInventoryStatistics();
+
+                // Assert
+                assertThat(metrics.counter("warehouse.products.added")).isEqualTo(1);
+                assertThat(metrics.counter("warehouse.prices.updated")).isEqualTo(1);
+                assertThat(metrics.timer("warehouse.getProductById").count())
+                        .as("Every lookup should be timed.")
+                        .isEqualTo(1);
+                assertThat(metrics.timer("analyzer.getInventoryStatistics").count()).isEqualTo(1);
+                assertThat(metrics.gauge("warehouse.products")).hasValue(1);
+                assertThat(metrics.gauge("warehouse.changedProducts")).hasValue(1);
+            }
+
             @Test
             @DisplayName("✅ should return an empty map when grouping by category if empty")
             void should_returnEmptyMap_when_groupingCategoriesOnEmptyWarehouse() {
@@ -335,6 +1076,561 @@ class BasicTest {
             }
         }
 
+        @Nested
+        @DisplayName("Price Index")
+        class PriceIndexTests {
+
+            private Product food(String name, String price) {
+                return new FoodProduct(UUID.randomUUID(), name, Category.of("Dairy"), new BigDecimal(price), LocalDate.now().plusDays(5), BigDecimal.ONE);
+            }
+
+            @Test
+            @DisplayName("💲 should include both bounds of a price range and exclude the threshold above and below")
+            void should_respectBoundaries_when_queryingPriceIndex() {
+                // Arrange
+                Product cheap = food("Cheap", "5.00");
+                Product low = food("Low", "10.00");
+                Product mid = food("Mid", "15.00");
+                Product high = food("High", "20.00");
+                Product expensive = food("Expensive", "25.00");
+                List.of(expensive, low, high, cheap, mid).forEach(warehouse::addProduct);
+
+                // Act & Assert
+                assertThat(warehouse.findProductsInPriceRange(new BigDecimal("10.00"), new BigDecimal("20.00")))
+                        .as("Both bounds of the range are inclusive, results are ordered by price.")
+                        .containsExactly(low, mid, high);
+                assertThat(warehouse.findProductsAbovePrice(new BigDecimal("20.00")))
+                        .as("The threshold itself is not above the threshold.")
+                        .containsExactly(expensive);
+                assertThat(warehouse.findProductsBelowPrice(new BigDecimal("10.00")))
+                        .as("The threshold itself is not below the threshold.")
+                        .containsExactly(cheap);
+                assertThat(warehouse.findProductsInPriceRange(new BigDecimal("20.01"), new BigDecimal("24.99")))
+                        .as("A range between two prices matches nothing.")
+                        .isEmpty();
+            }
+
+            @Test
+            @DisplayName("💲 should treat prices that differ only in scale as equal")
+            void should_matchEqualPrices_when_scalesDiffer() {
+                // Arrange
+                Product tenOne = food("TenOne", "10.0");
+                Product tenTwo = food("TenTwo", "10.00");
+                warehouse.addProduct(tenOne);
+                warehouse.addProduct(tenTwo);
+
+                // Act & Assert
+                assertThat(warehouse.findProductsInPriceRange(new BigDecimal("10"), new BigDecimal("10.000")))
+                        .as("10.0 and 10.00 are the same price and both fall in [10, 10.000].")
+                        .containsExactlyInAnyOrder(tenOne, tenTwo);
+                assertThat(warehouse.findProductsAbovePrice(new BigDecimal("10.000"))).isEmpty();
+                assertThat(warehouse.findProductsBelowPrice(new BigDecimal("10"))).isEmpty();
+                assertThat(warehouse.findProductsAbovePrice(new BigDecimal("9.99")))
+                        .as("Neither product is lost when both share a price with different scales.")
+                        .containsExactlyInAnyOrder(tenOne, tenTwo);
+            }
+
+            @Test
+            @DisplayName("💲 should move a product in the price index when its price is updated")
+            void should_moveIndexEntry_when_priceIsUpdated() {
+                // Arrange
+                Product milk = food("Milk", "10.00");
+                Product cheese = food("Cheese", "30.00");
+                warehouse.addProduct(milk);
+                warehouse.addProduct(cheese);
+
+                // Act
+                warehouse.updateProductPrice(milk.uuid(), new BigDecimal("40.00"));
+                cheese.price(new BigDecimal("5.00"));
+
+                // Assert
+                assertThat(warehouse.findProductsInPriceRange(new BigDecimal("10.00"), new BigDecimal("30.00")))
+                        .as("Neither product should still be found at its old price.")
+                        .isEmpty();
+                assertThat(warehouse.findProductsAbovePrice(new BigDecimal("30.00"))).containsExactly(milk);
+                assertThat(warehouse.findProductsBelowPrice(new BigDecimal("10.00")))
+                        .as("A price set on the product itself should move its index entry as well.")
+                        .containsExactly(cheese);
+                assertThat(warehouse.getChangedProducts()).containsExactlyInAnyOrder(milk, cheese);
+            }
+
+            @Test
+            @DisplayName("💲 should drop a removed product from the price index")
+            void should_dropIndexEntry_when_productIsRemoved() {
+                // Arrange
+                Product milk = food("Milk", "10.00");
+                Product cheese = food("Cheese", "10.00");
+                warehouse.addProduct(milk);
+                warehouse.addProduct(cheese);
+
+                // Act
+                warehouse.remove(milk.uuid());
+                milk.price(new BigDecimal("12.00"));
+
+                // Assert
+                assertThat(warehouse.findProductsInPriceRange(BigDecimal.ZERO, new BigDecimal("100.00")))
+                        .as("Only the product still in the warehouse is found, at its own price.")
+                        .containsExactly(cheese);
+                assertThat(milk.price())
+                        .as("A removed product keeps its own price updates.")
+                        .isEqualByComparingTo("12.00");
+            }
+        }
+
+        @Nested
+        @DisplayName("Expiration Index")
+        class ExpirationIndexTests {
+
+            private FoodProduct food(String name, LocalDate expirationDate) {
+                return new FoodProduct(UUID.randomUUID(), name, Category.of("Dairy"), new BigDecimal("10.00"), expirationDate, BigDecimal.ONE);
+            }
+
+            @Test
+            @DisplayName("📅 should only report products that expired before today")
+            void should_reportExpiredProducts_when_expirationDateIsBeforeToday() {
+                // Arrange
+                LocalDate today = LocalDate.now();
+                FoodProduct lastWeek = food("LastWeek", today.minusDays(7));
+                FoodProduct yesterday = food("Yesterday", today.minusDays(1));
+                FoodProduct expiresToday = food("Today", today);
+                FoodProduct tomorrow = food("Tomorrow", today.plusDays(1));
+                FoodProduct noDate = food("NoDate", null);
+                List.of(tomorrow, expiresToday, noDate, yesterday, lastWeek).forEach(warehouse::addProduct);
+
+                // Act
+                List<Perishable> expired = warehouse.expiredProducts();
+
+                // Assert
+                assertThat(expired)
+                        .as("Products expiring today are still good, and products without a date never expire.")
+                        .containsExactly(lastWeek, yesterday);
+                assertThat(warehouse.expiredCount()).isEqualTo(2);
+            }
+
+            @Test
+            @DisplayName("📅 should include both boundary days when finding products expiring in a date range")
+            void should_includeBoundaryDays_when_findingProductsExpiringBetween() {
+                // Arrange
+                LocalDate from = LocalDate.of(2030, 3, 10);
+                LocalDate to = LocalDate.of(2030, 3, 20);
+                FoodProduct before = food("Before", from.minusDays(1));
+                FoodProduct first = food("First", from);
+                FoodProduct middle = food("Middle", from.plusDays(5));
+                FoodProduct last = food("Last", to);
+                FoodProduct after = food("After", to.plusDays(1));
+                List.of(after, last, before, middle, first).forEach(warehouse::addProduct);
+
+                // Act & Assert
+                assertThat(warehouse.findProductsExpiringBetween(from, to))
+                        .as("Both ends of the range are inclusive, results are ordered by expiration date.")
+                        .containsExactly(first, middle, last);
+                assertThat(warehouse.findProductsExpiringBetween(from, from))
+                        .as("A single-day range finds the products expiring on that day.")
+                        .containsExactly(first);
+                assertThat(warehouse.findProductsExpiringBetween(to, from))
+                        .as("A reversed range finds nothing.")
+                        .isEmpty();
+            }
+
+            @Test
+            @DisplayName("📅 should move a product in the expiration index when it is replaced with a new expiration date")
+            void should_moveIndexEntry_when_expirationDateChanges() {
+                // Arrange
+                LocalDate today = LocalDate.now();
+                FoodProduct milk = food("Milk", today.minusDays(2));
+                warehouse.addProduct(milk);
+                // The expiration date is fixed per product, so a new date means storing a new version of the product.
+                FoodProduct restocked = new FoodProduct(milk.uuid(), "Milk", milk.category(), milk.price(), today.plusDays(10), BigDecimal.ONE);
+
+                // Act
+                warehouse.remove(milk.uuid());
+                warehouse.addProduct(restocked);
+
+                // Assert
+                assertThat(warehouse.expiredProducts())
+                        .as("The old expiration date should no longer be indexed.")
+                        .isEmpty();
+                assertThat(warehouse.findProductsExpiringBetween(today, today.plusDays(10)))
+                        .containsExactly(restocked);
+            }
+
+            @Test
+            @DisplayName("📅 should drop a removed product from the expiration index")
+            void should_dropIndexEntry_when_productIsRemoved() {
+                // Arrange
+                LocalDate date = LocalDate.now().minusDays(1);
+                FoodProduct milk = food("Milk", date);
+                FoodProduct cheese = food("Cheese", date);
+                warehouse.addProduct(milk);
+                warehouse.addProduct(cheese);
+
+                // Act
+                warehouse.remove(milk.uuid());
+
+                // Assert
+                assertThat(warehouse.expiredProducts())
+                        .as("Only the product still in the warehouse should be reported, even on a shared date.")
+                        .containsExactly(cheese);
+                assertThat(warehouse.findProductsExpiringBetween(date, date)).containsExactly(cheese);
+            }
+        }
+
+        @Nested
+        @DisplayName("Category Buckets")
+        class CategoryBucketTests {
+
+            private Product food(String name, String category) {
+                return new FoodProduct(UUID.randomUUID(), name, Category.of(category), new BigDecimal("10.00"), LocalDate.now().plusDays(5), BigDecimal.ONE);
+            }
+
+            @Test
+            @DisplayName("🗂️ should drop a category once its last product is removed")
+            void should_dropCategory_when_bucketIsEmptiedByRemove() {
+                // Arrange
+                Product milk = food("Milk", "Dairy");
+                Product cheese = food("Cheese", "Dairy");
+                Product bread = food("Bread", "Bakery");
+                List.of(milk, cheese, bread).forEach(warehouse::addProduct);
+
+                // Act
+                warehouse.remove(milk.uuid());
+                warehouse.remove(cheese.uuid());
+
+                // Assert
+                assertThat(warehouse.getCategories())
+                        .as("An emptied category should no longer be listed.")
+                        .containsExactly(Category.of("Bakery"));
+                assertThat(warehouse.getProductsGroupedByCategories())
+                        .as("An emptied category should not show up as an empty group.")
+                        .containsOnlyKeys(Category.of("Bakery"));
+                assertThat(warehouse.getProductsInCategory(Category.of("Dairy"))).isEmpty();
+            }
+
+            @Test
+            @DisplayName("🗂️ should reuse a category's list until that category changes")
+            void should_reuseCachedList_when_categoryIsUnchanged() {
+                // Arrange
+                Product milk = food("Milk", "Dairy");
+                Product bread = food("Bread", "Bakery");
+                warehouse.addProduct(milk);
+                warehouse.addProduct(bread);
+                List<Product> dairy = warehouse.getProductsGroupedByCategories().get(Category.of("Dairy"));
+
+                // Act
+                warehouse.addProduct(food("Rye", "Bakery"));
+                List<Product> dairyAgain = warehouse.getProductsGroupedByCategories().get(Category.of("Dairy"));
+
+                // Assert
+                assertThat(dairyAgain)
+                        .as("A change to another category should not copy this category's list again.")
+                        .isSameAs(dairy);
+            }
+
+            @Test
+            @DisplayName("🗂️ should invalidate a category's list when a product is added or removed")
+            void should_invalidateCachedList_when_productIsAddedOrRemoved() {
+                // Arrange
+                Product milk = food("Milk", "Dairy");
+                Product cheese = food("Cheese", "Dairy");
+                warehouse.addProduct(milk);
+                List<Product> beforeAdd = warehouse.getProductsGroupedByCategories().get(Category.of("Dairy"));
+
+                // Act
+                warehouse.addProduct(cheese);
+                List<Product> afterAdd = warehouse.getProductsGroupedByCategories().get(Category.of("Dairy"));
+                warehouse.remove(milk.uuid());
+                List<Product> afterRemove = warehouse.getProductsGroupedByCategories().get(Category.of("Dairy"));
+
+                // Assert
+                assertThat(beforeAdd)
+                        .as("A list handed out earlier should not change afterwards.")
+                        .containsExactly(milk);
+                assertThat(afterAdd).containsExactlyInAnyOrder(milk, cheese);
+                assertThat(afterRemove).containsExactly(cheese);
+            }
+
+            @Test
+            @DisplayName("🗂️ should invalidate a category's list when products are added as a batch")
+            void should_invalidateCachedList_when_batchIsAdded() {
+                // Arrange
+                Product milk = food("Milk", "Dairy");
+                warehouse.addProduct(milk);
+                warehouse.getProductsGroupedByCategories();
+                Product cheese = food("Cheese", "Dairy");
+                Product butter = food("Butter", "Dairy");
+
+                // Act
+                warehouse.addProducts(List.of(cheese, butter));
+
+                // Assert
+                assertThat(warehouse.getProductsGroupedByCategories().get(Category.of("Dairy")))
+                        .containsExactlyInAnyOrder(milk, cheese, butter);
+            }
+        }
+
+        @Nested
+        @DisplayName("Name Search")
+        class NameSearchTests {
+
+            private Product food(String name) {
+                return new FoodProduct(UUID.randomUUID(), name, Category.of("Dairy"), new BigDecimal("10.00"), LocalDate.now().plusDays(5), BigDecimal.ONE);
+            }
+
+            @Test
+            @DisplayName("🔎 should scan the names when the term is shorter than a trigram")
+            void should_findProducts_when_termIsShorterThanTrigram() {
+                // Arrange
+                Product milk = food("Milk");
+                Product mint = food("Mint tea");
+                Product bread = food("Bread");
+                List.of(milk, mint, bread).forEach(warehouse::addProduct);
+
+                // Act & Assert
+                assertThat(warehouse.searchProductsByName("mi"))
+                        .as("Two-character terms have no trigram and are answered by a scan.")
+                        .containsExactlyInAnyOrder(milk, mint);
+                assertThat(warehouse.searchProductsByName("d")).containsExactly(bread);
+                assertThat(warehouse.searchProductsByName(""))
+                        .as("The empty term is contained in every name.")
+                        .containsExactlyInAnyOrder(milk, mint, bread);
+            }
+
+            @Test
+            @DisplayName("🔎 should not return a candidate that shares every trigram but not the term")
+            void should_rejectCandidate_when_trigramsMatchButTermDoesNot() {
+                // Arrange
+                // Holds both trigrams of "abcd" ("abc" and "bcd"), but not "abcd" itself.
+                Product lookalike = food("abc-bcd");
+                Product match = food("xabcdx");
+                warehouse.addProduct(lookalike);
+                warehouse.addProduct(match);
+
+                // Act
+                List<Product> found = warehouse.searchProductsByName("abcd");
+
+                // Assert
+                assertThat(found)
+                        .as("Candidates from the trigram index should still be checked against the whole term.")
+                        .containsExactly(match);
+            }
+
+            @Test
+            @DisplayName("🔎 should ignore case in both the term and the names")
+            void should_ignoreCase_when_searchingByName() {
+                // Arrange
+                Product milk = food("Organic MILK");
+                Product butter = food("Butter");
+                warehouse.addProduct(milk);
+                warehouse.addProduct(butter);
+
+                // Act & Assert
+                assertThat(warehouse.searchProductsByName("milk")).containsExactly(milk);
+                assertThat(warehouse.searchProductsByName("mIlK")).containsExactly(milk);
+                assertThat(warehouse.searchProductsByName("ORGANIC m")).containsExactly(milk);
+                assertThat(warehouse.searchProductsByName("BUT")).containsExactly(butter);
+            }
+
+            @Test
+            @DisplayName("🔎 should stop finding a product once it is removed")
+            void should_notFindProduct_when_productIsRemoved() {
+                // Arrange
+                Product milk = food("Milk");
+                Product oatMilk = food("Oat milk");
+                warehouse.addProduct(milk);
+                warehouse.addProduct(oatMilk);
+
+                // Act
+                warehouse.remove(milk.uuid());
+                // The same id comes back under another name, which should only be found by that new name.
+                Product renamed = new FoodProduct(milk.uuid(), "Cream", Category.of("Dairy"), new BigDecimal("10.00"), LocalDate.now().plusDays(5), BigDecimal.ONE);
+                warehouse.addProduct(renamed);
+
+                // Assert
+                assertThat(warehouse.searchProductsByName("milk"))
+                        .as("Only the remaining product should match the removed product's name.")
+                        .containsExactly(oatMilk);
+                assertThat(warehouse.searchProductsByName("cream")).containsExactly(renamed);
+            }
+        }
+
+        @Nested
+        @DisplayName("Columnar Views")
+        class ColumnarViewTests {
+
+            // More than two chunks of rows, so writes and views cross chunk boundaries.
+            private static final int ROWS = 2_500;
+
+            private Product food(int i) {
+                return new FoodProduct(UUID.randomUUID(), "Food " + i, Category.of("Dairy"), BigDecimal.valueOf(100 + i, 2), LocalDate.now().plusDays(5), BigDecimal.ONE);
+            }
+
+            private List<Product> addFoods(int count) {
+                List<Product> foods = new ArrayList<>();
+                for (int i = 0; i < count; i++) foods.add(food(i));
+                warehouse.addProducts(foods);
+                return foods;
+            }
+
+            private Map<UUID, BigDecimal> prices(ColumnarView view) {
+                Map<UUID, BigDecimal> prices = new HashMap<>();
+                for (int row = 0; row < view.size(); row++) prices.put(view.uuid(row), view.exactPrice(row));
+                return prices;
+            }
+
+            @Test
+            @DisplayName("📊 should hold every added product in the view, across chunks")
+            void should_holdEveryProduct_when_productsAreAdded() {
+                // Arrange
+                List<Product> foods = addFoods(ROWS);
+                Product extra = food(ROWS);
+                warehouse.addProduct(extra);
+
+                // Act
+                ColumnarView view = warehouse.columns();
+
+                // Assert
+                assertThat(view.size()).isEqualTo(ROWS + 1);
+                Map<UUID, BigDecimal> prices = prices(view);
+                for (Product food : foods) {
+                    assertThat(prices).containsEntry(food.uuid(), food.price());
+                }
+                assertThat(prices).containsEntry(extra.uuid(), extra.price());
+                assertThat(view.copyPriceColumn())
+                        .as("The copied price column should follow the rows of the view.")
+                        .hasSize(ROWS + 1)
+                        .containsExactly(IntStream.range(0, view.size()).mapToLong(view::priceMinor).toArray());
+            }
+
+            @Test
+            @DisplayName("📊 should move the last row into the gap of a removed product")
+            void should_moveLastRow_when_productIsRemoved() {
+                // Arrange
+                addFoods(ROWS);
+                ColumnarView before = warehouse.columns();
+                UUID first = before.uuid(0);
+                UUID last = before.uuid(before.size() - 1);
+
+                // Act
+                warehouse.remove(first);
+                ColumnarView after = warehouse.columns();
+                // The moved product must still be found through the row map.
+                warehouse.updateProductPrice(last, new BigDecimal("77.77"));
+                ColumnarView updated = warehouse.columns();
+
+                // Assert
+                assertThat(after.size()).isEqualTo(ROWS - 1);
+                assertThat(after.uuid(0)).as("The last row should fill the gap.").isEqualTo(last);
+                assertThat(prices(after)).doesNotContainKey(first);
+                assertThat(updated.uuid(0)).isEqualTo(last);
+                assertThat(updated.exactPrice(0)).isEqualByComparingTo("77.77");
+                assertThat(before.size()).as("The earlier view should keep its rows.").isEqualTo(ROWS);
+                assertThat(before.uuid(0)).isEqualTo(first);
+                assertThat(before.uuid(before.size() - 1)).isEqualTo(last);
+            }
+
+            @Test
+            @DisplayName("📊 should remove every product, one at a time")
+            void should_emptyView_when_everyProductIsRemoved() {
+                // Arrange
+                List<Product> foods = addFoods(ROWS);
+
+                // Act
+                for (int i = 0; i < foods.size(); i += 2) warehouse.remove(foods.get(i).uuid());
+                ColumnarView half = warehouse.columns();
+                for (int i = 1; i < foods.size(); i += 2) warehouse.remove(foods.get(i).uuid());
+                ColumnarView empty = warehouse.columns();
+
+                // Assert
+                assertThat(half.size()).isEqualTo(ROWS / 2);
+                Map<UUID, BigDecimal> prices = prices(half);
+                for (int i = 1; i < foods.size(); i += 2) {
+                    assertThat(prices).containsEntry(foods.get(i).uuid(), foods.get(i).price());
+                }
+                assertThat(empty.size()).isZero();
+            }
+
+            @Test
+            @DisplayName("📊 should show a price update in new views only")
+            void should_showPriceUpdate_when_viewIsTakenAfterwards() {
+                // Arrange
+                List<Product> foods = addFoods(ROWS);
+                Product changed = foods.get(ROWS - 1);
+                ColumnarView before = warehouse.columns();
+
+                // Act
+                warehouse.updateProductPrice(changed.uuid(), new BigDecimal("12.345"));
+                ColumnarView after = warehouse.columns();
+
+                // Assert
+                Map<UUID, BigDecimal> expected = prices(before);
+                expected.put(changed.uuid(), new BigDecimal("12.345"));
+                assertThat(prices(after)).as("Only the updated row should change.").isEqualTo(expected);
+                assertThat(prices(before)).containsEntry(changed.uuid(), BigDecimal.valueOf(100 + ROWS - 1, 2));
+                assertThat(before.hasInexactPrices()).isFalse();
+                assertThat(after.hasInexactPrices()).isTrue();
+            }
+
+            @Test
+            @DisplayName("📊 should find off-heap rows through the native row index after removals and updates")
+            void should_findOffHeapRows_when_productsAreRemovedAndUpdated() throws IOException {
+                // Arrange
+                Warehouse offHeap = Warehouse.getInstance("OffHeapColumnarWarehouse", StorageMode.OFF_HEAP);
+                try {
+                    offHeap.clearProducts();
+                    List<Product> foods = new ArrayList<>();
+                    for (int i = 0; i < ROWS; i++) foods.add(food(i));
+                    offHeap.addProducts(foods);
+                    ColumnarView before = offHeap.columns();
+                    Map<UUID, BigDecimal> expected = new HashMap<>();
+                    foods.forEach(food -> expected.put(food.uuid(), food.price()));
+
+                    // Act
+                    for (int i = 0; i < ROWS; i += 3) {
+                        offHeap.remove(foods.get(i).uuid());
+                        expected.remove(foods.get(i).uuid());
+                    }
+                    for (int i = 1; i < ROWS; i += 3) {
+                        offHeap.updateProductPrice(foods.get(i).uuid(), new BigDecimal("1.005"));
+                        expected.put(foods.get(i).uuid(), new BigDecimal("1.005"));
+                    }
+                    ColumnarView after = offHeap.columns();
+
+                    // Assert
+                    assertThat(prices(after))
+                            .as("Every moved row should still be found by its UUID.")
+                            .isEqualTo(expected);
+                    assertThat(before.size()).isEqualTo(ROWS);
+                    assertThat(prices(before))
+                            .as("The view taken before should keep the old price.")
+                            .containsEntry(foods.get(1).uuid(), BigDecimal.valueOf(101, 2));
+                } finally {
+                    offHeap.close();
+                }
+            }
+
+            @Test
+            @DisplayName("📊 should keep an earlier view intact when the warehouse is cleared")
+            void should_keepEarlierView_when_warehouseIsCleared() {
+                // Arrange
+                List<Product> foods = addFoods(ROWS);
+                ColumnarView before = warehouse.columns();
+
+                // Act
+                warehouse.clearProducts();
+                ColumnarView cleared = warehouse.columns();
+                Product again = food(0);
+                warehouse.addProduct(again);
+                ColumnarView refilled = warehouse.columns();
+
+                // Assert
+                assertThat(cleared.size()).isZero();
+                assertThat(refilled.size()).isEqualTo(1);
+                assertThat(refilled.uuid(0)).isEqualTo(again.uuid());
+                assertThat(before.size()).isEqualTo(ROWS);
+                assertThat(prices(before)).containsEntry(foods.get(0).uuid(), foods.get(0).price());
+            }
+        }
+
         @Nested
         @DisplayName("Polymorphism and Interfaces")
         class InterfaceAndPolymorphismTests {
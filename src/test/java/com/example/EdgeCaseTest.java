@@ -5,8 +5,10 @@ import com.example.warehouse.*;
 import org.junit.jupiter.api.*;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -186,6 +188,84 @@ class EdgeCaseTest {
                     .as("Weighted average should consider product weights: (10*2 + 30*0.5 + 5*1) / 3.5 = 11.43")
                     .isEqualByComparingTo(new BigDecimal("11.43"));
         }
+
+        /**
+         * Keeps the weighted average exact when prices or weights have no fixed-point form in the columns.
+         * Arrange: one category mixing a three-decimal price, two-decimal prices, and weights with one to four decimals.
+         * Act: analyzer.calculateWeightedAveragePriceByCategory().
+         * Assert: the result equals the average computed with BigDecimal from the products.
+         */
+        @Test
+        @DisplayName("📊 should keep the weighted average exact for inexact prices and weights")
+
+        void should_calculateWeightedAveragePrice_when_pricesAndWeightsAreInexact() {
+            // Arrange
+            Category pantry = Category.of("Pantry");
+            List<FoodProduct> products = List.of(
+                    new FoodProduct(UUID.randomUUID(), "Saffron", pantry, new BigDecimal("2.005"),
+                            LocalDate.now().plusDays(30), new BigDecimal("0.3333")),
+                    new FoodProduct(UUID.randomUUID(), "Flour", pantry, new BigDecimal("4.00"),
+                            LocalDate.now().plusDays(30), new BigDecimal("1.5")),
+                    new FoodProduct(UUID.randomUUID(), "Rice", pantry, new BigDecimal("7.10"),
+                            LocalDate.now().plusDays(30), new BigDecimal("0.25")));
+            products.forEach(warehouse::addProduct);
+            BigDecimal weightedSum = BigDecimal.ZERO;
+            BigDecimal weightSum = BigDecimal.ZERO;
+            for (FoodProduct product : products) {
+                BigDecimal weight = BigDecimal.valueOf(product.weight());
+                weightedSum = weightedSum.add(product.price().multiply(weight));
+                weightSum = weightSum.add(weight);
+            }
+
+            // Act
+            Map<Category, BigDecimal> weightedAverages = analyzer.calculateWeightedAveragePriceByCategory();
+
+            // Assert
+            assertThat(weightedAverages.get(pantry))
+                    .as("Should match the BigDecimal weighted average")
+                    .isEqualTo(weightedSum.divide(weightSum, 2, RoundingMode.HALF_UP));
+        }
+
+        /**
+         * Reads every price of a view from the view itself, never from the live product.
+         * Arrange: an exact and a three-decimal price, and a view taken before both prices are updated.
+         * Act: update both prices, then read the prices of the old view and of a new one.
+         * Assert: the old view keeps the snapshot prices, in minor units and exactly, while a new view sees the updates.
+         */
+        @Test
+        @DisplayName("📸 should keep snapshot prices in a view after the live prices change")
+
+        void should_keepSnapshotPrices_when_pricesChangeAfterView() {
+            // Arrange
+            Category dairy = Category.of("Dairy");
+            Product milk = new FoodProduct(UUID.randomUUID(), "Milk", dairy, new BigDecimal("10.00"),
+                    LocalDate.now().plusDays(5), new BigDecimal("2.0"));
+            Product cheese = new FoodProduct(UUID.randomUUID(), "Cheese", dairy, new BigDecimal("30.005"),
+                    LocalDate.now().plusDays(10), new BigDecimal("0.5"));
+            warehouse.addProduct(milk);
+            warehouse.addProduct(cheese);
+            ColumnarView before = warehouse.columns();
+
+            // Act
+            warehouse.updateProductPrice(milk.uuid(), new BigDecimal("12.50"));
+            warehouse.updateProductPrice(cheese.uuid(), new BigDecimal("40.125"));
+            ColumnarView after = warehouse.columns();
+
+            // Assert
+            Map<UUID, BigDecimal> snapshot = new HashMap<>();
+            Map<UUID, BigDecimal> current = new HashMap<>();
+            for (int row = 0; row < before.size(); row++) snapshot.put(before.uuid(row), before.exactPrice(row));
+            for (int row = 0; row < after.size(); row++) current.put(after.uuid(row), after.exactPrice(row));
+            assertThat(snapshot)
+                    .as("The old view should keep the prices it was taken with")
+                    .containsEntry(milk.uuid(), new BigDecimal("10.00"))
+                    .containsEntry(cheese.uuid(), new BigDecimal("30.005"));
+            assertThat(current)
+                    .as("A new view should see the updated prices")
+                    .containsEntry(milk.uuid(), new BigDecimal("12.50"))
+                    .containsEntry(cheese.uuid(), new BigDecimal("40.125"));
+            assertThat(cheese.price()).isEqualByComparingTo("40.125");
+        }
         /**
          * Detects price outliers with extreme prices using the InterQuartile Range method.
          * Arrange: mostly normal-priced items around 15, plus very cheap and very expensive outliers.
@@ -219,6 +299,144 @@ class EdgeCaseTest {
                     .extracting(Product::name)
                     .containsExactlyInAnyOrder("Expensive", "Cheap");
         }
+        /**
+         * Runs the outlier detection against a warehouse that keeps its records off-heap.
+         * Arrange: the same tight cluster plus two extremes, stored in an OFF_HEAP warehouse.
+         * Act: analyzer.findPriceOutliers(1.5) over the off-heap records.
+         * Assert: the same two outliers as with on-heap storage.
+         */
+        @Test
+        @DisplayName("📊 should find the same outliers when records are stored off-heap")
+
+        void should_identifyPriceOutliers_withOffHeapStorage() {
+            // Arrange
+            Warehouse offHeap = Warehouse.getInstance("OffHeapTestWarehouse", StorageMode.OFF_HEAP);
+            offHeap.clearProducts();
+            IntStream.rangeClosed(1, 10).forEach(i ->
+                    offHeap.addProduct(new FoodProduct(UUID.randomUUID(), "Normal" + i, Category.of("Test"),
+                            new BigDecimal("15.00").add(new BigDecimal(i % 3)), LocalDate.now().plusDays(5), BigDecimal.ONE))
+            );
+            offHeap.addProduct(new FoodProduct(UUID.randomUUID(), "Expensive", Category.of("Test"),
+                    new BigDecimal("500.00"), LocalDate.now().plusDays(5), BigDecimal.ONE));
+            offHeap.addProduct(new FoodProduct(UUID.randomUUID(), "Cheap", Category.of("Test"),
+                    new BigDecimal("0.01"), LocalDate.now().plusDays(5), BigDecimal.ONE));
+
+            // Act
+            List<Product> outliers = new WarehouseAnalyzer(offHeap).findPriceOutliers(1.5);
+
+            // Assert
+            assertThat(outliers)
+                    .as("Off-heap records should give the same result as on-heap columns")
+                    .extracting(Product::name)
+                    .containsExactlyInAnyOrder("Expensive", "Cheap");
+        }
+        /**
+         * Detects price outliers from the warehouse's streaming price sketch instead of the exact quartiles.
+         * Arrange: the tight cluster plus two extremes, then a price update that moves one product out of the cluster.
+         * Act: findPriceOutliers(1.5) on an analyzer that always uses the sketch.
+         * Assert: the sketch follows the update and the three extremes are found, cheapest first.
+         */
+        @Test
+        @DisplayName("📊 should identify outliers from the streaming price sketch")
+
+        void should_identifyPriceOutliers_usingPriceSketch() {
+            // Arrange
+            List<Product> normal = new ArrayList<>();
+            IntStream.rangeClosed(1, 10).forEach(i ->
+                    normal.add(new FoodProduct(UUID.randomUUID(), "Normal" + i, Category.of("Test"),
+                            new BigDecimal("15.00").add(new BigDecimal(i % 3)), LocalDate.now().plusDays(5), BigDecimal.ONE))
+            );
+            warehouse.addProducts(normal);
+            warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Expensive", Category.of("Test"),
+                    new BigDecimal("500.00"), LocalDate.now().plusDays(5), BigDecimal.ONE));
+            warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Cheap", Category.of("Test"),
+                    new BigDecimal("0.01"), LocalDate.now().plusDays(5), BigDecimal.ONE));
+            warehouse.updateProductPrice(normal.getFirst().uuid(), new BigDecimal("900.00"));
+            WarehouseAnalyzer sketched = new WarehouseAnalyzer(warehouse, WarehouseAnalyzer.DEFAULT_PARALLEL_THRESHOLD, 0);
+
+            // Act
+            List<Product> outliers = sketched.findPriceOutliers(1.5);
+
+            // Assert
+            assertThat(warehouse.priceSketch().count()).isEqualTo(12);
+            assertThat(outliers)
+                    .as("Sketched outliers come from the price index, ordered by ascending price")
+                    .extracting(Product::name)
+                    .containsExactly("Cheap", "Expensive", "Normal1");
+        }
+        /**
+         * Uses an infinite threshold factor on the sketch path, whose fences are then infinite or NaN.
+         * Arrange: a spread of prices, and a catalog where every price is equal (zero IQR).
+         * Act: findPriceOutliers with positive and negative infinity on an analyzer that always uses the sketch.
+         * Assert: no exception; +inf finds nothing, -inf flags every product once, a zero IQR finds nothing.
+         */
+        @Test
+        @DisplayName("♾️ should handle infinite fences from the streaming price sketch")
+
+        void should_handleInfiniteFences_usingPriceSketch() {
+            // Arrange
+            IntStream.rangeClosed(1, 5).forEach(i ->
+                    warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Spread" + i, Category.of("Test"),
+                            new BigDecimal(i * 10), LocalDate.now().plusDays(5), BigDecimal.ONE)));
+            Warehouse flat = Warehouse.getInstance("FlatSketch");
+            flat.clearProducts();
+            IntStream.rangeClosed(1, 3).forEach(i ->
+                    flat.addProduct(new FoodProduct(UUID.randomUUID(), "Flat" + i, Category.of("Test"),
+                            new BigDecimal("5.00"), LocalDate.now().plusDays(5), BigDecimal.ONE)));
+            WarehouseAnalyzer sketched = new WarehouseAnalyzer(warehouse, WarehouseAnalyzer.DEFAULT_PARALLEL_THRESHOLD, 0);
+            WarehouseAnalyzer flatSketched = new WarehouseAnalyzer(flat, WarehouseAnalyzer.DEFAULT_PARALLEL_THRESHOLD, 0);
+
+            // Act
+            List<Product> none = sketched.findPriceOutliers(Double.POSITIVE_INFINITY);
+            List<Product> all = sketched.findPriceOutliers(Double.NEGATIVE_INFINITY);
+            List<Product> flatOutliers = flatSketched.findPriceOutliers(Double.POSITIVE_INFINITY);
+
+            // Assert
+            assertThat(none).as("Fences at +/- infinity leave every price inside").isEmpty();
+            assertThat(all)
+                    .as("Crossed infinite fences make every product an outlier, once, by ascending price")
+                    .extracting(Product::name)
+                    .containsExactly("Spread1", "Spread2", "Spread3", "Spread4", "Spread5");
+            assertThat(flatOutliers).as("NaN fences from a zero IQR exclude nothing").isEmpty();
+        }
+        /**
+         * Runs the catalog-wide analytics in parallel and compares them with the sequential scans.
+         * Arrange: 20,000 food and electronics products with varied prices, weights, categories and expiry dates.
+         * Act: the same queries on an analyzer that always runs in parallel and one that never does.
+         * Assert: both analyzers return identical results.
+         */
+        @Test
+        @DisplayName("📊 should give identical results when the analytics run in parallel")
+
+        void should_giveIdenticalResults_when_analyzingInParallel() {
+            // Arrange
+            Random random = new Random(42);
+            List<Product> catalog = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                Category category = Category.of("Parallel" + random.nextInt(12));
+                BigDecimal price = BigDecimal.valueOf(1 + random.nextInt(300_000), 2);
+                BigDecimal weight = BigDecimal.valueOf(random.nextInt(100), 1);
+                catalog.add(i % 2 == 0
+                        ? new FoodProduct(UUID.randomUUID(), "Food" + i, category, price, LocalDate.now().plusDays(random.nextInt(6)), weight)
+                        : new ElectronicsProduct(UUID.randomUUID(), "Device" + i, category, price, 12, weight));
+            }
+            warehouse.addProducts(catalog);
+            WarehouseAnalyzer sequential = new WarehouseAnalyzer(warehouse, Integer.MAX_VALUE);
+            WarehouseAnalyzer parallel = new WarehouseAnalyzer(warehouse, 0);
+
+            // Act & Assert
+            assertThat(parallel.calculateWeightedAveragePriceByCategory())
+                    .isEqualTo(sequential.calculateWeightedAveragePriceByCategory());
+            assertThat(parallel.findPriceOutliers(1.5))
+                    .as("Outliers should come back in the same order as a sequential scan")
+                    .containsExactlyElementsOf(sequential.findPriceOutliers(1.5));
+            assertThat(parallel.calculateExpirationBasedDiscounts())
+                    .isEqualTo(sequential.calculateExpirationBasedDiscounts());
+            assertThat(parallel.validateInventoryConstraints().getHighValuePercentage())
+                    .isEqualTo(sequential.validateInventoryConstraints().getHighValuePercentage());
+            assertThat(parallel.validateInventoryConstraints().getCategoryDiversity())
+                    .isEqualTo(sequential.validateInventoryConstraints().getCategoryDiversity());
+        }
         /**
          * Groups shippable products into bins not exceeding a maximum total weight to optimize shipping.
          * Arrange: mix of light and heavy items across categories.
@@ -262,6 +480,159 @@ class EdgeCaseTest {
                     .as("All shippable products should be included in groups")
                     .isEqualTo(5);
         }
+        /**
+         * Packs shipping groups with best fit, which puts every item into the fullest group that still fits it.
+         * Arrange: weights 8, 6, 3 and 1 with a maximum of 10.
+         * Act: analyzer.optimizeShippingGroups(10.0) with first fit and with best fit.
+         * Assert: first fit puts the 1 with the 8 (loads 9 and 9), best fit tops up the fuller 6 + 3 group (loads 8 and 10).
+         */
+        @Test
+        @DisplayName("💰 should pack shipping groups with first fit or best fit decreasing")
+
+        void should_packShippingGroups_withChosenStrategy() {
+            // Arrange
+            for (String weight : List.of("8.0", "6.0", "3.0", "1.0")) {
+                warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Box" + weight, Category.of("Electronics"),
+                        BigDecimal.TEN, 12, new BigDecimal(weight)));
+            }
+
+            // Act
+            List<ShippingGroup> firstFit = analyzer.optimizeShippingGroups(new BigDecimal("10.0"), PackingStrategy.FIRST_FIT_DECREASING);
+            List<ShippingGroup> bestFit = analyzer.optimizeShippingGroups(new BigDecimal("10.0"), PackingStrategy.BEST_FIT_DECREASING);
+
+            // Assert
+            assertThat(firstFit)
+                    .extracting(ShippingGroup::getTotalWeight)
+                    .containsExactly(9.0, 9.0);
+            assertThat(bestFit)
+                    .as("Best fit should place each item in the fullest group it still fits in")
+                    .extracting(ShippingGroup::getTotalWeight)
+                    .containsExactly(8.0, 10.0);
+        }
+        /**
+         * Sums the shipping cost of a group that mixes warehouse products with a third-party Shippable whose
+         * cost has three decimals, which the minor-unit sum could only hold rounded.
+         * Arrange: a food product (cost 50.00), an electronics product (cost 79.00) and a carrier parcel costing 12.345.
+         * Act: build a ShippingGroup from the three items.
+         * Assert: the total is the exact BigDecimal sum 141.345, not rounded to cents.
+         */
+        @Test
+        @DisplayName("💰 should keep the exact total when a shipping cost has more than two decimals")
+
+        void should_keepExactShippingTotal_when_costHasThreeDecimals() {
+            // Arrange
+            Shippable parcel = new Shippable() {
+                @Override
+                public BigDecimal calculateShippingCost() {
+                    return new BigDecimal("12.345");
+                }
+
+                @Override
+                public Double weight() {
+                    return 0.5;
+                }
+            };
+            List<Shippable> items = List.of(
+                    new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"), BigDecimal.TEN, LocalDate.now().plusDays(5), BigDecimal.ONE),
+                    new ElectronicsProduct(UUID.randomUUID(), "Radio", Category.of("Electronics"), BigDecimal.TEN, 12, BigDecimal.ONE),
+                    parcel);
+
+            // Act
+            ShippingGroup group = new ShippingGroup(items);
+
+            // Assert
+            assertThat(parcel.isShippingCostExact()).as("A three-decimal cost has no exact minor-unit form").isFalse();
+            assertThat(group.getTotalShippingCost())
+                    .as("The total should keep the third decimal")
+                    .isEqualByComparingTo("141.345");
+            assertThat(group.getTotalWeight()).isEqualTo(2.5);
+        }
+
+        /**
+         * Keeps a shipping plan current while products are added and removed, then repacks it.
+         * Arrange: a planner over a 6.0 box with a maximum of 10.
+         * Act: add boxes of 8, 3 and 1, remove the 3, then repack.
+         * Assert: arrivals go to the first group with room (10 and 8), the removal frees its room (7 and 8),
+         * and the repack sorts by weight again (9 and 6).
+         */
+        @Test
+        @DisplayName("💰 should keep shipping groups current as products arrive and leave")
+
+        void should_keepShippingPlanCurrent_whenProductsChange() throws InterruptedException {
+            // Arrange
+            Map<String, UUID> ids = new HashMap<>();
+            for (String weight : List.of("6.0", "8.0", "3.0", "1.0")) ids.put(weight, UUID.randomUUID());
+            warehouse.addProduct(new ElectronicsProduct(ids.get("6.0"), "Box6", Category.of("Electronics"),
+                    BigDecimal.TEN, 12, new BigDecimal("6.0")));
+
+            try (ShippingPlanner planner = analyzer.planShippingGroups(new BigDecimal("10.0"))) {
+                // Act
+                for (String weight : List.of("8.0", "3.0", "1.0")) {
+                    warehouse.addProduct(new ElectronicsProduct(ids.get(weight), "Box" + weight, Category.of("Electronics"),
+                            BigDecimal.TEN, 12, new BigDecimal(weight)));
+                }
+                assertThat(planner.awaitApplied(warehouse.changeLog().lastSequence(), 5, TimeUnit.SECONDS)).isTrue();
+                List<ShippingGroup> arrived = planner.groups();
+                warehouse.remove(ids.get("3.0"));
+                assertThat(planner.awaitApplied(warehouse.changeLog().lastSequence(), 5, TimeUnit.SECONDS)).isTrue();
+                List<ShippingGroup> afterRemoval = planner.groups();
+                planner.repack();
+                List<ShippingGroup> repacked = planner.groups();
+
+                // Assert
+                assertThat(arrived)
+                        .as("Each arrival should go to the first group it fits in")
+                        .extracting(ShippingGroup::getTotalWeight)
+                        .containsExactly(10.0, 8.0);
+                assertThat(afterRemoval)
+                        .extracting(ShippingGroup::getTotalWeight)
+                        .containsExactly(7.0, 8.0);
+                assertThat(repacked)
+                        .as("Repacking should place the heaviest items first")
+                        .extracting(ShippingGroup::getTotalWeight)
+                        .containsExactly(9.0, 6.0);
+            }
+        }
+
+        /**
+         * Prices all shippable products with a bracketed tariff table.
+         * Arrange: 1.5 kg food, 6 kg and 12.25 kg electronics; brackets up to 2 kg (4.90), up to 10 kg
+         * (6.90 + 0.50/kg) and above (19.00 + 1.10/kg).
+         * Act: analyzer.quoteShipping(tariff).
+         * Assert: 4.90 + 9.90 + 32.48 (13.475 rounded up) = 47.28, and each product's own cost is computed once.
+         */
+        @Test
+        @DisplayName("💰 should quote shipping for the catalog from a tariff table")
+
+        void should_quoteShipping_fromTariffTable() {
+            // Arrange
+            FoodProduct food = new FoodProduct(UUID.randomUUID(), "Flour", Category.of("Baking"),
+                    BigDecimal.TEN, LocalDate.now().plusDays(30), new BigDecimal("1.5"));
+            warehouse.addProduct(food);
+            warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Monitor", Category.of("Electronics"),
+                    BigDecimal.TEN, 12, new BigDecimal("6.0")));
+            warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Printer", Category.of("Electronics"),
+                    BigDecimal.TEN, 12, new BigDecimal("12.25")));
+            ShippingTariff tariff = new ShippingTariff(List.of(
+                    new ShippingTariff.Bracket(new BigDecimal("2"), new BigDecimal("4.90"), BigDecimal.ZERO),
+                    new ShippingTariff.Bracket(new BigDecimal("10"), new BigDecimal("6.90"), new BigDecimal("0.50")),
+                    new ShippingTariff.Bracket(null, new BigDecimal("19.00"), new BigDecimal("1.10"))));
+
+            // Act
+            BigDecimal quoted = analyzer.quoteShipping(tariff);
+
+            // Assert
+            assertThat(quoted)
+                    .as("Each product should be priced by its bracket and rounded to cents")
+                    .isEqualByComparingTo("47.28");
+            assertThat(tariff.quoteMinor(warehouse.shippableProducts()))
+                    .containsExactlyInAnyOrder(490L, 990L, 3248L);
+            assertThat(food.calculateShippingCost())
+                    .as("The shipping cost should be computed once, not on every call")
+                    .isSameAs(food.calculateShippingCost())
+                    .isEqualByComparingTo("75.00");
+            assertThat(food.shippingCostMinor()).isEqualTo(7500L);
+        }
     }
 
     @Nested
@@ -393,5 +764,111 @@ class EdgeCaseTest {
             assertThat(stats.getMostExpensiveProduct().name()).isEqualTo("Laptop");
             assertThat(stats.getCheapestProduct().name()).isEqualTo("Milk");
         }
+
+        /**
+         * Builds the statistics and the validation summary from a single pass over the catalog.
+         * Arrange: the same 4 diverse products with one expired.
+         * Act: analyzer.getInventoryReport().
+         * Assert: the statistics match getInventoryStatistics() and the validation matches validateInventoryConstraints().
+         */
+        @Test
+        @DisplayName("📊 should combine statistics and validation in one inventory report")
+
+        void should_combineStatisticsAndValidation_inInventoryReport() {
+            // Arrange
+            warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"),
+                    new BigDecimal("15.50"), LocalDate.now().plusDays(2), new BigDecimal("1.0")));
+            warehouse.addProduct(new FoodProduct(UUID.randomUUID(), "Cheese", Category.of("Dairy"),
+                    new BigDecimal("25.00"), LocalDate.now().minusDays(1), new BigDecimal("0.5"))); // Expired
+            warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Laptop", Category.of("Electronics"),
+                    new BigDecimal("1500.00"), 24, new BigDecimal("2.5")));
+            warehouse.addProduct(new ElectronicsProduct(UUID.randomUUID(), "Mouse", Category.of("Electronics"),
+                    new BigDecimal("50.00"), 12, new BigDecimal("0.1")));
+
+            // Act
+            InventoryReport report = analyzer.getInventoryReport();
+
+            // Assert
+            InventoryStatistics stats = report.getStatistics();
+            assertThat(stats.getTotalProducts()).isEqualTo(4);
+            assertThat(stats.getTotalValue()).isEqualByComparingTo(new BigDecimal("1590.50"));
+            assertThat(stats.getAveragePrice()).isEqualByComparingTo(new BigDecimal("397.63"));
+            assertThat(stats.getExpiredCount()).isEqualTo(1);
+            assertThat(stats.getCategoryCount()).isEqualTo(2);
+            assertThat(stats.getMostExpensiveProduct().name()).isEqualTo("Laptop");
+            assertThat(stats.getCheapestProduct().name()).isEqualTo("Milk");
+            assertThat(report.getValidation().getHighValuePercentage())
+                    .as("One of four products is priced at 1000 or more")
+                    .isCloseTo(25.0, within(0.01));
+            assertThat(report.getValidation().getCategoryDiversity()).isEqualTo(2);
+        }
+
+        /**
+         * Keeps the running inventory aggregates correct while the catalog changes.
+         * Arrange: 3 products, then one price update and one removal.
+         * Act: analyzer.getInventoryStatistics().
+         * Assert: count, total value and extremes reflect the mutations.
+         */
+        @Test
+        @DisplayName("📊 should keep inventory statistics current after updates and removals")
+
+        void should_keepStatisticsCurrent_afterMutations() {
+            // Arrange
+            Product milk = new FoodProduct(UUID.randomUUID(), "Milk", Category.of("Dairy"),
+                    new BigDecimal("15.50"), LocalDate.now().plusDays(2), new BigDecimal("1.0"));
+            Product laptop = new ElectronicsProduct(UUID.randomUUID(), "Laptop", Category.of("Electronics"),
+                    new BigDecimal("1500.00"), 24, new BigDecimal("2.5"));
+            Product mouse = new ElectronicsProduct(UUID.randomUUID(), "Mouse", Category.of("Electronics"),
+                    new BigDecimal("50.00"), 12, new BigDecimal("0.1"));
+            warehouse.addProduct(milk);
+            warehouse.addProduct(laptop);
+            warehouse.addProduct(mouse);
+
+            // Act
+            warehouse.updateProductPrice(mouse.uuid(), new BigDecimal("5.00"));
+            warehouse.remove(laptop.uuid());
+            InventoryStatistics stats = analyzer.getInventoryStatistics();
+
+            // Assert
+            assertThat(stats.getTotalProducts()).isEqualTo(2);
+            assertThat(stats.getTotalValue())
+                    .as("Total value should follow price updates and removals")
+                    .isEqualByComparingTo(new BigDecimal("20.50"));
+            assertThat(stats.getCategoryCount()).isEqualTo(2);
+            assertThat(stats.getMostExpensiveProduct().name()).isEqualTo("Milk");
+            assertThat(stats.getCheapestProduct().name()).isEqualTo("Mouse");
+        }
+
+        /**
+         * Keeps prices with more than two decimals, or too large for minor units, exact in the analytics.
+         * Arrange: a product just below the 1000 high-value threshold at three decimals, and one priced 1E+30.
+         * Act: analyzer.getInventoryReport().
+         * Assert: the first is not high-value, and the total value and extremes use the exact prices.
+         */
+        @Test
+        @DisplayName("📊 should use exact prices when they do not fit in minor units")
+
+        void should_useExactPrices_when_notRepresentableInMinorUnits() {
+            // Arrange
+            Product almost = new ElectronicsProduct(UUID.randomUUID(), "Almost", Category.of("Electronics"),
+                    new BigDecimal("999.995"), 12, BigDecimal.ONE);
+            Product huge = new ElectronicsProduct(UUID.randomUUID(), "Huge", Category.of("Electronics"),
+                    new BigDecimal("1E+30"), 12, BigDecimal.ONE);
+            warehouse.addProduct(almost);
+            warehouse.addProduct(huge);
+
+            // Act
+            InventoryReport report = analyzer.getInventoryReport();
+
+            // Assert
+            assertThat(report.getValidation().getHighValuePercentage())
+                    .as("999.995 is below 1000 and must not be rounded up to it")
+                    .isCloseTo(50.0, within(0.01));
+            assertThat(report.getStatistics().getTotalValue())
+                    .isEqualByComparingTo(new BigDecimal("1E+30").add(new BigDecimal("999.995")));
+            assertThat(report.getStatistics().getMostExpensiveProduct()).isSameAs(huge);
+            assertThat(analyzer.getInventoryStatistics().getTotalValue())
+                    .isEqualByComparingTo(report.getStatistics().getTotalValue());
+        }
     }
 }
\ No newline at end of file
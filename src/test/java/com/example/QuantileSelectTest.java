@@ -0,0 +1,211 @@
+package com.example;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the order-statistic selection used by the price quantiles.
+ * Every result is checked against a fully sorted copy of the same input.
+ */
+@DisplayName("Quantile Selection")
+class QuantileSelectTest {
+
+    /**
+     * Asserts that select settled index k: the k-th smallest value sits at k, nothing before it is larger
+     * and nothing after it is smaller.
+     */
+    private static void assertSelected(long[] original, int k) {
+        long[] values = original.clone();
+        long[] sorted = original.clone();
+        Arrays.sort(sorted);
+
+        long selected = QuantileSelect.select(values, 0, values.length, k);
+
+        assertThat(selected).as("The k-th smallest value for k = %d", k).isEqualTo(sorted[k]);
+        assertThat(values[k]).as("The selected value should be moved to index k").isEqualTo(sorted[k]);
+        for (int i = 0; i < k; i++) {
+            assertThat(values[i]).as("No value before k should be larger").isLessThanOrEqualTo(selected);
+        }
+        for (int i = k + 1; i < values.length; i++) {
+            assertThat(values[i]).as("No value after k should be smaller").isGreaterThanOrEqualTo(selected);
+        }
+        long[] reordered = values.clone();
+        Arrays.sort(reordered);
+        assertThat(reordered).as("Selection should only reorder the values").isEqualTo(sorted);
+    }
+
+    @Nested
+    @DisplayName("Duplicates")
+    class DuplicateTests {
+        /**
+         * Verifies selection when most values occur many times.
+         * Arrange: 1,000 random values drawn from only 5 distinct prices.
+         * Act: select every k.
+         * Assert: each result matches the sorted copy and the range is partitioned around it.
+         */
+        @Test
+        @DisplayName("🔁 should select correctly when values repeat heavily")
+
+        void should_selectCorrectly_when_valuesRepeat() {
+            // Arrange
+            long[] values = new Random(42).longs(1_000, 0, 5).map(v -> v * 100).toArray();
+
+            // Act & Assert
+            for (int k = 0; k < values.length; k++) {
+                assertSelected(values, k);
+            }
+        }
+
+        /**
+         * Verifies selection when every value is the same, which the three-way partition settles at once.
+         * Arrange: 500 copies of one price.
+         * Act: select the first, middle and last index.
+         * Assert: the price is returned and the array is unchanged.
+         */
+        @Test
+        @DisplayName("🟰 should return the value when all values are equal")
+
+        void should_returnValue_when_allValuesEqual() {
+            // Arrange
+            long[] values = new long[500];
+            Arrays.fill(values, 1999);
+
+            // Act & Assert
+            for (int k : new int[]{0, 250, 499}) {
+                assertThat(QuantileSelect.select(values, 0, values.length, k))
+                        .as("Every order statistic of equal values is that value")
+                        .isEqualTo(1999);
+            }
+            assertThat(values).as("Equal values should not be reordered").containsOnly(1999);
+        }
+    }
+
+    @Nested
+    @DisplayName("Range Boundaries")
+    class BoundaryTests {
+        /**
+         * Verifies k at both ends of the range, on a whole array and on a sub-range.
+         * Arrange: 300 shuffled distinct values.
+         * Act: select k = from and k = to - 1.
+         * Assert: the minimum and maximum of the range are returned, values outside the range are untouched.
+         */
+        @Test
+        @DisplayName("↔️ should select the minimum and maximum at the ends of the range")
+
+        void should_selectMinAndMax_when_kAtRangeEnds() {
+            // Arrange
+            long[] values = shuffled(300, new Random(7));
+
+            // Act & Assert - whole array
+            assertSelected(values, 0);
+            assertSelected(values, values.length - 1);
+
+            // Act & Assert - sub-range [100, 200)
+            long[] range = values.clone();
+            long[] inside = Arrays.copyOfRange(values, 100, 200);
+            Arrays.sort(inside);
+            assertThat(QuantileSelect.select(range, 100, 200, 100)).as("k = from is the range minimum").isEqualTo(inside[0]);
+            assertThat(QuantileSelect.select(range, 100, 200, 199)).as("k = to - 1 is the range maximum").isEqualTo(inside[99]);
+            assertThat(Arrays.copyOfRange(range, 0, 100)).as("Values before the range are untouched").isEqualTo(Arrays.copyOfRange(values, 0, 100));
+            assertThat(Arrays.copyOfRange(range, 200, 300)).as("Values after the range are untouched").isEqualTo(Arrays.copyOfRange(values, 200, 300));
+        }
+
+        /**
+         * Verifies that k outside [from, to) is rejected.
+         * Arrange: a small array.
+         * Act: select k = from - 1 and k = to.
+         * Assert: IndexOutOfBoundsException both times.
+         */
+        @Test
+        @DisplayName("❌ should reject k outside the range")
+
+        void should_throwException_when_kOutsideRange() {
+            // Arrange
+            long[] values = {5, 3, 1, 4, 2};
+
+            // Act & Assert
+            assertThatThrownBy(() -> QuantileSelect.select(values, 1, 4, 0))
+                    .isInstanceOf(IndexOutOfBoundsException.class);
+            assertThatThrownBy(() -> QuantileSelect.select(values, 1, 4, 4))
+                    .isInstanceOf(IndexOutOfBoundsException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Adversarial Input")
+    class AdversarialTests {
+        /**
+         * Verifies the fallback to sorting once partitioning stops making progress.
+         * Arrange: sorted and reverse-sorted runs of 4,096 values. When the maximum is selected from these,
+         * the three-way partition leaves the upper part in an order that keeps the median-of-three pivots
+         * poor, so the depth budget runs out and the rest of the range is sorted.
+         * Act: select the last index, plus the median for comparison.
+         * Assert: the results match the sorted copy.
+         */
+        @Test
+        @DisplayName("🛡️ should stay correct when partitions degrade into the sorting fallback")
+
+        void should_selectCorrectly_when_depthLimitIsReached() {
+            // Arrange
+            int n = 4_096;
+            long[] ascending = LongStream.range(0, n).toArray();
+            long[] descending = LongStream.range(0, n).map(i -> n - i).toArray();
+
+            // Act & Assert
+            for (long[] values : new long[][]{ascending, descending}) {
+                assertSelected(values, n - 1);
+                assertSelected(values, n / 2);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Interpolation Neighbour")
+    class NeighbourTests {
+        /**
+         * Verifies the pattern used for interpolated quantiles: select the lower index, then take the
+         * minimum of everything to its right as the next value up.
+         * Arrange: 1,001 random values with duplicates.
+         * Act: for several k, select k and then min over (k, n).
+         * Assert: the two values equal sorted[k] and sorted[k + 1].
+         */
+        @Test
+        @DisplayName("📈 should find the next value up with min after select")
+
+        void should_findNextValue_when_minFollowsSelect() {
+            // Arrange
+            long[] original = new Random(11).longs(1_001, 0, 200).toArray();
+            long[] sorted = original.clone();
+            Arrays.sort(sorted);
+
+            for (int k : new int[]{0, 1, 250, 500, 999}) {
+                long[] values = original.clone();
+
+                // Act
+                long lower = QuantileSelect.select(values, 0, values.length, k);
+                long upper = QuantileSelect.min(values, k + 1, values.length);
+
+                // Assert
+                assertThat(lower).as("Lower neighbour for k = %d", k).isEqualTo(sorted[k]);
+                assertThat(upper).as("Upper neighbour for k = %d", k).isEqualTo(sorted[k + 1]);
+            }
+        }
+    }
+
+    private static long[] shuffled(int n, Random random) {
+        long[] values = LongStream.range(0, n).map(i -> i * 10).toArray();
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
+}